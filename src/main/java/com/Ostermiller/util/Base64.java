@@ -17,6 +17,11 @@
 package com.Ostermiller.util;
 
 import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.text.MessageFormat;
 import java.util.ResourceBundle;
 import java.util.Locale;
@@ -152,7 +157,7 @@ public class Base64 {
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	private static final int NON_BASE_64 = -1;
+	static final int NON_BASE_64 = -1;
 
 	/**
 	 * A character that is not a valid base 64 character.
@@ -166,7 +171,7 @@ public class Base64 {
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	private static final int NON_BASE_64_PADDING = -3;
+	static final int NON_BASE_64_PADDING = -3;
 
 	/**
 	 * This class need not be instantiated, all methods are static.
@@ -201,23 +206,37 @@ public class Base64 {
 	 *
 	 * @since ostermillerutils 1.00.00
 	 */
-	protected static final byte[] reverseBase64Chars = new byte[0x100];
-	static {
+	protected static final byte[] reverseBase64Chars = reverseAlphabet(base64Chars);
+
+	/**
+	 * Build a reverse lookup table for a Base64 alphabet.
+	 * White space and the equals sign padding character are
+	 * marked so that they can be told apart from other characters
+	 * that are not part of the alphabet.
+	 *
+	 * @param alphabet The sixty-four characters of the Base64 alphabet.
+	 * @return table giving n for the nth character of the alphabet, negative for other characters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static byte[] reverseAlphabet(byte[] alphabet){
+		byte[] reverse = new byte[0x100];
 		// Fill in NON_BASE_64 for all characters to start with
-		for (int i=0; i<reverseBase64Chars.length; i++){
-			reverseBase64Chars[i] = NON_BASE_64;
+		for (int i=0; i<reverse.length; i++){
+			reverse[i] = NON_BASE_64;
 		}
-		// For characters that are base64Chars, adjust
+		reverse[' '] = NON_BASE_64_WHITESPACE;
+		reverse['\n'] = NON_BASE_64_WHITESPACE;
+		reverse['\r'] = NON_BASE_64_WHITESPACE;
+		reverse['\t'] = NON_BASE_64_WHITESPACE;
+		reverse['\f'] = NON_BASE_64_WHITESPACE;
+		reverse['='] = NON_BASE_64_PADDING;
+		// For characters that are in the alphabet, adjust
 		// the reverse lookup table.
-		for (byte i=0; i < base64Chars.length; i++){
-			reverseBase64Chars[base64Chars[i]] = i;
+		for (byte i=0; i < alphabet.length; i++){
+			reverse[alphabet[i]] = i;
 		}
-		reverseBase64Chars[' '] = NON_BASE_64_WHITESPACE;
-		reverseBase64Chars['\n'] = NON_BASE_64_WHITESPACE;
-		reverseBase64Chars['\r'] = NON_BASE_64_WHITESPACE;
-		reverseBase64Chars['\t'] = NON_BASE_64_WHITESPACE;
-		reverseBase64Chars['\f'] = NON_BASE_64_WHITESPACE;
-		reverseBase64Chars['='] = NON_BASE_64_PADDING;
+		return reverse;
 	}
 
 	/**
@@ -629,28 +648,9 @@ public class Base64 {
 	 * @since ostermillerutils 1.04.00
 	 */
 	public static byte[] encode(byte[] bytes, boolean lineBreaks){
-		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-		// calculate the length of the resulting output.
-		// in general it will be 4/3 the size of the input
-		// but the input length must be divisible by three.
-		// If it isn't the next largest size that is divisible
-		// by three is used.
-		int mod;
-		int length = bytes.length;
-		if ((mod = length % 3) != 0){
-			length += 3 - mod;
-		}
-		length = length * 4 / 3;
-		ByteArrayOutputStream out = new ByteArrayOutputStream(length);
-		try {
-			encode(in, out, lineBreaks);
-		} catch (IOException x){
-			// This can't happen.
-			// The input and output streams were constructed
-			// on memory structures that don't actually use IO.
-			throw new RuntimeException(x);
-		}
-		return out.toByteArray();
+		byte[] out = new byte[encodedLength(bytes.length, lineBreaks)];
+		encodeBlock(bytes, 0, bytes.length, out, 0, lineBreaks);
+		return out;
 	}
 
 	/**
@@ -731,6 +731,147 @@ public class Base64 {
 		}
 	}
 
+	/**
+	 * Encode bytes in Base64 using all available processors.
+	 * The array is split into chunks that are encoded at the
+	 * same time by the common fork join pool.  The output is the
+	 * same as that of encode(byte[], boolean).  This is only worth
+	 * while for large arrays (a megabyte or more).
+	 *
+	 * @param bytes The data to encode.
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 * @return Encoded bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static byte[] encodeParallel(byte[] bytes, boolean lineBreaks){
+		return Base64Parallel.encode(bytes, lineBreaks);
+	}
+
+	/**
+	 * Encode this file in Base64 using all available processors.
+	 * The file is split into chunks that are read, encoded, and written
+	 * to their place in the output at the same time by the common
+	 * fork join pool.  The output is the same as that of
+	 * encode(File, File, boolean).
+	 *
+	 * @param fIn File to be encoded.
+	 * @param fOut File to which the results should be written (may be the same as fIn).
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 * @throws IOException if an input or output error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void encodeParallel(File fIn, File fOut, boolean lineBreaks) throws IOException {
+		Base64Parallel.encode(fIn, fOut, lineBreaks);
+	}
+
+	/**
+	 * Encode the remaining bytes of one buffer into another buffer
+	 * in Base64.  Nothing is allocated, so this may be used with direct
+	 * buffers on network hot paths.
+	 * <p>
+	 * The source is taken to be all the data that is to be encoded.
+	 * If the destination has room, all of it is encoded (with padding and a
+	 * final line break as needed).  Otherwise as many whole lines (whole groups
+	 * of three bytes when not using line breaks) as fit are encoded
+	 * and the call may be repeated once more room is available.
+	 * When the destination has room for less than one whole line, the
+	 * groups that fit are encoded as a shorter line of their own, so that
+	 * a small destination still makes progress; the output is then
+	 * still valid Base64 but its lines are not all 76 characters.
+	 * Nothing is encoded unless the destination has room for at least
+	 * four characters (five with line breaks).
+	 * <p>
+	 * The position of the source is advanced past the bytes consumed and the
+	 * position of the destination is advanced past the bytes produced.
+	 *
+	 * @param src Data to encode.
+	 * @param dst Buffer into which the encoded data is written.
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 * @return the number of bytes written to the destination.
+	 * @throws java.nio.ReadOnlyBufferException if the destination is read only.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static int encode(ByteBuffer src, ByteBuffer dst, boolean lineBreaks){
+		int length = src.remaining();
+		int room = dst.remaining();
+		long encodedLength = ((length + 2L) / 3L) * 4L;
+		if (lineBreaks){
+			encodedLength += (encodedLength + 75L) / 76L;
+		}
+		if (encodedLength > room){
+			if (!lineBreaks){
+				length = room / 4 * 3;
+			} else if (room >= 77){
+				length = room / 77 * BYTES_PER_LINE;
+			} else {
+				// Part of a line and its line break
+				length = Math.max(0, room - 1) / 4 * 3;
+			}
+		}
+		int produced;
+		if (src.hasArray() && dst.hasArray()){
+			produced = encodeBlock(src.array(), src.arrayOffset() + src.position(), length, dst.array(), dst.arrayOffset() + dst.position(), lineBreaks);
+		} else {
+			produced = encodeBuffer(src, length, dst, lineBreaks);
+		}
+		src.position(src.position() + length);
+		dst.position(dst.position() + produced);
+		return produced;
+	}
+
+	/**
+	 * Encode bytes from a buffer that is not backed by an array (or into one).
+	 * Works like encodeBlock() but uses absolute gets and puts
+	 * so that nothing needs to be copied or allocated.
+	 *
+	 * @param src Data to encode, starting at its position.
+	 * @param length Number of bytes to encode.
+	 * @param dst Buffer to which to write, starting at its position.
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 * @return the number of bytes written.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static int encodeBuffer(ByteBuffer src, int length, ByteBuffer dst, boolean lineBreaks){
+		int start = src.position();
+		int i = start;
+		int o = dst.position();
+		int groupsEnd = start + length - (length % 3);
+		int lineLength = lineBreaks?BYTES_PER_LINE:length;
+		while (i < groupsEnd){
+			int lineEnd = Math.min(i + lineLength, groupsEnd);
+			while (i < lineEnd){
+				int bits = (src.get(i) & 0xff) << 16 | (src.get(i+1) & 0xff) << 8 | (src.get(i+2) & 0xff);
+				dst.put(o, base64Chars[bits >>> 18]);
+				dst.put(o+1, base64Chars[(bits >>> 12) & 0x3f]);
+				dst.put(o+2, base64Chars[(bits >>> 6) & 0x3f]);
+				dst.put(o+3, base64Chars[bits & 0x3f]);
+				i += 3;
+				o += 4;
+			}
+			if (lineBreaks && (i - start) % BYTES_PER_LINE == 0){
+				dst.put(o++, (byte)'\n');
+			}
+		}
+		int remaining = start + length - i;
+		if (remaining > 0){
+			int bits = (src.get(i) & 0xff) << 16;
+			if (remaining == 2) bits |= (src.get(i+1) & 0xff) << 8;
+			dst.put(o, base64Chars[bits >>> 18]);
+			dst.put(o+1, base64Chars[(bits >>> 12) & 0x3f]);
+			dst.put(o+2, (remaining == 2)?base64Chars[(bits >>> 6) & 0x3f]:(byte)'=');
+			dst.put(o+3, (byte)'=');
+			o += 4;
+		}
+		if (lineBreaks && length % BYTES_PER_LINE != 0){
+			dst.put(o++, (byte)'\n');
+		}
+		return o - dst.position();
+	}
+
 	/**
 	 * Encode data from the InputStream to the OutputStream in Base64.
 	 * Line breaks are inserted every 76 characters in the output.
@@ -756,64 +897,196 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static void encode(InputStream in, OutputStream out, boolean lineBreaks) throws IOException {
-		// Base64 encoding converts three bytes of input to
-		// four bytes of output
-		int[] inBuffer = new int[3];
-		int lineCount = 0;
+		encode(in, out, base64Chars, lineBreaks?BYTES_PER_LINE:0, true);
+	}
 
-		boolean done = false;
-		while (!done && (inBuffer[0] = in.read()) != END_OF_INPUT){
-			// Fill the buffer
-			inBuffer[1] = in.read();
-			inBuffer[2] = in.read();
-
-			// Calculate the out Buffer
-			// The first byte of our in buffer will always be valid
-			// but we must check to make sure the other two bytes
-			// are not END_OF_INPUT before using them.
-			// The basic idea is that the three bytes get split into
-			// four bytes along these lines:
-			//      [AAAAAABB] [BBBBCCCC] [CCDDDDDD]
-			// [xxAAAAAA] [xxBBBBBB] [xxCCCCCC] [xxDDDDDD]
-			// bytes are considered to be zero when absent.
-			// the four bytes are then mapped to common ASCII symbols
-
-			// A's: first six bits of first byte
-			out.write(base64Chars[ inBuffer[0] >> 2 ]);
-			if (inBuffer[1] != END_OF_INPUT){
-				// B's: last two bits of first byte, first four bits of second byte
-				out.write(base64Chars [(( inBuffer[0] << 4 ) & 0x30) | (inBuffer[1] >> 4) ]);
-				if (inBuffer[2] != END_OF_INPUT){
-					// C's: last four bits of second byte, first two bits of third byte
-					out.write(base64Chars [((inBuffer[1] << 2) & 0x3c) | (inBuffer[2] >> 6) ]);
-					// D's: last six bits of third byte
-					out.write(base64Chars [inBuffer[2] & 0x3F]);
-				} else {
-					// C's: last four bits of second byte
-					out.write(base64Chars [((inBuffer[1] << 2) & 0x3c)]);
-					// an equals sign for a character that is not a Base64 character
-					out.write('=');
-					done = true;
-				}
-			} else {
-				// B's: last two bits of first byte
-				out.write(base64Chars [(( inBuffer[0] << 4 ) & 0x30)]);
-				// an equal signs for characters that is not a Base64 characters
-				out.write('=');
-				out.write('=');
-				done = true;
+	/**
+	 * Encode data from the InputStream to the OutputStream in Base64.
+	 *
+	 * @param in Stream from which to read data that needs to be encoded.
+	 * @param out Stream to which to write encoded data.
+	 * @param alphabet The sixty-four characters of the Base64 alphabet.
+	 * @param lineBytes Number of bytes of input encoded on each line of output, a multiple of three, or zero for no line breaks.
+	 * @param padding Whether to pad the output to a multiple of four characters.
+	 * @throws IOException if there is a problem reading or writing.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static void encode(InputStream in, OutputStream out, byte[] alphabet, int lineBytes, boolean padding) throws IOException {
+		// Data is read and written a block at a time.  Every block
+		// except the last is a whole number of lines, so line
+		// breaks fall in the same places they would if the data
+		// were encoded all at once.
+		int blockSize = (lineBytes > 0)?(lineBytes * Math.max(1, ENCODE_BLOCK_SIZE / lineBytes)):ENCODE_BLOCK_SIZE;
+		byte[] inBuffer = new byte[blockSize];
+		byte[] outBuffer = new byte[encodedLength(blockSize, lineBytes, padding)];
+		int length;
+		while ((length = readFully(in, inBuffer)) > 0){
+			out.write(outBuffer, 0, encodeBlock(inBuffer, 0, length, outBuffer, 0, alphabet, lineBytes, padding));
+			if (length < inBuffer.length) break;
+		}
+		out.flush();
+	}
+
+	/**
+	 * Number of bytes of input that encode to one 76 character line of output.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static final int BYTES_PER_LINE = 57;
+
+	/**
+	 * Number of bytes read at once when encoding a stream.  This is a whole
+	 * number of lines (about 56K of input, 77K of output).
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int ENCODE_BLOCK_SIZE = BYTES_PER_LINE * 1024;
+
+	/**
+	 * Read from the stream until the buffer is full or the stream ends.
+	 *
+	 * @param in Stream from which to read.
+	 * @param buffer Buffer to fill.
+	 * @return the number of bytes read, less than the size of the buffer only at the end of the stream.
+	 * @throws IOException if there is a problem reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static int readFully(InputStream in, byte[] buffer) throws IOException {
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != END_OF_INPUT){
+			length += read;
+		}
+		return length;
+	}
+
+	/**
+	 * Calculate the number of bytes needed to hold the encoded form of the given
+	 * number of bytes.  Four bytes of output for every three of input (or part
+	 * thereof) plus a line break for every line (or part thereof) when
+	 * line breaks are used.
+	 *
+	 * @param length Number of bytes of input.
+	 * @param lineBreaks Whether line breaks are inserted every 76 characters.
+	 * @return Number of bytes of output.
+	 * @throws IllegalArgumentException if the output would be too large for an array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static int encodedLength(int length, boolean lineBreaks){
+		return encodedLength(length, lineBreaks?BYTES_PER_LINE:0, true);
+	}
+
+	/**
+	 * Calculate the number of bytes needed to hold the encoded form of the given
+	 * number of bytes.
+	 *
+	 * @param length Number of bytes of input.
+	 * @param lineBytes Number of bytes of input encoded on each line of output, or zero for no line breaks.
+	 * @param padding Whether the output is padded to a multiple of four characters.
+	 * @return Number of bytes of output.
+	 * @throws IllegalArgumentException if the output would be too large for an array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static int encodedLength(int length, int lineBytes, boolean padding){
+		long encodedLength = (length / 3L) * 4L;
+		int remaining = length % 3;
+		if (remaining > 0){
+			encodedLength += padding?4:(remaining + 1);
+		}
+		if (lineBytes > 0){
+			encodedLength += (length + (lineBytes - 1L)) / lineBytes;
+		}
+		if (encodedLength > Integer.MAX_VALUE) throw new IllegalArgumentException("Too large to encode: " + length);
+		return (int)encodedLength;
+	}
+
+	/**
+	 * Encode a block of bytes.  If the block is not a multiple of three bytes
+	 * long, it is treated as the end of the data and padding is added.  When
+	 * line breaks are used, a line break is added after every 76 characters
+	 * and after any partial line at the end of the block.
+	 *
+	 * @param in Data to encode.
+	 * @param inOffset Index of the first byte to encode.
+	 * @param inLength Number of bytes to encode.
+	 * @param out Array into which the encoded data is written.
+	 * @param outOffset Index at which to start writing.
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 * @return the number of bytes written.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static int encodeBlock(byte[] in, int inOffset, int inLength, byte[] out, int outOffset, boolean lineBreaks){
+		return encodeBlock(in, inOffset, inLength, out, outOffset, base64Chars, lineBreaks?BYTES_PER_LINE:0, true);
+	}
+
+	/**
+	 * Encode a block of bytes with the given alphabet.  If the block is not a
+	 * multiple of three bytes long, it is treated as the end of the data and
+	 * the last group is padded (or left short).  When line breaks are used,
+	 * a line break is added after every line and after any partial
+	 * line at the end of the block.
+	 *
+	 * @param in Data to encode.
+	 * @param inOffset Index of the first byte to encode.
+	 * @param inLength Number of bytes to encode.
+	 * @param out Array into which the encoded data is written.
+	 * @param outOffset Index at which to start writing.
+	 * @param alphabet The sixty-four characters of the Base64 alphabet.
+	 * @param lineBytes Number of bytes of input encoded on each line of output, a multiple of three, or zero for no line breaks.
+	 * @param padding Whether to pad the output to a multiple of four characters.
+	 * @return the number of bytes written.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static int encodeBlock(byte[] in, int inOffset, int inLength, byte[] out, int outOffset, byte[] alphabet, int lineBytes, boolean padding){
+		// The basic idea is that the three bytes get split into
+		// four bytes along these lines:
+		//      [AAAAAABB] [BBBBCCCC] [CCDDDDDD]
+		// [xxAAAAAA] [xxBBBBBB] [xxCCCCCC] [xxDDDDDD]
+		// the four bytes are then mapped to common ASCII symbols
+		int i = inOffset;
+		int o = outOffset;
+		int groupsEnd = inOffset + inLength - (inLength % 3);
+		boolean lineBreaks = lineBytes > 0;
+		while (i < groupsEnd){
+			int lineEnd = lineBreaks?Math.min(i + lineBytes, groupsEnd):groupsEnd;
+			while (i < lineEnd){
+				int bits = (in[i] & 0xff) << 16 | (in[i+1] & 0xff) << 8 | (in[i+2] & 0xff);
+				out[o] = alphabet[bits >>> 18];
+				out[o+1] = alphabet[(bits >>> 12) & 0x3f];
+				out[o+2] = alphabet[(bits >>> 6) & 0x3f];
+				out[o+3] = alphabet[bits & 0x3f];
+				i += 3;
+				o += 4;
 			}
-			lineCount += 4;
-			if (lineBreaks && lineCount >= 76){
-				out.write('\n');
-				lineCount = 0;
+			if (lineBreaks && (i - inOffset) % lineBytes == 0){
+				out[o++] = '\n';
 			}
 		}
-		if (lineBreaks && lineCount >= 1){
-			out.write('\n');
-			lineCount = 0;
+		int remaining = inOffset + inLength - i;
+		if (remaining > 0){
+			int bits = (in[i] & 0xff) << 16;
+			if (remaining == 2) bits |= (in[i+1] & 0xff) << 8;
+			out[o++] = alphabet[bits >>> 18];
+			out[o++] = alphabet[(bits >>> 12) & 0x3f];
+			if (remaining == 2){
+				out[o++] = alphabet[(bits >>> 6) & 0x3f];
+			} else if (padding){
+				out[o++] = '=';
+			}
+			if (padding){
+				out[o++] = '=';
+			}
 		}
-		out.flush();
+		if (lineBreaks && inLength % lineBytes != 0){
+			out[o++] = '\n';
+		}
+		return o - outOffset;
 	}
 
 	/**
@@ -829,7 +1102,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.02.16
 	 */
 	public static byte[] decodeToBytes(CharSequence string){
-		return decodeInputToBytesNoIO(getIntSequence(string));
+		return decodeToBytesNoIO(string);
 	}
 
 	/**
@@ -841,7 +1114,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.02.16
 	 */
 	public static byte[] decodeToBytes(CharSequence string, String enc) throws UnsupportedEncodingException {
-		return decodeInputToBytesNoIO(getIntSequence(string));
+		return decodeToBytesNoIO(string);
 	}
 
 	/**
@@ -855,7 +1128,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.02.16
 	 */
 	public static byte[] decodeToBytes(byte[] bytes){
-		return decodeInputToBytesNoIO(getIntSequence(bytes));
+		return decodeToBytesNoIO(bytes);
 	}
 
 	/**
@@ -870,7 +1143,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static byte[] decode(byte[] bytes){
-		return decodeInputToBytesNoIO(getIntSequence(bytes));
+		return decodeToBytesNoIO(bytes);
 	}
 
 	/**
@@ -884,7 +1157,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static byte[] decodeToBytes(char[] chars){
-		return decodeInputToBytesNoIO(getIntSequence(chars));
+		return decodeToBytesNoIO(chars);
 	}
 
 	/**
@@ -899,7 +1172,9 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static byte[] decodeToBytes(Reader in) throws IOException{
-		return decodeInputToBytes(getIntSequence(in));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		decode(in, out, false);
+		return out.toByteArray();
 	}
 
 	/**
@@ -914,28 +1189,73 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static byte[] decodeToBytes(InputStream in) throws IOException {
-		return decodeInputToBytes(getIntSequence(in));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		decode(in, out, false);
+		return out.toByteArray();
 	}
 
-	private static byte[] decodeInputToBytesNoIO(IntSequence in) {
+	private static byte[] decodeToBytesNoIO(byte[] in) {
 		try {
-			return decodeInputToBytes(in);
+			return decodeToBytes(in, new Decoder(false));
 		} catch (IOException iox){
+			// This can't happen.
+			// Errors are only reported when throwExceptions is set.
 			throw new RuntimeException(iox);
 		}
 	}
 
-	private static byte[] decodeInputToBytes(IntSequence in) throws IOException {
-		ByteArrayOutputStream out;
-		if (in.length() < 0){
-			out = new ByteArrayOutputStream();
-		} else {
-			out = new ByteArrayOutputStream(calculateOutputLength(in.length()));
+	/**
+	 * Decode an array of bytes in one go.
+	 *
+	 * @param in The data to decode.
+	 * @param decoder Decoder to use.
+	 * @return Decoded bytes.
+	 * @throws Base64DecodingException if unexpected data is encountered and the decoder throws exceptions.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static byte[] decodeToBytes(byte[] in, Decoder decoder) throws Base64DecodingException {
+		byte[] out = new byte[calculateOutputLength(in.length)];
+		int length = decoder.decode(in, 0, in.length, out, 0);
+		length += decoder.finish(out, length);
+		return trim(out, length);
+	}
+
+	private static byte[] decodeToBytesNoIO(char[] in) {
+		byte[] out = new byte[calculateOutputLength(in.length)];
+		try {
+			Decoder decoder = new Decoder(false);
+			int length = decoder.decode(in, 0, in.length, out, 0);
+			length += decoder.finish(out, length);
+			return trim(out, length);
+		} catch (IOException iox){
+			// This can't happen.
+			// Errors are only reported when throwExceptions is set.
+			throw new RuntimeException(iox);
+		}
+	}
+
+	private static byte[] decodeToBytesNoIO(CharSequence in) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(calculateOutputLength(in.length()));
+		try {
+			decode(in, out, new Decoder(false));
+		} catch (IOException iox){
+			// This can't happen.
+			// The output stream is a memory structure that doesn't
+			// actually use IO and errors are only reported when
+			// throwExceptions is set.
+			throw new RuntimeException(iox);
 		}
-		decodeInput(in, out, false);
 		return out.toByteArray();
 	}
 
+	private static byte[] trim(byte[] bytes, int length){
+		if (bytes.length == length) return bytes;
+		byte[] trimmed = new byte[length];
+		System.arraycopy(bytes, 0, trimmed, 0, length);
+		return trimmed;
+	}
+
 	/**
 	 * Decode a Base64 encoded String.
 	 * Characters that are not part of the Base64 alphabet are ignored
@@ -1184,7 +1504,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static void decode(InputStream in, OutputStream out) throws IOException {
-		decodeInput(getIntSequence(in), out, true);
+		decode(in, out, true);
 	}
 
 	/**
@@ -1220,7 +1540,29 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static void decode(InputStream in, OutputStream out, boolean throwExceptions) throws IOException {
-		decodeInput(getIntSequence(in), out, throwExceptions);
+		decode(in, out, new Decoder(throwExceptions));
+	}
+
+	/**
+	 * Decode data from the InputStream to the OutputStream a block at a time.
+	 *
+	 * @param in Stream from which to read data that needs to be decoded.
+	 * @param out Stream to which to write decoded data.
+	 * @param decoder Decoder to use.
+	 * @throws IOException if an IO error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered and the decoder throws exceptions.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static void decode(InputStream in, OutputStream out, Decoder decoder) throws IOException {
+		byte[] inBuffer = new byte[DECODE_BLOCK_SIZE];
+		byte[] outBuffer = new byte[calculateOutputLength(DECODE_BLOCK_SIZE + 3)];
+		int read;
+		while ((read = in.read(inBuffer)) != END_OF_INPUT){
+			out.write(outBuffer, 0, decoder.decode(inBuffer, 0, read, outBuffer, 0));
+		}
+		out.write(outBuffer, 0, decoder.finish(outBuffer, 0));
+		out.flush();
 	}
 
 	/**
@@ -1235,7 +1577,8 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static void decode(byte[] bytes, OutputStream out) throws IOException {
-		decodeInput(getIntSequence(bytes), out, false);
+		out.write(decodeToBytesNoIO(bytes));
+		out.flush();
 	}
 
 	/**
@@ -1268,7 +1611,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static void decode(Reader in, OutputStream out) throws IOException {
-		decodeInput(getIntSequence(in), out, true);
+		decode(in, out, true);
 	}
 	/**
 	 * Decode Base64 encoded data from the InputStream to the OutputStream.
@@ -1285,7 +1628,15 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static void decode(Reader in, OutputStream out, boolean throwExceptions) throws IOException {
-		decodeInput(getIntSequence(in), out, throwExceptions);
+		Decoder decoder = new Decoder(throwExceptions);
+		char[] inBuffer = new char[DECODE_BLOCK_SIZE];
+		byte[] outBuffer = new byte[calculateOutputLength(DECODE_BLOCK_SIZE + 3)];
+		int read;
+		while ((read = in.read(inBuffer)) != END_OF_INPUT){
+			out.write(outBuffer, 0, decoder.decode(inBuffer, 0, read, outBuffer, 0));
+		}
+		out.write(outBuffer, 0, decoder.finish(outBuffer, 0));
+		out.flush();
 	}
 
 	/**
@@ -1302,7 +1653,38 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static void decode(CharSequence in, OutputStream out) throws IOException {
-		decodeInput(getIntSequence(in), out, true);
+		decode(in, out, new Decoder(true));
+	}
+
+	/**
+	 * Decode Base64 encoded data from the CharSequence to the OutputStream.
+	 *
+	 * @param in String or other character sequence that needs to be decoded
+	 * @param out Stream to which to write decoded data.
+	 * @param decoder Decoder to use.
+	 * @throws IOException if an IO error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered and the decoder throws exceptions.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static void decode(CharSequence in, OutputStream out, Decoder decoder) throws IOException {
+		int length = in.length();
+		char[] inBuffer = new char[Math.min(length, DECODE_BLOCK_SIZE)];
+		byte[] outBuffer = new byte[calculateOutputLength(inBuffer.length + 3)];
+		String string = (in instanceof String)?(String)in:null;
+		for (int start = 0; start < length; start += inBuffer.length){
+			int end = Math.min(start + inBuffer.length, length);
+			if (string != null){
+				string.getChars(start, end, inBuffer, 0);
+			} else {
+				for (int i = start; i < end; i++){
+					inBuffer[i - start] = in.charAt(i);
+				}
+			}
+			out.write(outBuffer, 0, decoder.decode(inBuffer, 0, end - start, outBuffer, 0));
+		}
+		out.write(outBuffer, 0, decoder.finish(outBuffer, 0));
+		out.flush();
 	}
 
 
@@ -1420,6 +1802,285 @@ public class Base64 {
 		}
 	}
 
+	/**
+	 * Decode the remaining Base64 encoded bytes of one buffer into another
+	 * buffer.  Nothing is allocated, so this may be used with direct buffers
+	 * on network hot paths.
+	 * <p>
+	 * The source is taken to be all the data that is to be decoded.
+	 * Decoding stops early, on a boundary between groups of four Base64
+	 * characters, if the destination runs out of room.  The call may be
+	 * repeated once more room is available.  To decode data that
+	 * arrives in pieces, use {@link #decode(ByteBuffer, ByteBuffer, boolean, boolean)}.
+	 * <p>
+	 * The position of the source is advanced past the bytes consumed and the
+	 * position of the destination is advanced past the bytes produced.  If an
+	 * exception is thrown, neither position is changed.
+	 *
+	 * @param src Data to decode.
+	 * @param dst Buffer into which the decoded data is written.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @return the number of bytes written to the destination.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 * @throws java.nio.ReadOnlyBufferException if the destination is read only.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static int decode(ByteBuffer src, ByteBuffer dst, boolean throwExceptions) throws Base64DecodingException {
+		return decodeBuffer(src, dst, throwExceptions, true);
+	}
+
+	/**
+	 * Decode the remaining Base64 encoded bytes of one buffer into another
+	 * buffer.  Nothing is allocated, so this may be used with direct buffers
+	 * on network hot paths.
+	 * <p>
+	 * The data may be given in pieces, like CharsetDecoder: unless
+	 * endOfInput is set, more data is expected to follow the source, so
+	 * a group of Base64 characters that is not complete (and anything
+	 * after padding) is left in the source to be decoded along with
+	 * the next piece.  Set endOfInput for the last piece, so that a final
+	 * group of two or three characters is decoded.
+	 * <p>
+	 * Decoding stops early, on a boundary between groups of four Base64
+	 * characters, if the destination runs out of room.  The call may be
+	 * repeated once more room is available.
+	 * <p>
+	 * The position of the source is advanced past the bytes consumed and the
+	 * position of the destination is advanced past the bytes produced.  If an
+	 * exception is thrown, neither position is changed.
+	 *
+	 * @param src Data to decode.
+	 * @param dst Buffer into which the decoded data is written.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @param endOfInput Whether the source holds the end of the data.
+	 * @return the number of bytes written to the destination.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 * @throws java.nio.ReadOnlyBufferException if the destination is read only.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static int decode(ByteBuffer src, ByteBuffer dst, boolean throwExceptions, boolean endOfInput) throws Base64DecodingException {
+		return decodeBuffer(src, dst, throwExceptions, endOfInput);
+	}
+
+	/**
+	 * Decode the remaining Base64 encoded characters of a buffer into a byte
+	 * buffer.  Nothing is allocated, so this may be used with direct buffers
+	 * on network hot paths.
+	 * <p>
+	 * The source is taken to be all the data that is to be decoded.
+	 * Decoding stops early, on a boundary between groups of four Base64
+	 * characters, if the destination runs out of room.  The call may be
+	 * repeated once more room is available.  To decode data that
+	 * arrives in pieces, use {@link #decode(CharBuffer, ByteBuffer, boolean, boolean)}.
+	 * <p>
+	 * The position of the source is advanced past the characters consumed and the
+	 * position of the destination is advanced past the bytes produced.  If an
+	 * exception is thrown, neither position is changed.
+	 *
+	 * @param src Data to decode.
+	 * @param dst Buffer into which the decoded data is written.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @return the number of bytes written to the destination.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 * @throws java.nio.ReadOnlyBufferException if the destination is read only.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static int decode(CharBuffer src, ByteBuffer dst, boolean throwExceptions) throws Base64DecodingException {
+		return decodeBuffer(src, dst, throwExceptions, true);
+	}
+
+	/**
+	 * Decode the remaining Base64 encoded characters of a buffer into a byte
+	 * buffer.  Nothing is allocated, so this may be used with direct buffers
+	 * on network hot paths.
+	 * <p>
+	 * The data may be given in pieces, like CharsetDecoder: unless
+	 * endOfInput is set, more data is expected to follow the source, so
+	 * a group of Base64 characters that is not complete (and anything
+	 * after padding) is left in the source to be decoded along with
+	 * the next piece.  Set endOfInput for the last piece, so that a final
+	 * group of two or three characters is decoded.
+	 * <p>
+	 * Decoding stops early, on a boundary between groups of four Base64
+	 * characters, if the destination runs out of room.  The call may be
+	 * repeated once more room is available.
+	 * <p>
+	 * The position of the source is advanced past the characters consumed and the
+	 * position of the destination is advanced past the bytes produced.  If an
+	 * exception is thrown, neither position is changed.
+	 *
+	 * @param src Data to decode.
+	 * @param dst Buffer into which the decoded data is written.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @param endOfInput Whether the source holds the end of the data.
+	 * @return the number of bytes written to the destination.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 * @throws java.nio.ReadOnlyBufferException if the destination is read only.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static int decode(CharBuffer src, ByteBuffer dst, boolean throwExceptions, boolean endOfInput) throws Base64DecodingException {
+		return decodeBuffer(src, dst, throwExceptions, endOfInput);
+	}
+
+	/**
+	 * Decode the remaining Base64 encoded characters of a ByteBuffer or
+	 * CharBuffer into a byte buffer, as described for decode(ByteBuffer,
+	 * ByteBuffer, boolean, boolean).  Absolute gets and puts are used so that
+	 * direct buffers need not be copied, and the positions are only set
+	 * once decoding has succeeded.
+	 *
+	 * @param src Data to decode, a ByteBuffer or a CharBuffer.
+	 * @param dst Buffer into which the decoded data is written.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @param endOfInput Whether the source holds the end of the data.
+	 * @return the number of bytes written to the destination.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static int decodeBuffer(Buffer src, ByteBuffer dst, boolean throwExceptions, boolean endOfInput) throws Base64DecodingException {
+		int i = src.position();
+		int limit = src.limit();
+		int o = dst.position();
+		int outLimit = dst.limit();
+		// Position in the source after the last group that was output
+		int consumed = i;
+		int bits = 0;
+		int count = 0;
+		boolean padding = false;
+		boolean full = false;
+		while (i < limit){
+			if (count == 0 && !padding){
+				// Whole groups of four Base64 characters, as in Decoder
+				int last = limit - 4;
+				while (i <= last && outLimit - o >= 3){
+					int a = base64Value(charAt(src, i));
+					int b = base64Value(charAt(src, i+1));
+					int c = base64Value(charAt(src, i+2));
+					int d = base64Value(charAt(src, i+3));
+					// Any character that is not in the alphabet maps to a negative number
+					if ((a | b | c | d) < 0) break;
+					int group = a << 18 | b << 12 | c << 6 | d;
+					dst.put(o, (byte)(group >> 16));
+					dst.put(o+1, (byte)(group >> 8));
+					dst.put(o+2, (byte)group);
+					i += 4;
+					o += 3;
+					consumed = i;
+				}
+				if (i == limit) break;
+			}
+			int read = charAt(src, i++);
+			int value = base64Value(read);
+			if (value >= 0){
+				if (padding) throw unexpectedCharacter(read);
+				bits = bits << 6 | value;
+				if (++count == 4){
+					if (outLimit - o < 3){
+						full = true;
+						break;
+					}
+					dst.put(o, (byte)(bits >> 16));
+					dst.put(o+1, (byte)(bits >> 8));
+					dst.put(o+2, (byte)bits);
+					o += 3;
+					bits = 0;
+					count = 0;
+					consumed = i;
+				}
+			} else if (throwExceptions){
+				if (value == NON_BASE_64) throw unexpectedCharacter(read);
+				if (value == NON_BASE_64_PADDING) padding = true;
+			}
+		}
+		if (!full && !endOfInput){
+			// More data is to come: leave a group that is not complete,
+			// or padding, for the next call.  Nothing else carries over.
+			if (count == 0 && !padding) consumed = limit;
+		} else if (!full){
+			// End of the data: output any partial group if there is room.
+			// Two Base64 characters make one byte, three make two bytes.
+			if (count < 2){
+				consumed = limit;
+			} else if (outLimit - o >= count - 1){
+				if (count == 2){
+					dst.put(o++, (byte)(bits >> 4));
+				} else {
+					dst.put(o++, (byte)(bits >> 10));
+					dst.put(o++, (byte)(bits >> 2));
+				}
+				consumed = limit;
+			}
+		}
+		int produced = o - dst.position();
+		src.position(consumed);
+		dst.position(o);
+		return produced;
+	}
+
+	/**
+	 * @param src a ByteBuffer or a CharBuffer.
+	 * @param index index of a byte or character.
+	 * @return the byte (as an unsigned value) or character at that index.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static int charAt(Buffer src, int index){
+		if (src instanceof ByteBuffer) return ((ByteBuffer)src).get(index) & 0xff;
+		return ((CharBuffer)src).get(index);
+	}
+
+	/**
+	 * @param read a character.
+	 * @return the value of the character in the Base64 alphabet, or a negative number if it is not in the alphabet.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static int base64Value(int read){
+		return (read < reverseBase64Chars.length)?reverseBase64Chars[read]:NON_BASE_64;
+	}
+
+	/**
+	 * Decode Base64 encoded bytes using all available processors.
+	 * The array is split into chunks that are decoded at the same
+	 * time by the common fork join pool.  The output is the same as that
+	 * of decodeToBytes(byte[]).  This is only worth while for large
+	 * arrays (a megabyte or more).
+	 *
+	 * @param bytes The data to decode.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @return Decoded bytes.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static byte[] decodeParallel(byte[] bytes, boolean throwExceptions) throws Base64DecodingException {
+		return Base64Parallel.decode(bytes, throwExceptions);
+	}
+
+	/**
+	 * Decode Base64 encoded data from one file to the other using
+	 * all available processors.  The file is split into chunks that are
+	 * read, decoded, and written to their place in the output at the same
+	 * time by the common fork join pool.  The output is the same as
+	 * that of decode(File, File, boolean).
+	 *
+	 * @param fIn File to be decoded.
+	 * @param fOut File to which the results should be written (may be the same as fIn).
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @throws IOException if an IO error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void decodeParallel(File fIn, File fOut, boolean throwExceptions) throws IOException {
+		Base64Parallel.decode(fIn, fOut, throwExceptions);
+	}
+
 	/**
 	 * Determines if the byte array is in base64 format.
 	 * <p>
@@ -1444,7 +2105,8 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static boolean isBase64(byte[] bytes){
-		return isInputBase64NoIO(getIntSequence(bytes));
+		Validator validator = new Validator();
+		return validator.scan(bytes, 0, bytes.length) && validator.isValid();
 	}
 
 	/**
@@ -1473,7 +2135,7 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static boolean isBase64(CharSequence string){
-		return isInputBase64NoIO(getIntSequence(string));
+		return isInputBase64(string);
 	}
 
 	/**
@@ -1482,7 +2144,7 @@ public class Base64 {
 	 * @deprecated enc parameter is never used use isBase64(CharSequence)
 	 */
 	public static boolean isBase64(CharSequence string, String enc) throws UnsupportedEncodingException {
-		return isInputBase64NoIO(getIntSequence(string));
+		return isInputBase64(string);
 	}
 
 	/**
@@ -1511,7 +2173,8 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static boolean isBase64(char[] chars){
-		return isInputBase64NoIO(getIntSequence(chars));
+		Validator validator = new Validator();
+		return validator.scan(chars, 0, chars.length) && validator.isValid();
 	}
 
 	/**
@@ -1539,9 +2202,60 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static boolean isBase64(File fIn) throws IOException {
-		return isBase64(new BufferedInputStream(new FileInputStream(fIn)));
+		FileChannel channel = FileChannel.open(fIn.toPath(), StandardOpenOption.READ);
+		try {
+			Validator validator = new Validator();
+			long size = channel.size();
+			if (size < MAPPED_FILE_SIZE){
+				// Mapping a small file costs more than reading it,
+				// and the mapping isn't released until garbage collection
+				byte[] buffer = new byte[(int)Math.max(1, Math.min(size, READ_BUFFER_SIZE))];
+				ByteBuffer wrapped = ByteBuffer.wrap(buffer);
+				long position = 0;
+				int read;
+				while ((read = channel.read(wrapped, position)) != -1){
+					if (!validator.scan(buffer, 0, read)) return false;
+					position += read;
+					wrapped.clear();
+				}
+			} else {
+				// Large files are memory mapped a region at a time so that they
+				// can be scanned without copying them through a buffer
+				for (long position = 0; position < size; position += MAPPED_REGION_SIZE){
+					long length = Math.min(MAPPED_REGION_SIZE, size - position);
+					if (!validator.scan(channel.map(FileChannel.MapMode.READ_ONLY, position, length))) return false;
+				}
+			}
+			return validator.isValid();
+		} finally {
+			channel.close();
+		}
 	}
 
+	/**
+	 * Files at least this big are memory mapped when checking whether
+	 * they are in base64 format; smaller files are read.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int MAPPED_FILE_SIZE = 0x1000000;
+
+	/**
+	 * Size of the regions of a file that are memory mapped at once when
+	 * checking whether a file is in base64 format.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int MAPPED_REGION_SIZE = 0x4000000;
+
+	/**
+	 * Size of the buffer through which smaller files are read when
+	 * checking whether they are in base64 format.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int READ_BUFFER_SIZE = 0x10000;
+
 	/**
 	 * Reads data from the stream and determines if it is
 	 * in base64 format.
@@ -1568,7 +2282,13 @@ public class Base64 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static boolean isBase64(InputStream in) throws IOException {
-		return isInputBase64(getIntSequence(in));
+		Validator validator = new Validator();
+		byte[] buffer = new byte[DECODE_BLOCK_SIZE];
+		int read;
+		while ((read = in.read(buffer)) != END_OF_INPUT){
+			if (!validator.scan(buffer, 0, read)) return false;
+		}
+		return validator.isValid();
 	}
 
 	/**
@@ -1597,80 +2317,32 @@ public class Base64 {
 	 * @since ostermillerutils 1.08.03
 	 */
 	public static boolean isBase64(Reader in) throws IOException {
-		return isInputBase64(getIntSequence(in));
-	}
-
-	private static boolean isInputBase64NoIO(IntSequence in) {
-		try {
-			return isInputBase64(in);
-		} catch (IOException iox){
-			throw new RuntimeException(iox);
-		}
-	}
-
-	private static boolean isInputBase64(IntSequence in) throws IOException {
-		long numBase64Chars = 0;
-		int numPadding = 0;
+		Validator validator = new Validator();
+		char[] buffer = new char[DECODE_BLOCK_SIZE];
 		int read;
-		while ((read = in.nextInt()) >= 0){
-			if (read >= reverseBase64Chars.length) return false;
-			read = reverseBase64Chars[read];
-			if (read == NON_BASE_64) return false;
-			if (read == NON_BASE_64_WHITESPACE){
-				// ignore white space
-			} else if (read == NON_BASE_64_PADDING){
-				numPadding++;
-				numBase64Chars++;
-			} else if (numPadding > 0){
-				return false;
-			} else {
-				numBase64Chars++;
-			}
+		while ((read = in.read(buffer)) != END_OF_INPUT){
+			if (!validator.scan(buffer, 0, read)) return false;
 		}
-		if (numBase64Chars == 0) return false;
-		if (numBase64Chars % 4 != 0) return false;
-		return true;
-	}
-
-	private static void decodeInput(IntSequence in, OutputStream out, boolean throwExceptions) throws IOException {
-		// Base64 decoding converts four bytes of input to three bytes of output
-		int[] inBuffer = new int[4];
-
-		// read bytes un-mapping them from their ASCII encoding in the process
-		// we must read at least two bytes to be able to output anything
-		boolean done = false;
-		while(!done && (inBuffer[0] = readBase64(in, throwExceptions)) != END_OF_INPUT
-			&& (inBuffer[1] = readBase64(in,throwExceptions)) != END_OF_INPUT){
-			// Fill the buffer
-			inBuffer[2] = readBase64(in, throwExceptions);
-			inBuffer[3] = readBase64(in, throwExceptions);
-
-			// Calculate the output
-			// The first two bytes of our in buffer will always be valid
-			// but we must check to make sure the other two bytes
-			// are not END_OF_INPUT before using them.
-			// The basic idea is that the four bytes will get reconstituted
-			// into three bytes along these lines:
-			// [xxAAAAAA] [xxBBBBBB] [xxCCCCCC] [xxDDDDDD]
-			//      [AAAAAABB] [BBBBCCCC] [CCDDDDDD]
-			// bytes are considered to be zero when absent.
-
-			// six A and two B
-			out.write(inBuffer[0] << 2 | inBuffer[1] >> 4);
-			if (inBuffer[2] != END_OF_INPUT){
-				// four B and four C
-				out.write(inBuffer[1] << 4 | inBuffer[2] >> 2);
-				if (inBuffer[3] != END_OF_INPUT){
-					// two C and six D
-					out.write(inBuffer[2] << 6 | inBuffer[3]);
-				} else {
-					done = true;
-				}
+		return validator.isValid();
+	}
+
+	private static boolean isInputBase64(CharSequence in) {
+		Validator validator = new Validator();
+		int length = in.length();
+		char[] buffer = new char[Math.min(length, DECODE_BLOCK_SIZE)];
+		String string = (in instanceof String)?(String)in:null;
+		for (int start = 0; start < length; start += buffer.length){
+			int end = Math.min(start + buffer.length, length);
+			if (string != null){
+				string.getChars(start, end, buffer, 0);
 			} else {
-				done = true;
+				for (int i = start; i < end; i++){
+					buffer[i - start] = in.charAt(i);
+				}
 			}
+			if (!validator.scan(buffer, 0, end - start)) return false;
 		}
-		out.flush();
+		return validator.isValid();
 	}
 
 	/*
@@ -1680,117 +2352,434 @@ public class Base64 {
 	 * If it isn't the next largest size that is divisible
 	 * by four is used.
 	 */
-	private static final int calculateOutputLength(int inputLength){
-		int mod;
-		if ((mod = inputLength % 4) != 0){
-			inputLength += 4 - mod;
-		}
-		return (inputLength * 3 / 4);
+	static final int calculateOutputLength(int inputLength){
+		return (int)(((inputLength + 3L) / 4L) * 3L);
 	}
 
 	/**
-	 * Reads the next (decoded) Base64 character from the input stream.
-	 * Non Base64 characters are skipped.
+	 * Number of characters read at once when decoding a stream.
 	 *
-	 * @param in Input source from which bytes are read.
-	 * @param position position in the input s
-	 * @param throwExceptions Throw an exception if an unexpected character is encountered.
-	 * @return the next Base64 character from the stream or -1 if there are no more Base64 characters on the stream.
-	 * @throws IOException if an IO Error occurs.
-	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
-	 *
-	 * @since ostermillerutils 1.00.00
+	 * @since ostermillerutils 1.09.00
 	 */
-	private static final int readBase64(IntSequence in, boolean throwExceptions) throws IOException {
-		int read;
-		int numPadding = 0;
-		do {
-			read = in.nextInt();
-			if (read < 0) return END_OF_INPUT;
-			if (read >= reverseBase64Chars.length){
-				read = NON_BASE_64;
-			} else {
-				read = reverseBase64Chars[(byte)read];
-			}
-			if (throwExceptions && (read == NON_BASE_64 || (numPadding > 0 && read > NON_BASE_64))){
-				throw new Base64DecodingException (
-					MessageFormat.format(
-						labels.getString("unexpectedchar"),
-						(Object[])new String[] {
-							"'" + (char)read + "' (0x" + Integer.toHexString(read) + ")"
-						}
-					),
-					(char)read
-				);
-			}
-			if (read == NON_BASE_64_PADDING){
-				numPadding++;
-			}
-		} while (read <= NON_BASE_64);
-		return read;
-	}
+	private static final int DECODE_BLOCK_SIZE = 0x10000;
 
-	private static interface IntSequence {
-		public int nextInt() throws IOException;
+	/**
+	 * Decodes blocks of Base64 characters using the reverse lookup table.
+	 * Characters that are not part of the Base64 alphabet are skipped.
+	 * Decoding state (Base64 characters that have not yet made up a
+	 * full group of four) is kept between blocks so that a stream
+	 * may be decoded a block at a time.
+	 * <p>
+	 * Most input is made up of long runs of Base64 characters, so groups of
+	 * four characters are decoded together whenever possible and other
+	 * characters (white space, padding, and invalid characters) are handled
+	 * one at a time.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static final class Decoder {
+
+		/**
+		 * Whether to throw exceptions when unexpected data is encountered.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private final boolean throwExceptions;
+
+		/**
+		 * Reverse lookup table for the alphabet being decoded.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private final byte[] reverse;
+
+		/**
+		 * Bits from Base64 characters that have not yet been output.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private int bits = 0;
+
+		/**
+		 * Number of Base64 characters whose bits have not yet been output (0-3).
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private int count = 0;
+
+		/**
+		 * Whether padding has been seen.  Only tracked when
+		 * throwing exceptions: Base64 characters may not follow padding.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private boolean padding = false;
+
+		/**
+		 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		Decoder(boolean throwExceptions){
+			this(reverseBase64Chars, throwExceptions);
+		}
 
-		public int length();
-	}
+		/**
+		 * @param reverse Reverse lookup table for the alphabet being decoded.
+		 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		Decoder(byte[] reverse, boolean throwExceptions){
+			this.reverse = reverse;
+			this.throwExceptions = throwExceptions;
+		}
 
-	private static IntSequence getIntSequence(final InputStream in){
-		return new IntSequence(){
-			public int nextInt() throws IOException {
-				return in.read();
+		/**
+		 * Decode a block of bytes.
+		 *
+		 * @param in Base64 encoded data.
+		 * @param inOffset Index of the first byte to decode.
+		 * @param inLength Number of bytes to decode.
+		 * @param out Array into which decoded data is written.  There must be room for calculateOutputLength(inLength + 3) bytes.
+		 * @param outOffset Index at which to start writing.
+		 * @return the number of bytes written.
+		 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		int decode(byte[] in, int inOffset, int inLength, byte[] out, int outOffset) throws Base64DecodingException {
+			byte[] reverse = this.reverse;
+			int i = inOffset;
+			int end = inOffset + inLength;
+			int o = outOffset;
+			while (i < end){
+				if (count == 0 && !padding){
+					// The basic idea is that the four bytes will get reconstituted
+					// into three bytes along these lines:
+					// [xxAAAAAA] [xxBBBBBB] [xxCCCCCC] [xxDDDDDD]
+					//      [AAAAAABB] [BBBBCCCC] [CCDDDDDD]
+					int last = end - 4;
+					while (i <= last){
+						int a = reverse[in[i] & 0xff];
+						int b = reverse[in[i+1] & 0xff];
+						int c = reverse[in[i+2] & 0xff];
+						int d = reverse[in[i+3] & 0xff];
+						// Any character that is not in the alphabet maps to a negative number
+						if ((a | b | c | d) < 0) break;
+						int group = a << 18 | b << 12 | c << 6 | d;
+						out[o] = (byte)(group >> 16);
+						out[o+1] = (byte)(group >> 8);
+						out[o+2] = (byte)group;
+						i += 4;
+						o += 3;
+					}
+					if (i == end) break;
+				}
+				o = decode(in[i++] & 0xff, out, o);
 			}
-			public int length() {
-				return -1;
+			return o - outOffset;
+		}
+
+		/**
+		 * Decode a block of characters.
+		 *
+		 * @param in Base64 encoded data.
+		 * @param inOffset Index of the first character to decode.
+		 * @param inLength Number of characters to decode.
+		 * @param out Array into which decoded data is written.  There must be room for calculateOutputLength(inLength + 3) bytes.
+		 * @param outOffset Index at which to start writing.
+		 * @return the number of bytes written.
+		 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		int decode(char[] in, int inOffset, int inLength, byte[] out, int outOffset) throws Base64DecodingException {
+			byte[] reverse = this.reverse;
+			int i = inOffset;
+			int end = inOffset + inLength;
+			int o = outOffset;
+			while (i < end){
+				if (count == 0 && !padding){
+					int last = end - 4;
+					while (i <= last){
+						char ca = in[i];
+						char cb = in[i+1];
+						char cc = in[i+2];
+						char cd = in[i+3];
+						if ((ca | cb | cc | cd) >= reverse.length) break;
+						int a = reverse[ca];
+						int b = reverse[cb];
+						int c = reverse[cc];
+						int d = reverse[cd];
+						if ((a | b | c | d) < 0) break;
+						int group = a << 18 | b << 12 | c << 6 | d;
+						out[o] = (byte)(group >> 16);
+						out[o+1] = (byte)(group >> 8);
+						out[o+2] = (byte)group;
+						i += 4;
+						o += 3;
+					}
+					if (i == end) break;
+				}
+				o = decode(in[i++], out, o);
 			}
-		};
-	}
+			return o - outOffset;
+		}
 
-	private static IntSequence getIntSequence(final Reader in){
-		return new IntSequence(){
-			public int nextInt() throws IOException {
-				return in.read();
+		/**
+		 * Decode a single character.  This is the slow path used for
+		 * white space, padding, invalid characters, and partial groups.
+		 *
+		 * @param read the character.
+		 * @param out Array into which decoded data is written.
+		 * @param o Index at which to write.
+		 * @return index at which to write next.
+		 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private int decode(int read, byte[] out, int o) throws Base64DecodingException {
+			int value = (read < reverse.length)?reverse[read]:NON_BASE_64;
+			if (value >= 0){
+				if (padding) throw unexpectedCharacter(read);
+				bits = bits << 6 | value;
+				if (++count == 4){
+					out[o++] = (byte)(bits >> 16);
+					out[o++] = (byte)(bits >> 8);
+					out[o++] = (byte)bits;
+					bits = 0;
+					count = 0;
+				}
+			} else if (throwExceptions){
+				if (value == NON_BASE_64) throw unexpectedCharacter(read);
+				if (value == NON_BASE_64_PADDING) padding = true;
 			}
-			public int length() {
-				return -1;
+			return o;
+		}
+
+		/**
+		 * Output any bytes left over from a partial group at the end of the data.
+		 * Two Base64 characters make one byte, three make two bytes.
+		 *
+		 * @param out Array into which decoded data is written.  There must be room for two bytes.
+		 * @param outOffset Index at which to start writing.
+		 * @return the number of bytes written.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		int finish(byte[] out, int outOffset){
+			int o = outOffset;
+			if (count == 2){
+				out[o++] = (byte)(bits >> 4);
+			} else if (count == 3){
+				out[o++] = (byte)(bits >> 10);
+				out[o++] = (byte)(bits >> 2);
 			}
-		};
+			bits = 0;
+			count = 0;
+			padding = false;
+			return o - outOffset;
+		}
+
+		/**
+		 * Whether the data decoded so far ends on a group boundary
+		 * (a multiple of four Base64 characters).
+		 *
+		 * @return true if there is no partial group pending.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		boolean atGroupBoundary(){
+			return count == 0;
+		}
 	}
 
-	private static IntSequence getIntSequence(final CharSequence in){
-		return new IntSequence(){
-			int i = 0;
-			public int nextInt() throws IOException {
-				return (i >= in.length()) ? END_OF_INPUT : in.charAt(i++)&0xFFFF;
+	/**
+	 * Checks blocks of data for base64 format using the reverse lookup table.
+	 * Data is in base64 format if it contains only base64 characters
+	 * and white space, with equals sign padding only at the end, and
+	 * the number of base64 and padding characters is divisible by four.
+	 * <p>
+	 * Scanning stops at the first character that rules the data out.
+	 * Runs of eight base64 characters are checked with a single sign test.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final class Validator {
+
+		/**
+		 * Number of base64 and padding characters seen.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private long count = 0;
+
+		/**
+		 * Whether padding has been seen.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private boolean padding = false;
+
+		/**
+		 * Scan a block of bytes.
+		 *
+		 * @param in data.
+		 * @param offset index of the first byte to scan.
+		 * @param length number of bytes to scan.
+		 * @return false if the data is definitely not in base64 format.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private boolean scan(byte[] in, int offset, int length){
+			int i = offset;
+			int end = offset + length;
+			int last = end - 8;
+			while (i < end){
+				if (!padding){
+					int start = i;
+					// Any character that is not in the alphabet maps to a negative number
+					while (i <= last && (
+						reverseBase64Chars[in[i] & 0xff] | reverseBase64Chars[in[i+1] & 0xff] |
+						reverseBase64Chars[in[i+2] & 0xff] | reverseBase64Chars[in[i+3] & 0xff] |
+						reverseBase64Chars[in[i+4] & 0xff] | reverseBase64Chars[in[i+5] & 0xff] |
+						reverseBase64Chars[in[i+6] & 0xff] | reverseBase64Chars[in[i+7] & 0xff]
+					) >= 0){
+						i += 8;
+					}
+					count += i - start;
+				}
+				// The run that held something else (such as a line break)
+				// one at a time, then back to runs of eight
+				int stop = Math.min(end, i + 8);
+				for (; i < stop; i++){
+					if (!scan(reverseBase64Chars[in[i] & 0xff])) return false;
+				}
 			}
-			public int length() {
-				return in.length();
+			return true;
+		}
+
+		/**
+		 * Scan a block of characters.
+		 *
+		 * @param in data.
+		 * @param offset index of the first character to scan.
+		 * @param length number of characters to scan.
+		 * @return false if the data is definitely not in base64 format.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private boolean scan(char[] in, int offset, int length){
+			int i = offset;
+			int end = offset + length;
+			int last = end - 8;
+			while (i < end){
+				if (!padding){
+					int start = i;
+					while (i <= last){
+						// Characters beyond the lookup table are not base64
+						if ((in[i] | in[i+1] | in[i+2] | in[i+3] | in[i+4] | in[i+5] | in[i+6] | in[i+7]) >= reverseBase64Chars.length) break;
+						if ((
+							reverseBase64Chars[in[i]] | reverseBase64Chars[in[i+1]] |
+							reverseBase64Chars[in[i+2]] | reverseBase64Chars[in[i+3]] |
+							reverseBase64Chars[in[i+4]] | reverseBase64Chars[in[i+5]] |
+							reverseBase64Chars[in[i+6]] | reverseBase64Chars[in[i+7]]
+						) < 0) break;
+						i += 8;
+					}
+					count += i - start;
+				}
+				int stop = Math.min(end, i + 8);
+				for (; i < stop; i++){
+					char c = in[i];
+					if (c >= reverseBase64Chars.length) return false;
+					if (!scan(reverseBase64Chars[c])) return false;
+				}
 			}
-		};
-	}
+			return true;
+		}
 
-	private static IntSequence getIntSequence(final char[] in){
-		return new IntSequence(){
-			int i = 0;
-			public int nextInt() throws IOException {
-				return (i >= in.length) ? END_OF_INPUT : in[i++]&0xFFFF;
+		/**
+		 * Scan the remaining bytes of a buffer without changing its position.
+		 *
+		 * @param in data.
+		 * @return false if the data is definitely not in base64 format.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private boolean scan(ByteBuffer in){
+			if (in.hasArray()) return scan(in.array(), in.arrayOffset() + in.position(), in.remaining());
+			int i = in.position();
+			int end = in.limit();
+			int last = end - 8;
+			while (i < end){
+				if (!padding){
+					int start = i;
+					while (i <= last && (
+						reverseBase64Chars[in.get(i) & 0xff] | reverseBase64Chars[in.get(i+1) & 0xff] |
+						reverseBase64Chars[in.get(i+2) & 0xff] | reverseBase64Chars[in.get(i+3) & 0xff] |
+						reverseBase64Chars[in.get(i+4) & 0xff] | reverseBase64Chars[in.get(i+5) & 0xff] |
+						reverseBase64Chars[in.get(i+6) & 0xff] | reverseBase64Chars[in.get(i+7) & 0xff]
+					) >= 0){
+						i += 8;
+					}
+					count += i - start;
+				}
+				int stop = Math.min(end, i + 8);
+				for (; i < stop; i++){
+					if (!scan(reverseBase64Chars[in.get(i) & 0xff])) return false;
+				}
 			}
-			public int length() {
-				return in.length;
+			return true;
+		}
+
+		/**
+		 * Scan a single character.
+		 *
+		 * @param value the character's value in the reverse lookup table.
+		 * @return false if the data is definitely not in base64 format.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private boolean scan(int value){
+			if (value >= 0){
+				if (padding) return false;
+				count++;
+			} else if (value == NON_BASE_64_PADDING){
+				padding = true;
+				count++;
+			} else if (value == NON_BASE_64){
+				return false;
 			}
-		};
+			return true;
+		}
+
+		/**
+		 * @return whether all the data scanned (assuming each scan returned true) is in base64 format.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		private boolean isValid(){
+			return count > 0 && count % 4 == 0;
+		}
 	}
 
-	private static IntSequence getIntSequence(final byte[] in){
-		return new IntSequence(){
-			int i = 0;
-			public int nextInt() throws IOException {
-				return (i >= in.length) ? END_OF_INPUT : in[i++]&0xFF;
-			}
-			public int length() {
-				return in.length;
-			}
-		};
+	/**
+	 * @param read the unexpected character.
+	 * @return an exception describing the unexpected character.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static Base64DecodingException unexpectedCharacter(int read){
+		return new Base64DecodingException (
+			MessageFormat.format(
+				labels.getString("unexpectedchar"),
+				(Object[])new String[] {
+					"'" + (char)read + "' (0x" + Integer.toHexString(read) + ")"
+				}
+			),
+			(char)read
+		);
 	}
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * An input stream that reads Base64 encoded data from another stream
+ * and returns the decoded data.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * Data is decoded a block at a time as it is read so that
+ * arbitrarily large amounts of data can be decoded with a
+ * small, fixed amount of memory.  The decoded data is the same as
+ * that of {@link Base64#decode(InputStream, OutputStream, boolean)}.
+ * Characters that are not part of the Base64 alphabet are skipped,
+ * or cause a Base64DecodingException to be thrown if requested.
+ *
+ * @see Base64
+ * @see Base64EncodingOutputStream
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class Base64DecodingInputStream extends FilterInputStream {
+
+	/**
+	 * Number of encoded bytes read from the underlying stream at a time.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int BLOCK_SIZE = 0x1000;
+
+	/**
+	 * Decoding state carried from one block to the next.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final Base64.Decoder decoder;
+
+	/**
+	 * Encoded data read from the underlying stream.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final byte[] encoded = new byte[BLOCK_SIZE];
+
+	/**
+	 * Decoded data waiting to be read.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final byte[] decoded = new byte[Base64.calculateOutputLength(BLOCK_SIZE + 3)];
+
+	/**
+	 * Index of the next decoded byte to return.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private int position = 0;
+
+	/**
+	 * Number of decoded bytes in the buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private int limit = 0;
+
+	/**
+	 * Whether the underlying stream has been read to the end.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private boolean endOfInput = false;
+
+	/**
+	 * Create a stream that decodes data, ignoring any characters
+	 * that are not part of the Base64 alphabet.
+	 *
+	 * @param in Stream from which encoded data is read.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64DecodingInputStream(InputStream in){
+		this(in, false);
+	}
+
+	/**
+	 * Create a stream that decodes data.
+	 *
+	 * @param in Stream from which encoded data is read.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64DecodingInputStream(InputStream in, boolean throwExceptions){
+		super(in);
+		decoder = new Base64.Decoder(throwExceptions);
+	}
+
+	/**
+	 * Reads the next byte of decoded data.
+	 *
+	 * @return the next byte of data, or -1 if the end of the stream is reached.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read() throws IOException {
+		if (!fill()) return -1;
+		return decoded[position++] & 0xff;
+	}
+
+	/**
+	 * Reads up to length bytes of decoded data into an array of bytes.
+	 *
+	 * @param b the buffer into which the data is read.
+	 * @param off the start offset of the data.
+	 * @param len the maximum number of bytes read.
+	 * @return the total number of bytes read into the buffer, or -1 if there is no more data because the end of the stream has been reached.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read(byte b[], int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) throw new IndexOutOfBoundsException();
+		if (len == 0) return 0;
+		if (!fill()) return -1;
+		int length = Math.min(len, limit - position);
+		System.arraycopy(decoded, position, b, off, length);
+		position += length;
+		return length;
+	}
+
+	/**
+	 * Skips over and discards n bytes of decoded data.
+	 *
+	 * @param n the number of bytes to be skipped.
+	 * @return the actual number of bytes skipped.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n && fill()){
+			int length = (int)Math.min(n - skipped, limit - position);
+			position += length;
+			skipped += length;
+		}
+		return skipped;
+	}
+
+	/**
+	 * Returns the number of decoded bytes that can be read without blocking.
+	 *
+	 * @return the number of bytes that are already decoded.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int available() throws IOException {
+		return limit - position;
+	}
+
+	/**
+	 * Mark and reset are not supported.
+	 *
+	 * @return false
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public boolean markSupported(){
+		return false;
+	}
+
+	/**
+	 * Mark and reset are not supported.
+	 *
+	 * @param readlimit ignored.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void mark(int readlimit){
+		// not supported
+	}
+
+	/**
+	 * Mark and reset are not supported.
+	 *
+	 * @throws IOException always.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+
+	/**
+	 * Make sure that there is decoded data in the buffer, reading and
+	 * decoding more from the underlying stream if needed.
+	 *
+	 * @return false if there is no more data.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private boolean fill() throws IOException {
+		while (position == limit){
+			if (endOfInput) return false;
+			position = 0;
+			limit = 0;
+			int read = in.read(encoded, 0, BLOCK_SIZE);
+			if (read == -1){
+				endOfInput = true;
+				limit = decoder.finish(decoded, 0);
+			} else {
+				limit = decoder.decode(encoded, 0, read, decoded, 0);
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * An output stream that Base64 encodes all data written to it and
+ * passes the encoded data on to another stream.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * Data is encoded a block at a time as it is written so that
+ * arbitrarily large amounts of data can be encoded with a
+ * small, fixed amount of memory.  The output is the same as
+ * that of {@link Base64#encode(InputStream, OutputStream, boolean)}.
+ * <p>
+ * Base64 encodes three bytes at a time, and padding may only
+ * be added at the very end of the data.  Up to a block of
+ * data is therefore held back until more is written or until the
+ * stream is finished or closed.  Calling {@link #flush()} does not
+ * force held back data to be encoded.
+ *
+ * @see Base64
+ * @see Base64DecodingInputStream
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class Base64EncodingOutputStream extends FilterOutputStream {
+
+	/**
+	 * Number of bytes held before they are encoded and written.
+	 * A whole number of lines.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int BLOCK_SIZE = Base64.BYTES_PER_LINE * 64;
+
+	/**
+	 * Whether line breaks are inserted every 76 characters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final boolean lineBreaks;
+
+	/**
+	 * Bytes that have been written but not yet encoded.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final byte[] buffer = new byte[BLOCK_SIZE];
+
+	/**
+	 * Number of bytes in the buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private int buffered = 0;
+
+	/**
+	 * Encoded data waiting to be written to the underlying stream.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final byte[] encoded;
+
+	/**
+	 * Whether finish() has been called.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private boolean finished = false;
+
+	/**
+	 * Create a stream that encodes with line breaks every 76 characters.
+	 *
+	 * @param out Stream to which encoded data is written.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64EncodingOutputStream(OutputStream out){
+		this(out, true);
+	}
+
+	/**
+	 * Create a stream that encodes data.
+	 *
+	 * @param out Stream to which encoded data is written.
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64EncodingOutputStream(OutputStream out, boolean lineBreaks){
+		super(out);
+		this.lineBreaks = lineBreaks;
+		encoded = new byte[Base64.encodedLength(BLOCK_SIZE, lineBreaks)];
+	}
+
+	/**
+	 * Writes the specified byte to this output stream.
+	 *
+	 * @param b the byte.
+	 * @throws IOException if an I/O error occurs or the stream has been finished.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(int b) throws IOException {
+		ensureOpen();
+		buffer[buffered++] = (byte)b;
+		if (buffered == BLOCK_SIZE){
+			encodeBuffer();
+		}
+	}
+
+	/**
+	 * Writes length bytes from the specified byte array starting a
+	 * offset off to this output stream.
+	 *
+	 * @param b the data.
+	 * @param off the start offset in the data.
+	 * @param len the number of bytes to write.
+	 * @throws IOException if an I/O error occurs or the stream has been finished.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(byte b[], int off, int len) throws IOException {
+		ensureOpen();
+		if (off < 0 || len < 0 || off + len > b.length) throw new IndexOutOfBoundsException();
+		if (buffered > 0){
+			int length = Math.min(len, BLOCK_SIZE - buffered);
+			System.arraycopy(b, off, buffer, buffered, length);
+			buffered += length;
+			off += length;
+			len -= length;
+			if (buffered < BLOCK_SIZE) return;
+			encodeBuffer();
+		}
+		// Whole blocks are encoded straight from the caller's array
+		while (len >= BLOCK_SIZE){
+			out.write(encoded, 0, Base64.encodeBlock(b, off, BLOCK_SIZE, encoded, 0, lineBreaks));
+			off += BLOCK_SIZE;
+			len -= BLOCK_SIZE;
+		}
+		System.arraycopy(b, off, buffer, 0, len);
+		buffered = len;
+	}
+
+	/**
+	 * Encode any data that has been held back, including padding and
+	 * a final line break if needed, and write it to the underlying stream
+	 * without closing it.  No more data may be written after the stream
+	 * is finished.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void finish() throws IOException {
+		if (!finished){
+			encodeBuffer();
+			finished = true;
+			out.flush();
+		}
+	}
+
+	/**
+	 * Finish encoding and close the underlying stream.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Encode the buffered data and write it to the underlying stream.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void encodeBuffer() throws IOException {
+		if (buffered > 0){
+			out.write(encoded, 0, Base64.encodeBlock(buffer, 0, buffered, encoded, 0, lineBreaks));
+			buffered = 0;
+		}
+	}
+
+	/**
+	 * @throws IOException if the stream has been finished.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void ensureOpen() throws IOException {
+		if (finished) throw new IOException("Write after Base64 encoding finished");
+	}
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * A variant of Base64: the alphabet, whether padding is used, and
+ * how long lines are.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/Base64.html">ostermiller.org</a>.
+ * <p>
+ * The static methods of {@link Base64} always use the standard alphabet
+ * with padding.  A Base64Format is configured once and then
+ * used to encode and decode any number of times.  The lookup tables for the
+ * alphabet are computed when the format is created, so there is no
+ * per call overhead: encoding and decoding run the same code as the
+ * static methods of Base64.
+ * <p>
+ * Formats are immutable and may be shared between threads.
+ * <p>
+ * Decoding is lenient in the same ways as Base64: white space, padding,
+ * and (unless exceptions are requested) other characters that are not part of
+ * the alphabet are skipped.  Padding is optional when decoding regardless
+ * of whether the format uses it when encoding.
+ *
+ * @see Base64
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public final class Base64Format {
+
+	/**
+	 * The standard alphabet (RFC 4648) with padding and no line breaks.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final Base64Format STANDARD = new Base64Format('+', '/', true, 0);
+
+	/**
+	 * The standard alphabet with padding and line breaks every
+	 * 76 characters, as used by MIME and by default by Base64.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final Base64Format MIME = new Base64Format('+', '/', true, 76);
+
+	/**
+	 * The URL and file name safe alphabet (RFC 4648),
+	 * using '-' and '_' in place of '+' and '/', with padding.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final Base64Format URL_SAFE = new Base64Format('-', '_', true, 0);
+
+	/**
+	 * The URL and file name safe alphabet without padding,
+	 * as used by JSON web tokens.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final Base64Format URL_SAFE_NO_PADDING = new Base64Format('-', '_', false, 0);
+
+	/**
+	 * The sixty-four characters of the alphabet.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final byte[] alphabet;
+
+	/**
+	 * Reverse lookup table for the alphabet.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final byte[] reverse;
+
+	/**
+	 * Whether encoded output is padded to a multiple of four characters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final boolean padding;
+
+	/**
+	 * Number of characters per line of encoded output, zero for no line breaks.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final int lineLength;
+
+	/**
+	 * Number of bytes of input per line of encoded output, zero for no line breaks.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final int lineBytes;
+
+	/**
+	 * Create a format.  The first sixty-two characters of the alphabet
+	 * are always A-Z, a-z, and 0-9.
+	 *
+	 * @param char62 The sixty-third character of the alphabet ('+' in the standard alphabet).
+	 * @param char63 The sixty-fourth character of the alphabet ('/' in the standard alphabet).
+	 * @param padding Whether to pad encoded output with equals signs to a multiple of four characters.
+	 * @param lineLength Number of characters after which to insert a line break when encoding, a multiple of four, or zero for no line breaks.
+	 * @throws IllegalArgumentException if the characters are not distinct printable ASCII symbols other than '=', or the line length is not a multiple of four.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Format(char char62, char char63, boolean padding, int lineLength){
+		if (!isSymbol(char62) || !isSymbol(char63) || char62 == char63){
+			throw new IllegalArgumentException("Alphabet characters must be distinct ASCII symbols other than '=': " + char62 + char63);
+		}
+		if (lineLength < 0 || lineLength % 4 != 0){
+			throw new IllegalArgumentException("Line length must be a non-negative multiple of four: " + lineLength);
+		}
+		alphabet = new byte[64];
+		System.arraycopy(Base64.base64Chars, 0, alphabet, 0, 62);
+		alphabet[62] = (byte)char62;
+		alphabet[63] = (byte)char63;
+		reverse = Base64.reverseAlphabet(alphabet);
+		this.padding = padding;
+		this.lineLength = lineLength;
+		this.lineBytes = lineLength / 4 * 3;
+	}
+
+	/**
+	 * @param c a character.
+	 * @return whether the character may be used as one of the last two characters of an alphabet.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static boolean isSymbol(char c){
+		return c > ' ' && c < 0x7f && c != '=' && !Character.isLetterOrDigit(c);
+	}
+
+	/**
+	 * Get a format like this one but with or without padding.
+	 *
+	 * @param padding Whether to pad encoded output with equals signs.
+	 * @return a format with the given padding.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Format withPadding(boolean padding){
+		if (padding == this.padding) return this;
+		return new Base64Format((char)alphabet[62], (char)alphabet[63], padding, lineLength);
+	}
+
+	/**
+	 * Get a format like this one but with a different line length.
+	 *
+	 * @param lineLength Number of characters after which to insert a line break, a multiple of four, or zero for no line breaks.
+	 * @return a format with the given line length.
+	 * @throws IllegalArgumentException if the line length is not a multiple of four.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Base64Format withLineLength(int lineLength){
+		if (lineLength == this.lineLength) return this;
+		return new Base64Format((char)alphabet[62], (char)alphabet[63], padding, lineLength);
+	}
+
+	/**
+	 * @return whether encoded output is padded with equals signs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean isPadding(){
+		return padding;
+	}
+
+	/**
+	 * @return number of characters per line of encoded output, zero for no line breaks.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getLineLength(){
+		return lineLength;
+	}
+
+	/**
+	 * Encode bytes.
+	 *
+	 * @param bytes The data to encode.
+	 * @return Encoded bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[] encode(byte[] bytes){
+		byte[] out = new byte[Base64.encodedLength(bytes.length, lineBytes, padding)];
+		Base64.encodeBlock(bytes, 0, bytes.length, out, 0, alphabet, lineBytes, padding);
+		return out;
+	}
+
+	/**
+	 * Encode bytes to a String.
+	 *
+	 * @param bytes The data to encode.
+	 * @return String containing the encoded data.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String encodeToString(byte[] bytes){
+		try {
+			return new String(encode(bytes), "ASCII");
+		} catch (UnsupportedEncodingException iex){
+			// ASCII is always supported
+			throw new RuntimeException(iex);
+		}
+	}
+
+	/**
+	 * Encode data from the InputStream to the OutputStream.
+	 *
+	 * @param in Stream from which to read data that needs to be encoded.
+	 * @param out Stream to which to write encoded data.
+	 * @throws IOException if there is a problem reading or writing.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void encode(InputStream in, OutputStream out) throws IOException {
+		Base64.encode(in, out, alphabet, lineBytes, padding);
+	}
+
+	/**
+	 * Decode bytes.  Characters that are not part of the alphabet are ignored.
+	 *
+	 * @param bytes The data to decode.
+	 * @return Decoded bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[] decode(byte[] bytes){
+		try {
+			return Base64.decodeToBytes(bytes, new Base64.Decoder(reverse, false));
+		} catch (IOException iox){
+			// This can't happen.
+			// Errors are only reported when throwing exceptions.
+			throw new RuntimeException(iox);
+		}
+	}
+
+	/**
+	 * Decode a String.  Characters that are not part of the alphabet are ignored.
+	 *
+	 * @param string The data to decode.
+	 * @return Decoded bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[] decode(CharSequence string){
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Base64.calculateOutputLength(string.length()));
+		try {
+			Base64.decode(string, out, new Base64.Decoder(reverse, false));
+		} catch (IOException iox){
+			// This can't happen.
+			// The output stream is a memory structure that doesn't
+			// actually use IO and errors are only reported when
+			// throwing exceptions.
+			throw new RuntimeException(iox);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decode data from the InputStream to the OutputStream.
+	 *
+	 * @param in Stream from which to read data that needs to be decoded.
+	 * @param out Stream to which to write decoded data.
+	 * @param throwExceptions Whether to throw exceptions when characters other than the alphabet, white space and padding are encountered.
+	 * @throws IOException if an IO error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void decode(InputStream in, OutputStream out, boolean throwExceptions) throws IOException {
+		Base64.decode(in, out, new Base64.Decoder(reverse, throwExceptions));
+	}
+}
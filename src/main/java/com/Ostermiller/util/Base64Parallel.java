@@ -0,0 +1,604 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Base64 encoding and decoding of large arrays and files split
+ * across the threads of the common fork join pool.
+ * <p>
+ * Encoding splits the input on line boundaries (a multiple of three
+ * bytes) so that every chunk can be encoded on its own and written
+ * straight to its final position in the output.
+ * <p>
+ * Decoding is done in two passes because characters that are not
+ * part of the Base64 alphabet (such as line breaks) are skipped.
+ * The first pass counts the Base64 characters in each chunk (and finds
+ * any unexpected characters).  From those counts each chunk can work out
+ * where its first whole group of four characters starts and where its
+ * output goes.  The second pass decodes the chunks, each one finishing
+ * the group that straddles its end.
+ * <p>
+ * Input that fits in a single chunk is handled on the calling thread.
+ *
+ * @see Base64
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+final class Base64Parallel {
+
+	/**
+	 * Number of bytes encoded by each task.  A whole number of lines.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static final int ENCODE_CHUNK_SIZE = Base64.BYTES_PER_LINE * 16384;
+
+	/**
+	 * Number of encoded bytes scanned and decoded by each task.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static final int DECODE_CHUNK_SIZE = 0x100000;
+
+	/**
+	 * Number of bytes read at a time past the end of a chunk to
+	 * finish the last group of four Base64 characters.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int LOOKAHEAD_SIZE = 0x100;
+
+	/**
+	 * This class need not be instantiated, all methods are static.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private Base64Parallel(){
+		// should not be called
+	}
+
+	/**
+	 * Encode an array.
+	 *
+	 * @param bytes Data to encode.
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 * @return Encoded data.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static byte[] encode(byte[] bytes, boolean lineBreaks){
+		if (bytes.length <= ENCODE_CHUNK_SIZE) return Base64.encode(bytes, lineBreaks);
+		byte[] out = new byte[Base64.encodedLength(bytes.length, lineBreaks)];
+		try {
+			encode(new ArraySource(bytes), new ArraySink(out), lineBreaks);
+		} catch (IOException x){
+			// This can't happen.
+			// The source and sink are arrays that don't actually use IO.
+			throw new RuntimeException(x);
+		}
+		return out;
+	}
+
+	/**
+	 * Decode an array.  Characters that are not part of the Base64
+	 * alphabet are skipped, or cause an exception when throwExceptions
+	 * is specified.
+	 *
+	 * @param bytes Data to decode.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @return Decoded data.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static byte[] decode(byte[] bytes, boolean throwExceptions) throws Base64DecodingException {
+		if (bytes.length <= DECODE_CHUNK_SIZE) return Base64.decodeToBytes(bytes, new Base64.Decoder(throwExceptions));
+		Source source = new ArraySource(bytes);
+		try {
+			long[] counts = countBase64Chars(source, throwExceptions);
+			byte[] out = new byte[(int)decodedLength(counts[counts.length - 1])];
+			decode(source, counts, new ArraySink(out));
+			return out;
+		} catch (Base64DecodingException x){
+			throw x;
+		} catch (IOException x){
+			// This can't happen.
+			// The source and sink are arrays that don't actually use IO.
+			throw new RuntimeException(x);
+		}
+	}
+
+	/**
+	 * Encode one file into another.
+	 *
+	 * @param fIn File to be encoded.
+	 * @param fOut File to which the results should be written (may be the same as fIn).
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 * @throws IOException if an IO error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static void encode(File fIn, File fOut, boolean lineBreaks) throws IOException {
+		convert(fIn, fOut, true, lineBreaks);
+	}
+
+	/**
+	 * Decode one file into another.
+	 *
+	 * @param fIn File to be decoded.
+	 * @param fOut File to which the results should be written (may be the same as fIn).
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @throws IOException if an IO error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static void decode(File fIn, File fOut, boolean throwExceptions) throws IOException {
+		convert(fIn, fOut, false, throwExceptions);
+	}
+
+	/**
+	 * Encode or decode one file to a temporary file using positional
+	 * reads and writes, then move the temporary file into place.
+	 *
+	 * @param fIn Input file.
+	 * @param fOut Output file (may be the same as fIn).
+	 * @param encode true to encode, false to decode.
+	 * @param option Whether to use line breaks when encoding, whether to throw exceptions when decoding.
+	 * @throws IOException if an IO error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void convert(File fIn, File fOut, boolean encode, boolean option) throws IOException {
+		File temp = File.createTempFile("Base64", null, null);
+		FileChannel in = null;
+		FileChannel out = null;
+		boolean moved = false;
+		try {
+			in = FileChannel.open(fIn.toPath(), StandardOpenOption.READ);
+			out = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE);
+			Source source = new ChannelSource(in);
+			Sink sink = new ChannelSink(out);
+			if (encode){
+				encode(source, sink, option);
+			} else {
+				decode(source, countBase64Chars(source, option), sink);
+			}
+			in.close();
+			in = null;
+			out.close();
+			out = null;
+			FileHelper.move(temp, fOut, true);
+			moved = true;
+		} finally {
+			if (in != null){
+				try {
+					in.close();
+				} catch (IOException ignore){
+					// already failing
+				}
+			}
+			if (out != null){
+				try {
+					out.close();
+				} catch (IOException ignore){
+					// already failing
+				}
+			}
+			if (!moved){
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Encode the source to the sink.
+	 *
+	 * @param source Data to encode.
+	 * @param sink Destination of the encoded data.
+	 * @param lineBreaks Whether to insert line breaks every 76 characters in the output.
+	 * @throws IOException if an IO error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void encode(final Source source, final Sink sink, final boolean lineBreaks) throws IOException {
+		long length = source.length();
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (long start = 0; start < length; start += ENCODE_CHUNK_SIZE){
+			final long chunkStart = start;
+			final int chunkLength = (int)Math.min(ENCODE_CHUNK_SIZE, length - start);
+			tasks.add(new RecursiveAction(){
+				private static final long serialVersionUID = 1L;
+				@Override protected void compute(){
+					try {
+						byte[] in = new byte[chunkLength];
+						source.read(chunkStart, in, 0, chunkLength);
+						byte[] out = new byte[Base64.encodedLength(chunkLength, lineBreaks)];
+						int encoded = Base64.encodeBlock(in, 0, chunkLength, out, 0, lineBreaks);
+						// Every chunk before this one is whole lines, so
+						// the output position can be calculated directly.
+						sink.write(encodedLength(chunkStart, lineBreaks), out, 0, encoded);
+					} catch (IOException x){
+						throw new UncheckedIOException(x);
+					}
+				}
+			});
+		}
+		runAll(tasks);
+	}
+
+	/**
+	 * Count the Base64 characters in each chunk of the source.
+	 *
+	 * @param source Data to scan.
+	 * @param throwExceptions Whether to throw exceptions when unexpected data is encountered.
+	 * @return Running totals: element i is the number of Base64 characters in the chunks before chunk i.  The last element is the total.
+	 * @throws IOException if an IO error occurs.
+	 * @throws Base64DecodingException if unexpected data is encountered when throwExceptions is specified.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static long[] countBase64Chars(final Source source, final boolean throwExceptions) throws IOException {
+		long length = source.length();
+		int chunks = (int)((length + DECODE_CHUNK_SIZE - 1) / DECODE_CHUNK_SIZE);
+		final Scan[] scans = new Scan[chunks];
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (int i = 0; i < chunks; i++){
+			final int chunk = i;
+			tasks.add(new RecursiveAction(){
+				private static final long serialVersionUID = 1L;
+				@Override protected void compute(){
+					try {
+						scans[chunk] = scan(source, chunk);
+					} catch (IOException x){
+						throw new UncheckedIOException(x);
+					}
+				}
+			});
+		}
+		runAll(tasks);
+		long[] counts = new long[chunks + 1];
+		long firstInvalid = -1;
+		long firstPadding = -1;
+		long lastBase64Char = -1;
+		for (int i = 0; i < chunks; i++){
+			Scan scan = scans[i];
+			counts[i + 1] = counts[i] + scan.count;
+			if (firstInvalid == -1) firstInvalid = scan.firstInvalid;
+			if (firstPadding == -1) firstPadding = scan.firstPadding;
+			lastBase64Char = Math.max(lastBase64Char, scan.lastBase64Char);
+		}
+		if (throwExceptions){
+			long error = firstInvalid;
+			if (firstPadding != -1 && lastBase64Char > firstPadding){
+				// Base64 characters may not follow padding.
+				long afterPadding = findBase64Char(source, firstPadding);
+				if (error == -1 || afterPadding < error) error = afterPadding;
+			}
+			if (error != -1){
+				byte[] b = new byte[1];
+				source.read(error, b, 0, 1);
+				throw Base64.unexpectedCharacter(b[0] & 0xff);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Scan one chunk for Base64 characters, padding, and invalid characters.
+	 *
+	 * @param source Data to scan.
+	 * @param chunk Index of the chunk.
+	 * @return results of the scan.
+	 * @throws IOException if an IO error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static Scan scan(Source source, int chunk) throws IOException {
+		long start = (long)chunk * DECODE_CHUNK_SIZE;
+		byte[] in = new byte[(int)Math.min(DECODE_CHUNK_SIZE, source.length() - start)];
+		source.read(start, in, 0, in.length);
+		Scan scan = new Scan();
+		int count = 0;
+		int firstInvalid = -1;
+		int firstPadding = -1;
+		int lastBase64Char = -1;
+		for (int i = 0; i < in.length; i++){
+			int value = Base64.reverseBase64Chars[in[i] & 0xff];
+			if (value >= 0){
+				count++;
+				lastBase64Char = i;
+			} else if (value == Base64.NON_BASE_64){
+				if (firstInvalid == -1) firstInvalid = i;
+			} else if (value == Base64.NON_BASE_64_PADDING){
+				if (firstPadding == -1) firstPadding = i;
+			}
+		}
+		scan.count = count;
+		scan.firstInvalid = (firstInvalid == -1)?-1:start + firstInvalid;
+		scan.firstPadding = (firstPadding == -1)?-1:start + firstPadding;
+		scan.lastBase64Char = (lastBase64Char == -1)?-1:start + lastBase64Char;
+		return scan;
+	}
+
+	/**
+	 * Find the first Base64 character after the given position.
+	 *
+	 * @param source Data to search.
+	 * @param position Position after which to start searching.
+	 * @return position of the next Base64 character or -1 if there is none.
+	 * @throws IOException if an IO error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static long findBase64Char(Source source, long position) throws IOException {
+		byte[] buffer = new byte[LOOKAHEAD_SIZE];
+		int read;
+		for (position++; (read = source.read(position, buffer, 0, buffer.length)) > 0; position += read){
+			for (int i = 0; i < read; i++){
+				if (Base64.reverseBase64Chars[buffer[i] & 0xff] >= 0) return position + i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Decode the source to the sink.
+	 *
+	 * @param source Data to decode.
+	 * @param counts Running totals of Base64 characters from countBase64Chars().
+	 * @param sink Destination of the decoded data.
+	 * @throws IOException if an IO error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void decode(final Source source, final long[] counts, final Sink sink) throws IOException {
+		List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for (int i = 0; i < counts.length - 1; i++){
+			final int chunk = i;
+			tasks.add(new RecursiveAction(){
+				private static final long serialVersionUID = 1L;
+				@Override protected void compute(){
+					try {
+						decodeChunk(source, counts, chunk, sink);
+					} catch (IOException x){
+						throw new UncheckedIOException(x);
+					}
+				}
+			});
+		}
+		runAll(tasks);
+	}
+
+	/**
+	 * Decode the groups of four Base64 characters that start in one chunk.
+	 * Characters from the group that straddles the start of the chunk are
+	 * skipped (the previous chunk decodes them) and the group that straddles
+	 * the end of the chunk is finished by reading ahead.
+	 *
+	 * @param source Data to decode.
+	 * @param counts Running totals of Base64 characters from countBase64Chars().
+	 * @param chunk Index of the chunk.
+	 * @param sink Destination of the decoded data.
+	 * @throws IOException if an IO error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void decodeChunk(Source source, long[] counts, int chunk, Sink sink) throws IOException {
+		long firstGroup = (counts[chunk] + 3) & ~3L;
+		if (firstGroup >= counts[chunk + 1]) return;
+		long start = (long)chunk * DECODE_CHUNK_SIZE;
+		byte[] in = new byte[(int)Math.min(DECODE_CHUNK_SIZE, source.length() - start)];
+		source.read(start, in, 0, in.length);
+		int i = 0;
+		for (long skip = firstGroup - counts[chunk]; skip > 0; i++){
+			if (Base64.reverseBase64Chars[in[i] & 0xff] >= 0) skip--;
+		}
+		byte[] out = new byte[Base64.calculateOutputLength(in.length + 3) + 3];
+		Base64.Decoder decoder = new Base64.Decoder(false);
+		int decoded = decoder.decode(in, i, in.length - i, out, 0);
+		long position = start + in.length;
+		byte[] lookahead = new byte[LOOKAHEAD_SIZE];
+		int read;
+		while (!decoder.atGroupBoundary() && (read = source.read(position, lookahead, 0, lookahead.length)) > 0){
+			for (int j = 0; j < read && !decoder.atGroupBoundary(); j++){
+				decoded += decoder.decode(lookahead, j, 1, out, decoded);
+			}
+			position += read;
+		}
+		decoded += decoder.finish(out, decoded);
+		sink.write(firstGroup / 4 * 3, out, 0, decoded);
+	}
+
+	/**
+	 * Calculate the encoded length of data that is a whole number of lines
+	 * (or any length when not using line breaks).
+	 *
+	 * @param length Number of bytes of input.
+	 * @param lineBreaks Whether line breaks are inserted every 76 characters.
+	 * @return Number of bytes of output.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static long encodedLength(long length, boolean lineBreaks){
+		long encodedLength = ((length + 2) / 3) * 4;
+		if (lineBreaks){
+			encodedLength += (encodedLength + 75) / 76;
+		}
+		return encodedLength;
+	}
+
+	/**
+	 * Calculate the decoded length from the number of Base64 characters.
+	 * Each group of four makes three bytes, a trailing two make one
+	 * byte, a trailing three make two bytes.
+	 *
+	 * @param base64Chars Number of Base64 characters.
+	 * @return Number of decoded bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static long decodedLength(long base64Chars){
+		long length = base64Chars / 4 * 3;
+		int remainder = (int)(base64Chars % 4);
+		if (remainder > 1) length += remainder - 1;
+		return length;
+	}
+
+	/**
+	 * Run the tasks in the common fork join pool and wait for them to finish.
+	 *
+	 * @param tasks Tasks to run.
+	 * @throws IOException if any task failed with an IO error.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void runAll(final List<RecursiveAction> tasks) throws IOException {
+		if (tasks.isEmpty()) return;
+		try {
+			ForkJoinPool.commonPool().invoke(new RecursiveAction(){
+				private static final long serialVersionUID = 1L;
+				@Override protected void compute(){
+					invokeAll(tasks);
+				}
+			});
+		} catch (UncheckedIOException x){
+			throw x.getCause();
+		}
+	}
+
+	/**
+	 * Results of scanning one chunk of encoded data.  Positions
+	 * are -1 when not found.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static class Scan {
+		private int count;
+		private long firstInvalid;
+		private long firstPadding;
+		private long lastBase64Char;
+	}
+
+	/**
+	 * Data that can be read from any position, by several threads at once.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static interface Source {
+		/**
+		 * @return total number of bytes.
+		 * @throws IOException if an IO error occurs.
+		 */
+		public long length() throws IOException;
+
+		/**
+		 * Read bytes starting at the given position, stopping early only at the end of the data.
+		 *
+		 * @param position position of the first byte to read.
+		 * @param buffer array into which bytes are read.
+		 * @param offset offset in the array.
+		 * @param length number of bytes to read.
+		 * @return number of bytes read.
+		 * @throws IOException if an IO error occurs.
+		 */
+		public int read(long position, byte[] buffer, int offset, int length) throws IOException;
+	}
+
+	/**
+	 * Destination that can be written at any position, by several threads at once.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static interface Sink {
+		/**
+		 * @param position position at which to write the first byte.
+		 * @param buffer bytes to write.
+		 * @param offset offset in the array.
+		 * @param length number of bytes to write.
+		 * @throws IOException if an IO error occurs.
+		 */
+		public void write(long position, byte[] buffer, int offset, int length) throws IOException;
+	}
+
+	private static class ArraySource implements Source {
+		private final byte[] bytes;
+		private ArraySource(byte[] bytes){
+			this.bytes = bytes;
+		}
+		public long length(){
+			return bytes.length;
+		}
+		public int read(long position, byte[] buffer, int offset, int length){
+			if (position >= bytes.length) return 0;
+			length = (int)Math.min(length, bytes.length - position);
+			System.arraycopy(bytes, (int)position, buffer, offset, length);
+			return length;
+		}
+	}
+
+	private static class ArraySink implements Sink {
+		private final byte[] bytes;
+		private ArraySink(byte[] bytes){
+			this.bytes = bytes;
+		}
+		public void write(long position, byte[] buffer, int offset, int length){
+			System.arraycopy(buffer, offset, bytes, (int)position, length);
+		}
+	}
+
+	private static class ChannelSource implements Source {
+		private final FileChannel channel;
+		private ChannelSource(FileChannel channel){
+			this.channel = channel;
+		}
+		public long length() throws IOException {
+			return channel.size();
+		}
+		public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+			ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+			int read;
+			while (byteBuffer.hasRemaining() && (read = channel.read(byteBuffer, position)) != -1){
+				position += read;
+			}
+			return length - byteBuffer.remaining();
+		}
+	}
+
+	private static class ChannelSink implements Sink {
+		private final FileChannel channel;
+		private ChannelSink(FileChannel channel){
+			this.channel = channel;
+		}
+		public void write(long position, byte[] buffer, int offset, int length) throws IOException {
+			ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+			while (byteBuffer.hasRemaining()){
+				position += channel.write(byteBuffer, position);
+			}
+		}
+	}
+}
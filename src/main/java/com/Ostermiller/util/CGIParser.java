@@ -134,7 +134,7 @@ public class CGIParser {
 	@Deprecated public CGIParser(String s){
 		if (s == null) return;
 		try {
-			CGILexer lex = new CGILexer(new StringReader(s));
+			CGILexer lex = new CGILexer(s.toCharArray(), 0, s.length());
 			parse(lex, "ISO-8859-1");
 		} catch (IOException x){
 			// This shouldn't be able to happen from a string.
@@ -155,7 +155,7 @@ public class CGIParser {
 	public CGIParser(String s, String charset) throws UnsupportedEncodingException {
 		if (s == null) return;
 		try {
-			CGILexer lex = new CGILexer(new StringReader(s));
+			CGILexer lex = new CGILexer(s.toCharArray(), 0, s.length());
 			parse(lex, charset);
 		} catch (UnsupportedEncodingException uex){
 			throw uex;
@@ -0,0 +1,946 @@
+/*
+ * Copyright (C) 2001-2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * An in-memory, column oriented representation of comma separated values.
+ * <p>
+ * CSVParse.getAllValues() returns a String for every field, which is the
+ * most memory hungry representation possible for numeric data.  This class
+ * reads the lines from any CSVParse implementation, infers a type for each
+ * column from a sample of the first lines, and stores each column as a single
+ * primitive array:
+ * <ul>
+ * <li>INT columns as an int[]
+ * <li>LONG columns as a long[]
+ * <li>DOUBLE columns as a double[]
+ * <li>BOOLEAN columns as a bit set
+ * <li>DATE columns as a long[] of milliseconds since the epoch (parsed with DateTimeParse)
+ * <li>STRING columns as an int[] of codes into a per-column dictionary of distinct values
+ * </ul>
+ * Empty fields, and fields missing from short lines, are stored as nulls.
+ * <p>
+ * If a value that does not fit the inferred type is found after the sample,
+ * the column is widened: INT to LONG to DOUBLE for numbers, otherwise to STRING.
+ * When a column is widened to STRING, the values that were already read are
+ * represented by their canonical text (for example "+7" becomes "7", and dates
+ * are formatted as yyyy-MM-dd'T'HH:mm:ss.SSSZ), so use a sample that is
+ * large enough to be representative when the original text matters.
+ * <p>
+ * An example of how CSVColumnTable might be used:
+ * <pre>
+ * CSVColumnTable table = CSVColumnTable.load(new CSVParser(in), true);
+ * int price = table.getColumnIndex("price");
+ * double total = 0;
+ * for (int row=0; row&lt;table.getRowCount(); row++){
+ *     if (!table.isNull(row, price)) total += table.getDouble(row, price);
+ * }
+ * </pre>
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class CSVColumnTable {
+
+	/**
+	 * The types that may be inferred for a column, from narrowest to widest.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public enum ColumnType {
+		/**
+		 * Whole numbers that fit in an int.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		INT,
+		/**
+		 * Whole numbers that fit in a long.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		LONG,
+		/**
+		 * Decimal numbers.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		DOUBLE,
+		/**
+		 * true or false, in any case.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		BOOLEAN,
+		/**
+		 * Dates and times that can be parsed by DateTimeParse.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		DATE,
+		/**
+		 * Any text.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		STRING
+	}
+
+	/**
+	 * Number of lines used for type inference when no sample size is given.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final int DEFAULT_SAMPLE_SIZE = 1000;
+
+	/**
+	 * Initial capacity of each column array.  Arrays double when full and
+	 * are trimmed to the row count once loading is finished.
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Format used when a date column has to be widened to a string column.
+	 */
+	private static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+
+	/**
+	 * Column names from the header line, or null if there was no header.
+	 */
+	private String[] names;
+
+	/**
+	 * The columns, in order.
+	 */
+	private Column[] columns;
+
+	/**
+	 * Number of lines read.
+	 */
+	private int rowCount;
+
+	/**
+	 * Used to parse date columns.
+	 */
+	private DateTimeParse dateTimeParse;
+
+	/**
+	 * Instances are created with one of the load methods.
+	 */
+	private CSVColumnTable(DateTimeParse dateTimeParse){
+		this.dateTimeParse = dateTimeParse;
+	}
+
+	/**
+	 * Read all the remaining lines from the parser into a new table.
+	 * The first line is treated as data, the first DEFAULT_SAMPLE_SIZE lines
+	 * are used for type inference, and dates are parsed in the default locale.
+	 *
+	 * @param parser source of the comma separated values.
+	 * @return table with all the values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static CSVColumnTable load(CSVParse parser) throws IOException {
+		return load(parser, false);
+	}
+
+	/**
+	 * Read all the remaining lines from the parser into a new table.
+	 * The first DEFAULT_SAMPLE_SIZE lines are used for type inference
+	 * and dates are parsed in the default locale.
+	 *
+	 * @param parser source of the comma separated values.
+	 * @param hasHeader whether the first line contains column names rather than data.
+	 * @return table with all the values.
+	 * @throws IOException if an error occurs while reading.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static CSVColumnTable load(CSVParse parser, boolean hasHeader) throws IOException {
+		return load(parser, hasHeader, DEFAULT_SAMPLE_SIZE, new DateTimeParse());
+	}
+
+	/**
+	 * Read all the remaining lines from the parser into a new table.
+	 *
+	 * @param parser source of the comma separated values.
+	 * @param hasHeader whether the first line contains column names rather than data.
+	 * @param sampleSize number of data lines to examine when inferring column types.
+	 * @param dateTimeParse parser for date columns, or null to never infer dates.
+	 * @return table with all the values.
+	 * @throws IOException if an error occurs while reading.
+	 * @throws IllegalArgumentException if the sample size is less than one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static CSVColumnTable load(CSVParse parser, boolean hasHeader, int sampleSize, DateTimeParse dateTimeParse) throws IOException {
+		if (sampleSize < 1) throw new IllegalArgumentException("Bad sample size: " + sampleSize);
+		CSVColumnTable table = new CSVColumnTable(dateTimeParse);
+		if (hasHeader){
+			table.names = parser.getLine();
+		}
+		ArrayList<String[]> sample = new ArrayList<String[]>();
+		String[] line;
+		while (sample.size() < sampleSize && (line = parser.getLine()) != null){
+			sample.add(line);
+		}
+		table.inferColumns(sample);
+		for (String[] sampleLine: sample){
+			table.addRow(sampleLine);
+		}
+		sample = null;
+		while ((line = parser.getLine()) != null){
+			table.addRow(line);
+		}
+		for (Column column: table.columns){
+			column.trim(table.rowCount);
+		}
+		return table;
+	}
+
+	/**
+	 * Create the columns, with types inferred from the given lines.
+	 *
+	 * @param sample the first lines of data.
+	 */
+	private void inferColumns(List<String[]> sample){
+		int columnCount = (names == null)?0:names.length;
+		for (String[] line: sample){
+			columnCount = Math.max(columnCount, line.length);
+		}
+		ColumnType[] types = new ColumnType[columnCount];
+		for (String[] line: sample){
+			for (int i=0; i<line.length; i++){
+				if (!isNullValue(line[i])){
+					ColumnType type = inferType(line[i]);
+					types[i] = (types[i] == null)?type:widest(types[i], type);
+				}
+			}
+		}
+		columns = new Column[columnCount];
+		for (int i=0; i<columnCount; i++){
+			columns[i] = new Column((types[i] == null)?ColumnType.STRING:types[i]);
+		}
+	}
+
+	/**
+	 * Append a line of data to the table.
+	 *
+	 * @param line values for each column.
+	 */
+	private void addRow(String[] line){
+		if (line.length > columns.length){
+			Column[] newColumns = new Column[line.length];
+			System.arraycopy(columns, 0, newColumns, 0, columns.length);
+			for (int i=columns.length; i<line.length; i++){
+				newColumns[i] = new Column(ColumnType.STRING, rowCount);
+			}
+			columns = newColumns;
+		}
+		for (int i=0; i<columns.length; i++){
+			columns[i].add(rowCount, (i < line.length)?line[i]:null);
+		}
+		rowCount++;
+	}
+
+	/**
+	 * Get the number of lines of data in this table.
+	 *
+	 * @return number of rows.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getRowCount(){
+		return rowCount;
+	}
+
+	/**
+	 * Get the number of columns in this table.  This is the length of the longest line
+	 * (or of the header, if it is longer).
+	 *
+	 * @return number of columns.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getColumnCount(){
+		return columns.length;
+	}
+
+	/**
+	 * Get the name of a column from the header line.
+	 *
+	 * @param column column index.
+	 * @return the name or null if there was no header or the header did not name this column.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String getColumnName(int column){
+		checkColumn(column);
+		if (names == null || column >= names.length) return null;
+		return names[column];
+	}
+
+	/**
+	 * Get the index of the first column with the given name.
+	 *
+	 * @param name column name from the header line.
+	 * @return the column index or -1 if there is no such column.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getColumnIndex(String name){
+		if (names == null) return -1;
+		for (int i=0; i<names.length; i++){
+			if (names[i].equals(name)) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Get the type of a column.
+	 *
+	 * @param column column index.
+	 * @return the type in which the values of this column are stored.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public ColumnType getColumnType(int column){
+		checkColumn(column);
+		return columns[column].type;
+	}
+
+	/**
+	 * Whether the given value was empty or missing.
+	 *
+	 * @param row row index.
+	 * @param column column index.
+	 * @return true if there is no value.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean isNull(int row, int column){
+		checkRow(row);
+		checkColumn(column);
+		BitSet nulls = columns[column].nulls;
+		return nulls != null && nulls.get(row);
+	}
+
+	/**
+	 * Get a value from an INT column.
+	 *
+	 * @param row row index.
+	 * @param column column index.
+	 * @return the value, or zero if it is null.
+	 * @throws IllegalArgumentException if the column is not of type INT.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getInt(int row, int column){
+		checkRow(row);
+		return getColumn(column, ColumnType.INT).ints[row];
+	}
+
+	/**
+	 * Get a value from an INT or LONG column.
+	 *
+	 * @param row row index.
+	 * @param column column index.
+	 * @return the value, or zero if it is null.
+	 * @throws IllegalArgumentException if the column is not of type INT or LONG.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getLong(int row, int column){
+		checkRow(row);
+		Column c = getColumn(column, ColumnType.LONG);
+		if (c.type == ColumnType.INT) return c.ints[row];
+		return c.longs[row];
+	}
+
+	/**
+	 * Get a value from an INT, LONG, or DOUBLE column.
+	 *
+	 * @param row row index.
+	 * @param column column index.
+	 * @return the value, or zero if it is null.
+	 * @throws IllegalArgumentException if the column is not numeric.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double getDouble(int row, int column){
+		checkRow(row);
+		Column c = getColumn(column, ColumnType.DOUBLE);
+		switch (c.type){
+			case INT: return c.ints[row];
+			case LONG: return c.longs[row];
+			default: return c.doubles[row];
+		}
+	}
+
+	/**
+	 * Get a value from a BOOLEAN column.
+	 *
+	 * @param row row index.
+	 * @param column column index.
+	 * @return the value, or false if it is null.
+	 * @throws IllegalArgumentException if the column is not of type BOOLEAN.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean getBoolean(int row, int column){
+		checkRow(row);
+		return getColumn(column, ColumnType.BOOLEAN).booleans.get(row);
+	}
+
+	/**
+	 * Get a value from a DATE column.
+	 *
+	 * @param row row index.
+	 * @param column column index.
+	 * @return the value, or null if it is null.
+	 * @throws IllegalArgumentException if the column is not of type DATE.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Date getDate(int row, int column){
+		checkRow(row);
+		Column c = getColumn(column, ColumnType.DATE);
+		if (c.isNull(row)) return null;
+		return new Date(c.longs[row]);
+	}
+
+	/**
+	 * Get a value from any column as text.  Values from STRING columns are returned
+	 * as they were read, values from other columns are returned in their canonical form.
+	 *
+	 * @param row row index.
+	 * @param column column index.
+	 * @return the value, or null if it is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String getString(int row, int column){
+		checkRow(row);
+		checkColumn(column);
+		return columns[column].toText(row);
+	}
+
+	/**
+	 * Get the backing array of an INT column.  The array has one element
+	 * per row; null values are zero.  The array is the storage used by this
+	 * table and should not be modified.
+	 *
+	 * @param column column index.
+	 * @return the values of the column.
+	 * @throws IllegalArgumentException if the column is not of type INT.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int[] getIntColumn(int column){
+		return getColumn(column, ColumnType.INT).ints;
+	}
+
+	/**
+	 * Get the backing array of a LONG or DATE column.  The array has one element
+	 * per row; null values are zero.  Dates are milliseconds since the epoch.
+	 * The array is the storage used by this table and should not be modified.
+	 *
+	 * @param column column index.
+	 * @return the values of the column.
+	 * @throws IllegalArgumentException if the column is not of type LONG or DATE.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long[] getLongColumn(int column){
+		checkColumn(column);
+		Column c = columns[column];
+		if (c.type != ColumnType.LONG && c.type != ColumnType.DATE) throw wrongType(column, ColumnType.LONG);
+		return c.longs;
+	}
+
+	/**
+	 * Get the backing array of a DOUBLE column.  The array has one element
+	 * per row; null values are zero.  The array is the storage used by this
+	 * table and should not be modified.
+	 *
+	 * @param column column index.
+	 * @return the values of the column.
+	 * @throws IllegalArgumentException if the column is not of type DOUBLE.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double[] getDoubleColumn(int column){
+		checkColumn(column);
+		if (columns[column].type != ColumnType.DOUBLE) throw wrongType(column, ColumnType.DOUBLE);
+		return columns[column].doubles;
+	}
+
+	/**
+	 * Get the distinct values of a STRING column.  Use with getStringCodes()
+	 * to look up the value of each row.  The array is the storage used by this
+	 * table and should not be modified.
+	 *
+	 * @param column column index.
+	 * @return the dictionary of values for the column.
+	 * @throws IllegalArgumentException if the column is not of type STRING.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String[] getStringDictionary(int column){
+		checkColumn(column);
+		if (columns[column].type != ColumnType.STRING) throw wrongType(column, ColumnType.STRING);
+		return columns[column].dictionary;
+	}
+
+	/**
+	 * Get the index into the dictionary of each row of a STRING column.
+	 * Null values have a code of -1.  The array is the storage used by this
+	 * table and should not be modified.
+	 *
+	 * @param column column index.
+	 * @return the dictionary codes for the column.
+	 * @throws IllegalArgumentException if the column is not of type STRING.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int[] getStringCodes(int column){
+		checkColumn(column);
+		if (columns[column].type != ColumnType.STRING) throw wrongType(column, ColumnType.STRING);
+		return columns[column].ints;
+	}
+
+	/**
+	 * Make sure the row index is in range.
+	 *
+	 * @param row row index.
+	 * @throws IndexOutOfBoundsException if it is not.
+	 */
+	private void checkRow(int row){
+		if (row < 0 || row >= rowCount) throw new IndexOutOfBoundsException("Row: " + row);
+	}
+
+	/**
+	 * Make sure the column index is in range.
+	 *
+	 * @param column column index.
+	 * @throws IndexOutOfBoundsException if it is not.
+	 */
+	private void checkColumn(int column){
+		if (column < 0 || column >= columns.length) throw new IndexOutOfBoundsException("Column: " + column);
+	}
+
+	/**
+	 * Get a column that can be read as the given type.  Numeric columns
+	 * can be read as any wider numeric type.
+	 *
+	 * @param column column index.
+	 * @param type type needed by the caller.
+	 * @return the column.
+	 * @throws IllegalArgumentException if the column cannot be read as the given type.
+	 */
+	private Column getColumn(int column, ColumnType type){
+		checkColumn(column);
+		Column c = columns[column];
+		if (c.type == type) return c;
+		if (isNumeric(c.type) && isNumeric(type) && c.type.ordinal() < type.ordinal()) return c;
+		throw wrongType(column, type);
+	}
+
+	/**
+	 * Create an exception for reading a column as the wrong type.
+	 */
+	private IllegalArgumentException wrongType(int column, ColumnType type){
+		return new IllegalArgumentException("Column " + column + " is " + columns[column].type + ", not " + type);
+	}
+
+	/**
+	 * Whether the field should be stored as a null.
+	 */
+	private static boolean isNullValue(String value){
+		return value == null || value.length() == 0;
+	}
+
+	/**
+	 * Whether the type is INT, LONG, or DOUBLE.
+	 */
+	private static boolean isNumeric(ColumnType type){
+		return type == ColumnType.INT || type == ColumnType.LONG || type == ColumnType.DOUBLE;
+	}
+
+	/**
+	 * Get the narrowest type that can hold values of both types.
+	 */
+	private static ColumnType widest(ColumnType a, ColumnType b){
+		if (a == b) return a;
+		if (isNumeric(a) && isNumeric(b)) return (a.ordinal() > b.ordinal())?a:b;
+		return ColumnType.STRING;
+	}
+
+	/**
+	 * Get the narrowest type that can hold the given non-null value.
+	 */
+	private ColumnType inferType(String value){
+		if (isWholeNumber(value)){
+			try {
+				long l = Long.parseLong(value);
+				return (l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE)?ColumnType.INT:ColumnType.LONG;
+			} catch (NumberFormatException x){
+				return ColumnType.DOUBLE;
+			}
+		}
+		if (parseDecimal(value) != null) return ColumnType.DOUBLE;
+		if (parseBoolean(value) != null) return ColumnType.BOOLEAN;
+		if (dateTimeParse != null && dateTimeParse.parse(value) != null) return ColumnType.DATE;
+		return ColumnType.STRING;
+	}
+
+	/**
+	 * Whether the value is an optional sign followed by digits.
+	 */
+	private static boolean isWholeNumber(String value){
+		int start = (value.charAt(0) == '-' || value.charAt(0) == '+')?1:0;
+		if (start == value.length()) return false;
+		for (int i=start; i<value.length(); i++){
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Parse a decimal number.  Only digits, signs, decimal points, and
+	 * exponents are accepted, unlike Double.parseDouble() which also accepts
+	 * white space, NaN, Infinity, hexadecimal, and type suffixes.  Values
+	 * too large to be represented, such as 1e999, are not accepted either.
+	 *
+	 * @return the number or null if the value is not a decimal number.
+	 */
+	private static Double parseDecimal(String value){
+		boolean digit = false;
+		for (int i=0; i<value.length(); i++){
+			char c = value.charAt(i);
+			if (c >= '0' && c <= '9'){
+				digit = true;
+			} else if (c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E'){
+				return null;
+			}
+		}
+		if (!digit) return null;
+		try {
+			Double d = Double.valueOf(value);
+			if (d.isInfinite()) return null;
+			return d;
+		} catch (NumberFormatException x){
+			return null;
+		}
+	}
+
+	/**
+	 * Parse true or false in any case.
+	 *
+	 * @return the boolean or null if the value is not a boolean.
+	 */
+	private static Boolean parseBoolean(String value){
+		if ("true".equalsIgnoreCase(value)) return Boolean.TRUE;
+		if ("false".equalsIgnoreCase(value)) return Boolean.FALSE;
+		return null;
+	}
+
+	/**
+	 * Storage for a single column.  Only the arrays needed for
+	 * the column type are allocated.
+	 */
+	private final class Column {
+
+		/**
+		 * Type of values stored in this column.
+		 */
+		private ColumnType type;
+
+		/**
+		 * Values for INT columns, or dictionary codes for STRING columns.
+		 */
+		private int[] ints;
+
+		/**
+		 * Values for LONG and DATE columns.
+		 */
+		private long[] longs;
+
+		/**
+		 * Values for DOUBLE columns.
+		 */
+		private double[] doubles;
+
+		/**
+		 * Values for BOOLEAN columns.
+		 */
+		private BitSet booleans;
+
+		/**
+		 * Rows that are null, allocated when the first null is found.
+		 */
+		private BitSet nulls;
+
+		/**
+		 * Distinct values in a STRING column, trimmed once loading is finished.
+		 */
+		private String[] dictionary;
+
+		/**
+		 * Number of entries used in the dictionary.
+		 */
+		private int dictionarySize;
+
+		/**
+		 * Map from value to dictionary code for a STRING column.  Only used while loading.
+		 */
+		private HashMap<String,Integer> codes;
+
+		/**
+		 * Create an empty column.
+		 *
+		 * @param type type of values to be stored.
+		 */
+		private Column(ColumnType type){
+			this.type = type;
+			allocate(INITIAL_CAPACITY);
+		}
+
+		/**
+		 * Create a column that first appears after some rows have
+		 * been loaded.  Those rows are null in this column.
+		 *
+		 * @param type type of values to be stored.
+		 * @param nullRows number of rows already loaded.
+		 */
+		private Column(ColumnType type, int nullRows){
+			this.type = type;
+			allocate(Math.max(INITIAL_CAPACITY, nullRows));
+			if (nullRows > 0){
+				nulls = new BitSet();
+				nulls.set(0, nullRows);
+				if (type == ColumnType.STRING) Arrays.fill(ints, 0, nullRows, -1);
+			}
+		}
+
+		/**
+		 * Allocate storage appropriate to the type of this column.
+		 */
+		private void allocate(int capacity){
+			ints = null;
+			longs = null;
+			doubles = null;
+			booleans = null;
+			switch (type){
+				case INT: ints = new int[capacity]; break;
+				case LONG: case DATE: longs = new long[capacity]; break;
+				case DOUBLE: doubles = new double[capacity]; break;
+				case BOOLEAN: booleans = new BitSet(); break;
+				case STRING: {
+					ints = new int[capacity];
+					dictionary = new String[INITIAL_CAPACITY];
+					dictionarySize = 0;
+					codes = new HashMap<String,Integer>();
+				} break;
+			}
+		}
+
+		/**
+		 * Whether the given row is null.
+		 */
+		private boolean isNull(int row){
+			return nulls != null && nulls.get(row);
+		}
+
+		/**
+		 * Number of rows that the arrays can hold.
+		 */
+		private int capacity(){
+			if (ints != null) return ints.length;
+			if (longs != null) return longs.length;
+			if (doubles != null) return doubles.length;
+			return Integer.MAX_VALUE;
+		}
+
+		/**
+		 * Resize the arrays.
+		 */
+		private void resize(int capacity){
+			if (ints != null) ints = Arrays.copyOf(ints, capacity);
+			if (longs != null) longs = Arrays.copyOf(longs, capacity);
+			if (doubles != null) doubles = Arrays.copyOf(doubles, capacity);
+		}
+
+		/**
+		 * Resize the storage to exactly the row count and discard
+		 * any structures only needed while loading.
+		 */
+		private void trim(int rowCount){
+			resize(rowCount);
+			if (type == ColumnType.STRING){
+				dictionary = Arrays.copyOf(dictionary, dictionarySize);
+				codes = null;
+			}
+		}
+
+		/**
+		 * Store the value for a row, widening the column if needed.
+		 *
+		 * @param row the row, which must be the next row.
+		 * @param value the value as read from the CSV.
+		 */
+		private void add(int row, String value){
+			if (row >= capacity()){
+				resize(Math.max(Math.max(INITIAL_CAPACITY, row + 1), capacity() * 2));
+			}
+			if (isNullValue(value)){
+				if (nulls == null) nulls = new BitSet();
+				nulls.set(row);
+				if (type == ColumnType.STRING) ints[row] = -1;
+				return;
+			}
+			if (!store(row, value)){
+				widen(row, widest(type, inferType(value)));
+				store(row, value);
+			}
+		}
+
+		/**
+		 * Store a non-null value in the storage for the current type.
+		 *
+		 * @return false if the value cannot be represented as the current type.
+		 */
+		private boolean store(int row, String value){
+			switch (type){
+				case INT: {
+					if (!isWholeNumber(value)) return false;
+					try {
+						ints[row] = Integer.parseInt(value);
+						return true;
+					} catch (NumberFormatException x){
+						return false;
+					}
+				}
+				case LONG: {
+					if (!isWholeNumber(value)) return false;
+					try {
+						longs[row] = Long.parseLong(value);
+						return true;
+					} catch (NumberFormatException x){
+						return false;
+					}
+				}
+				case DOUBLE: {
+					Double d = parseDecimal(value);
+					if (d == null) return false;
+					doubles[row] = d.doubleValue();
+					return true;
+				}
+				case BOOLEAN: {
+					Boolean b = parseBoolean(value);
+					if (b == null) return false;
+					booleans.set(row, b.booleanValue());
+					return true;
+				}
+				case DATE: {
+					if (dateTimeParse == null) return false;
+					Date d = dateTimeParse.parse(value);
+					if (d == null) return false;
+					longs[row] = d.getTime();
+					return true;
+				}
+				default: {
+					Integer code = codes.get(value);
+					if (code == null){
+						if (dictionarySize == dictionary.length){
+							dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+						}
+						code = Integer.valueOf(dictionarySize);
+						dictionary[dictionarySize++] = value;
+						codes.put(value, code);
+					}
+					ints[row] = code.intValue();
+					return true;
+				}
+			}
+		}
+
+		/**
+		 * Convert the rows already stored to a wider type.
+		 *
+		 * @param rowCount number of rows already stored.
+		 * @param newType type to which to convert.
+		 */
+		private void widen(int rowCount, ColumnType newType){
+			if (newType == type) return;
+			int[] oldInts = ints;
+			long[] oldLongs = longs;
+			String[] text = null;
+			if (newType == ColumnType.STRING){
+				text = new String[rowCount];
+				for (int row=0; row<rowCount; row++){
+					text[row] = toText(row);
+				}
+			}
+			ColumnType oldType = type;
+			int capacity = capacity();
+			if (capacity == Integer.MAX_VALUE) capacity = Math.max(INITIAL_CAPACITY, rowCount * 2);
+			type = newType;
+			allocate(capacity);
+			for (int row=0; row<rowCount; row++){
+				if (isNull(row)){
+					if (type == ColumnType.STRING) ints[row] = -1;
+				} else if (type == ColumnType.STRING){
+					store(row, text[row]);
+				} else if (type == ColumnType.LONG){
+					longs[row] = oldInts[row];
+				} else if (oldType == ColumnType.INT){
+					doubles[row] = oldInts[row];
+				} else {
+					doubles[row] = oldLongs[row];
+				}
+			}
+		}
+
+		/**
+		 * Get the text representation of a row.
+		 */
+		private String toText(int row){
+			if (isNull(row)) return null;
+			switch (type){
+				case INT: return Integer.toString(ints[row]);
+				case LONG: return Long.toString(longs[row]);
+				case DOUBLE: return Double.toString(doubles[row]);
+				case BOOLEAN: return Boolean.toString(booleans.get(row));
+				case DATE: {
+					SimpleDateFormat format = new SimpleDateFormat(DATE_FORMAT);
+					format.setTimeZone(dateTimeParse.getTimeZone());
+					return format.format(new Date(longs[row]));
+				}
+				default: return dictionary[ints[row]];
+			}
+		}
+	}
+}
@@ -117,6 +117,14 @@ public class CSVParser implements CSVParse {
 	 */
 	private int lastLine = -1;
 
+	/**
+	 * Holds the values of a line while it is being read.
+	 * Reused for each line to avoid an allocation per line.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private ArrayList<String> lineValues = new ArrayList<String>();
+
 	/**
 	 * Create a parser to parse comma separated values from
 	 * an InputStream.
@@ -269,6 +277,101 @@ public class CSVParser implements CSVParse {
 		setCommentStart(commentDelims);
 	}
 
+	/**
+	 * Create a parser to parse comma separated values from
+	 * an array of characters.
+	 * <p>
+	 * The characters are parsed in place rather than being
+	 * copied into a buffer, so they must not be modified
+	 * until parsing is complete.
+	 *
+	 * @param in characters that contain comma separated values.
+	 * @param offset index of the first character to parse.
+	 * @param length number of characters to parse.
+	 * @throws IndexOutOfBoundsException if the offset and length do not specify a valid range of the array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public CSVParser(char[] in, int offset, int length){
+		lexer = new CSVLexer(in, offset, length);
+	}
+
+	/**
+	 * Set the size of the buffer into which characters are
+	 * read from the underlying stream or reader.
+	 * <p>
+	 * A large buffer (a megabyte or more) reduces the number of reads
+	 * when parsing very large inputs.  A small buffer reduces the
+	 * memory used when parsing many short inputs.  The buffer grows
+	 * if a single value does not fit in it.  The buffer size has no
+	 * effect on parsers that parse an array of characters in place.
+	 *
+	 * @param size buffer size in characters.
+	 * @throws IllegalArgumentException if the size is less than one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setBufferSize(int size){
+		lexer.yysetBufferSize(size);
+	}
+
+	/**
+	 * Reset this parser so that it parses comma separated values
+	 * from a new Reader.
+	 * <p>
+	 * Line numbering starts over, but the delimiter, quote, escapes, and
+	 * comment characters are kept.  The stream or reader on which
+	 * this parser was previously based is not closed.  Resetting
+	 * a parser is cheaper than creating a new one when many small
+	 * inputs are parsed.
+	 *
+	 * @param in reader that contains comma separated values.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void reset(Reader in){
+		inStream = null;
+		inReader = in;
+		lexer.reset(in);
+		resetPosition();
+	}
+
+	/**
+	 * Reset this parser so that it parses comma separated values
+	 * from an array of characters.
+	 * <p>
+	 * The characters are parsed in place rather than being
+	 * copied into a buffer, so they must not be modified
+	 * until parsing is complete.  Line numbering starts over,
+	 * but the delimiter, quote, escapes, and comment characters are kept.
+	 * The stream or reader on which this parser was previously
+	 * based is not closed.
+	 *
+	 * @param in characters that contain comma separated values.
+	 * @param offset index of the first character to parse.
+	 * @param length number of characters to parse.
+	 * @throws IndexOutOfBoundsException if the offset and length do not specify a valid range of the array.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void reset(char[] in, int offset, int length){
+		inStream = null;
+		inReader = null;
+		lexer.reset(in, offset, length);
+		resetPosition();
+	}
+
+	/**
+	 * Forget any cached token and the last line number.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void resetPosition(){
+		tokenCache = null;
+		lineCache = 0;
+		lastLine = -1;
+	}
+
 	/**
 	 * Close any stream upon which this parser is based.
 	 *
@@ -326,7 +429,8 @@ public class CSVParser implements CSVParse {
 	 */
 	public String[] getLine() throws IOException{
 		int lineNumber = -1;
-		ArrayList<String> v = new ArrayList<String>();
+		ArrayList<String> v = lineValues;
+		v.clear();
 		if (tokenCache != null){
 			v.add(tokenCache);
 			lineNumber = lineCache;
@@ -342,7 +446,9 @@ public class CSVParser implements CSVParse {
 		lastLine = lineNumber;
 		lineCache = lexer.getLineNumber();
 		String[] result = new String[v.size()];
-		return v.toArray(result);
+		v.toArray(result);
+		v.clear();
+		return result;
 	}
 
 	/**
@@ -468,10 +574,13 @@ public class CSVParser implements CSVParse {
 	 * @since ostermillerutils 1.02.03
 	 */
 	public static String[][] parse(String s){
+		CSVParser parser = getCachedParser(s);
 		try {
-			return (new CSVParser(new StringReader(s))).getAllValues();
+			return parser.getAllValues();
 		} catch (IOException x){
 			return null;
+		} finally {
+			releaseCachedParser(parser);
 		}
 	}
 
@@ -489,10 +598,14 @@ public class CSVParser implements CSVParse {
 	 * @since ostermillerutils 1.02.24
 	 */
 	public static String[][] parse(String s, char delimiter) throws BadDelimiterException {
+		CSVParser parser = getCachedParser(s);
 		try {
-			return (new CSVParser(new StringReader(s), delimiter)).getAllValues();
+			parser.changeDelimiter(delimiter);
+			return parser.getAllValues();
 		} catch (IOException x){
 			return null;
+		} finally {
+			releaseCachedParser(parser);
 		}
 	}
 
@@ -509,10 +622,15 @@ public class CSVParser implements CSVParse {
 	 * @since ostermillerutils 1.02.03
 	 */
 	public static String[][] parse(String s, String escapes, String replacements, String commentDelims){
+		CSVParser parser = getCachedParser(s);
 		try {
-			return (new CSVParser(new StringReader(s), escapes, replacements, commentDelims)).getAllValues();
+			parser.setEscapes(escapes, replacements);
+			parser.setCommentStart(commentDelims);
+			return parser.getAllValues();
 		} catch (IOException x){
 			return null;
+		} finally {
+			releaseCachedParser(parser);
 		}
 	}
 
@@ -531,10 +649,16 @@ public class CSVParser implements CSVParse {
 	 * @since ostermillerutils 1.02.24
 	 */
 	public static String[][] parse(String s, char delimiter, String escapes, String replacements, String commentDelims) throws BadDelimiterException{
+		CSVParser parser = getCachedParser(s);
 		try {
-			return (new CSVParser(new StringReader(s), delimiter, escapes, replacements, commentDelims)).getAllValues();
+			parser.setEscapes(escapes, replacements);
+			parser.setCommentStart(commentDelims);
+			parser.changeDelimiter(delimiter);
+			return parser.getAllValues();
 		} catch (IOException x){
 			return null;
+		} finally {
+			releaseCachedParser(parser);
 		}
 	}
 
@@ -607,4 +731,59 @@ public class CSVParser implements CSVParse {
 	public static String[][] parse(Reader in, String escapes, String replacements, String commentDelims) throws IOException {
 		return (new CSVParser(in, escapes, replacements, commentDelims)).getAllValues();
 	}
+
+	/**
+	 * Parsers used by the static methods that parse strings.  One parser
+	 * is cached per thread and reset onto each string so that parsing
+	 * a short string does not allocate a new parser, lexer, and buffer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final ThreadLocal<CSVParser> cachedParser = new ThreadLocal<CSVParser>();
+
+	/**
+	 * Empty input given to the cached parser between uses so
+	 * that it does not hold on to the last string it parsed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final char[] NO_CHARS = new char[0];
+
+	/**
+	 * Get the parser cached for this thread, reset to parse the given string.
+	 *
+	 * @param s string with comma delimited data to parse.
+	 * @return parser for the string.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static CSVParser getCachedParser(String s){
+		CSVParser parser = cachedParser.get();
+		if (parser == null){
+			parser = new CSVParser(s.toCharArray(), 0, s.length());
+			cachedParser.set(parser);
+		} else {
+			parser.reset(s.toCharArray(), 0, s.length());
+		}
+		return parser;
+	}
+
+	/**
+	 * Return the parser cached for this thread to its default state.
+	 *
+	 * @param parser parser from getCachedParser().
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void releaseCachedParser(CSVParser parser){
+		parser.reset(NO_CHARS, 0, 0);
+		parser.setEscapes("", "");
+		parser.setCommentStart("");
+		try {
+			parser.changeDelimiter(',');
+		} catch (BadDelimiterException x){
+			// A comma can always be restored as the delimiter.
+			throw new RuntimeException(x);
+		}
+	}
 }
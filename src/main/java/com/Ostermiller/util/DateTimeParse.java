@@ -257,7 +257,7 @@ public class DateTimeParse {
 	}
 
 	private LinkedList<DateTimeToken> getTokens(String dateString) throws IOException {
-		DateTimeLexer lex = new DateTimeLexer(new StringReader(dateString));
+		DateTimeLexer lex = new DateTimeLexer(dateString.toCharArray(), 0, dateString.length());
 		DateTimeToken token;
 		LinkedList<DateTimeToken> l = new LinkedList<DateTimeToken>();
 		while((token=lex.getNextToken()) != null){
@@ -301,6 +301,16 @@ public class DateTimeParse {
 		return this;
 	}
 
+	/**
+	 * Get the time zone used for dates that do not specify one.
+	 *
+	 * @return the default time zone.
+	 * @since ostermillerutils 1.09.00
+	 */
+	public TimeZone getTimeZone(){
+		return defaultZone;
+	}
+
 	private static final int ZONE_STATE_INIT = 0;
 	private static final int ZONE_STATE_PLUS_MINUS = 1;
 	private static final int ZONE_STATE_HOUR = 2;
@@ -27,6 +27,12 @@
 package com.Ostermiller.util;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
 
 /**
  * MD5 hash generator.
@@ -47,6 +53,8 @@ import java.io.*;
  *
  * @see MD5OutputStream
  * @see MD5InputStream
+ * @see MD5ReadableByteChannel
+ * @see MD5WritableByteChannel
  *
  * @author Santeri Paavolainen http://santtu.iki.fi/md5/
  * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
@@ -63,6 +71,19 @@ public class MD5 {
 		reset();
 	}
 
+	/**
+	 * Create a hash that continues from a state previously
+	 * exported with {@link #getState()}.
+	 *
+	 * @param state the exported state.
+	 * @throws IllegalArgumentException if the state is not one exported by this class.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MD5 (byte[] state) {
+		setState(state);
+	}
+
 	/**
 	 * Command line program that will take files as arguments
 	 * and output the MD5 sum for each file.
@@ -96,14 +117,25 @@ public class MD5 {
 		if (!finalState.valid) {
 			finalState.copy(workingState);
 			long bitCount = finalState.bitCount;
-			// Compute the number of left over bits
-			int leftOver = (int) (((bitCount >>> 3)) & 0x3f);
-			// Compute the amount of padding to add based on number of left over bits.
-			int padlen = (leftOver < 56) ? (56 - leftOver) : (120 - leftOver);
-			// add the padding
-			update(finalState, padding, 0, padlen);
+			byte[] buffer = finalState.buffer;
+			// Compute the number of left over bytes
+			int index = (int) (bitCount >>> 3) & 0x3f;
+			// The padding is a one bit followed by zeros up to the
+			// last eight bytes of a block, which hold the length.
+			// It is written straight into the buffer so that
+			// nothing needs to be allocated.
+			buffer[index++] = (byte) 0x80;
+			if (index > 56){
+				Arrays.fill(buffer, index, 64, (byte) 0);
+				transform(finalState.state, buffer, 0, 64);
+				index = 0;
+			}
+			Arrays.fill(buffer, index, 56, (byte) 0);
 			// add the length (computed before padding was added)
-			update(finalState, encode(bitCount), 0, 8);
+			for (int i = 0; i < 8; i++){
+				buffer[56 + i] = (byte) (bitCount >>> (i << 3));
+			}
+			transform(finalState.state, buffer, 0, 64);
 			finalState.valid = true;
 		}
 		// make a copy of the hash before returning it.
@@ -197,10 +229,7 @@ public class MD5 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static byte[] getHash(File f) throws IOException {
-		InputStream is = new FileInputStream(f);
-		byte[] hash = getHash(is);
-		is.close();
-		return hash;
+		return getHash(f.toPath());
 	}
 
 	/**
@@ -213,12 +242,266 @@ public class MD5 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public static String getHashString(File f) throws IOException {
-		InputStream is = new FileInputStream(f);
-		String hash = getHashString(is);
-		is.close();
-		return hash;
+		return getHashString(f.toPath());
+	}
+
+	/**
+	 * Gets the MD5 hash of the given file.
+	 * <p>
+	 * Large files are memory mapped and hashed in large blocks
+	 * rather than being copied through a stream.
+	 *
+	 * @param path file for which an MD5 hash is desired.
+	 * @return Array of 16 bytes, the hash of all updated bytes.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static byte[] getHash(Path path) throws IOException {
+		MD5 md5 = new MD5();
+		md5.update(path);
+		return md5.getHash();
+	}
+
+	/**
+	 * Gets the MD5 hash of the given file.
+	 * <p>
+	 * Large files are memory mapped and hashed in large blocks
+	 * rather than being copied through a stream.
+	 *
+	 * @param path file for which an MD5 hash is desired.
+	 * @return 32-character hex representation the data's MD5 hash.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static String getHashString(Path path) throws IOException {
+		MD5 md5 = new MD5();
+		md5.update(path);
+		return md5.getHashString();
+	}
+
+	/**
+	 * Gets the chunked MD5 hash of the given file.
+	 *
+	 * @param f file for which a chunked hash is desired.
+	 * @param chunkSize number of bytes in each chunk.
+	 * @return Array of 16 bytes, the MD5 hash of the MD5 hashes of the chunks.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 *
+	 * @see #getChunkedHash(Path, long)
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static byte[] getChunkedHash(File f, long chunkSize) throws IOException {
+		return getChunkedHash(f.toPath(), chunkSize);
+	}
+
+	/**
+	 * Gets the chunked MD5 hash of the given file.
+	 * <p>
+	 * The file is split into chunks of the given size (the last chunk
+	 * may be shorter, and an empty file has one empty chunk).  Each
+	 * chunk is hashed with MD5 and the chunk hashes are concatenated and
+	 * hashed again.  This is how multipart uploads compute their ETags
+	 * when each part is the chunk size.
+	 * <p>
+	 * A single MD5 hash can only be computed one byte after another,
+	 * but the chunks can be hashed at the same time, so a large
+	 * file is hashed using all the available processors.  A chunked hash
+	 * is not the same as the MD5 hash of the file.
+	 *
+	 * @param path file for which a chunked hash is desired.
+	 * @param chunkSize number of bytes in each chunk.
+	 * @return Array of 16 bytes, the MD5 hash of the MD5 hashes of the chunks.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static byte[] getChunkedHash(Path path, long chunkSize) throws IOException {
+		return getHash(MD5Parallel.getChunkHashes(path, chunkSize));
+	}
+
+	/**
+	 * Gets the chunked MD5 hash of the given file in the form of
+	 * a multipart upload ETag.
+	 *
+	 * @param f file for which a chunked hash is desired.
+	 * @param chunkSize number of bytes in each chunk.
+	 * @return 32-character hex representation of the chunked hash, a dash, and the number of chunks.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 *
+	 * @see #getChunkedHash(Path, long)
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static String getChunkedHashString(File f, long chunkSize) throws IOException {
+		return getChunkedHashString(f.toPath(), chunkSize);
+	}
+
+	/**
+	 * Gets the chunked MD5 hash of the given file in the form of
+	 * a multipart upload ETag: the hex hash followed by "-3" when
+	 * there are three chunks.
+	 *
+	 * @param path file for which a chunked hash is desired.
+	 * @param chunkSize number of bytes in each chunk.
+	 * @return 32-character hex representation of the chunked hash, a dash, and the number of chunks.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalArgumentException if the chunk size is not positive.
+	 *
+	 * @see #getChunkedHash(Path, long)
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static String getChunkedHashString(Path path, long chunkSize) throws IOException {
+		byte[] chunkHashes = MD5Parallel.getChunkHashes(path, chunkSize);
+		return getHashString(chunkHashes) + "-" + (chunkHashes.length / 16);
 	}
 
+	/**
+	 * Hash many files at once using one thread per available processor.
+	 *
+	 * @param files the files to hash.
+	 * @param listener receives the hash of each file, or the reason it could not be read, as soon as it is available.
+	 * @throws InterruptedException if interrupted while waiting for the hashing to finish.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void getHashes(Collection<File> files, MD5FileListener listener) throws InterruptedException {
+		getHashes(files, Runtime.getRuntime().availableProcessors(), listener);
+	}
+
+	/**
+	 * Hash many files at once.
+	 * <p>
+	 * The given number of files are hashed concurrently, largest files
+	 * first so that the work stays balanced between threads until the end.
+	 * A file that can't be read is reported to the listener and the
+	 * other files are still hashed.  If the listener throws an exception
+	 * hashing stops and the exception is thrown from this method.
+	 *
+	 * @param files the files to hash.
+	 * @param threads the number of files to hash at once.
+	 * @param listener receives the hash of each file, or the reason it could not be read, as soon as it is available.
+	 * @throws InterruptedException if interrupted while waiting for the hashing to finish.
+	 * @throws IllegalArgumentException if the number of threads is less than one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void getHashes(Collection<File> files, int threads, MD5FileListener listener) throws InterruptedException {
+		MD5Parallel.getHashes(files, threads, listener);
+	}
+
+	/**
+	 * Hash every file in a directory tree using one thread per available processor.
+	 *
+	 * @param directory the root of the directory tree.
+	 * @param listener receives the hash of each file, or the reason it (or a directory) could not be read, as soon as it is available.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws InterruptedException if interrupted while waiting for the hashing to finish.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void getHashesRecursive(File directory, MD5FileListener listener) throws IOException, InterruptedException {
+		getHashesRecursive(directory, Runtime.getRuntime().availableProcessors(), listener);
+	}
+
+	/**
+	 * Hash every file in a directory tree.
+	 * <p>
+	 * All the regular files in the tree are hashed as if they had been
+	 * passed to {@link #getHashes(Collection, int, MD5FileListener)}.
+	 * Symbolic links are not followed.  Directories that can't be read
+	 * are reported to the listener.
+	 *
+	 * @param directory the root of the directory tree.
+	 * @param threads the number of files to hash at once.
+	 * @param listener receives the hash of each file, or the reason it (or a directory) could not be read, as soon as it is available.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws InterruptedException if interrupted while waiting for the hashing to finish.
+	 * @throws IllegalArgumentException if the number of threads is less than one.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void getHashesRecursive(File directory, int threads, MD5FileListener listener) throws IOException, InterruptedException {
+		MD5Parallel.getHashesRecursive(directory, threads, listener);
+	}
+
+	/**
+	 * Update this hash with the contents of a file.
+	 * <p>
+	 * Files smaller than a memory mapped region are read through
+	 * the channel; mapping them would cost more than reading them.
+	 * Reading (rather than relying on the size) also handles special files
+	 * whose size is not known ahead of time.
+	 *
+	 * @param path file to be hashed.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	void update(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < MAPPED_REGION_SIZE){
+				ByteBuffer buffer = ByteBuffer.wrap(getBlockBuffer());
+				while (channel.read(buffer) != -1){
+					buffer.flip();
+					update(buffer);
+					buffer.clear();
+				}
+			} else {
+				update(channel, 0, size);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Update this hash with part of a file.
+	 * <p>
+	 * Parts smaller than a memory mapped region are read through
+	 * the channel; larger parts are memory mapped a region at a time.
+	 * Only positional reads are used, so several threads may hash
+	 * different parts of the same channel at once.
+	 *
+	 * @param channel the open file.
+	 * @param position offset in the file of the first byte to hash.
+	 * @param length number of bytes to hash.
+	 * @throws IOException if an I/O error occurs or the file ends before length bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	void update(FileChannel channel, long position, long length) throws IOException {
+		long end = position + length;
+		if (length < MAPPED_REGION_SIZE){
+			ByteBuffer buffer = ByteBuffer.wrap(getBlockBuffer());
+			while (position < end){
+				buffer.limit((int) Math.min(buffer.capacity(), end - position));
+				if (channel.read(buffer, position) == -1) throw new EOFException();
+				buffer.flip();
+				position += buffer.remaining();
+				update(buffer);
+				buffer.clear();
+			}
+		} else {
+			for (; position < end; position += MAPPED_REGION_SIZE){
+				update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAPPED_REGION_SIZE, end - position)));
+			}
+		}
+	}
+
+	/**
+	 * Size of the regions of a file that are memory mapped at once when
+	 * hashing a file.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int MAPPED_REGION_SIZE = 0x1000000;
+
 	/**
 	 * Gets the MD5 hash of the given String.
 	 * The string is converted to bytes using the current
@@ -285,6 +568,130 @@ public class MD5 {
 	}
 
 
+	/**
+	 * Export the intermediate state of this hash: the four MD5 registers,
+	 * the number of bytes hashed, and any bytes that have been
+	 * added since the last whole 64-byte block.
+	 * <p>
+	 * The state may be saved and later passed to {@link #MD5(byte[])}
+	 * or {@link #setState(byte[])} (even in a different process) to carry on
+	 * hashing where this hash left off.  For example, a file that only
+	 * grows can be hashed incrementally, reading only the new bytes
+	 * each time:
+	 * <pre>
+	 * MD5 md5 = (saved == null) ? new MD5() : new MD5(saved);
+	 * md5.update(file, md5.getByteCount());
+	 * String hash = md5.getHashString();
+	 * saved = md5.getState();
+	 * </pre>
+	 * The state is between 25 and 88 bytes long.  The first byte is a
+	 * version number for the format.
+	 *
+	 * @return the state of this hash.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[] getState(){
+		long bitCount = workingState.bitCount;
+		int tail = (int) (bitCount >>> 3) & 0x3f;
+		byte[] state = new byte[STATE_HEADER_LENGTH + tail];
+		state[0] = STATE_FORMAT;
+		for (int i = 0; i < 4; i++){
+			int register = workingState.state[i];
+			for (int j = 0; j < 4; j++){
+				state[1 + (i << 2) + j] = (byte) (register >>> (j << 3));
+			}
+		}
+		for (int i = 0; i < 8; i++){
+			state[17 + i] = (byte) (bitCount >>> (i << 3));
+		}
+		System.arraycopy(workingState.buffer, 0, state, STATE_HEADER_LENGTH, tail);
+		return state;
+	}
+
+	/**
+	 * Replace the state of this hash with one previously exported
+	 * with {@link #getState()}.
+	 *
+	 * @param state the exported state.
+	 * @throws IllegalArgumentException if the state is not one exported by this class.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setState(byte[] state){
+		if (state.length < STATE_HEADER_LENGTH || state[0] != STATE_FORMAT){
+			throw new IllegalArgumentException("Not an MD5 state");
+		}
+		long bitCount = 0;
+		for (int i = 0; i < 8; i++){
+			bitCount |= (state[17 + i] & 0xffL) << (i << 3);
+		}
+		int tail = (int) (bitCount >>> 3) & 0x3f;
+		if ((bitCount & 7) != 0 || state.length != STATE_HEADER_LENGTH + tail){
+			throw new IllegalArgumentException("Not an MD5 state");
+		}
+		for (int i = 0; i < 4; i++){
+			workingState.state[i] = word(state, 1 + (i << 2));
+		}
+		workingState.bitCount = bitCount;
+		System.arraycopy(state, STATE_HEADER_LENGTH, workingState.buffer, 0, tail);
+		finalState.valid = false;
+	}
+
+	/**
+	 * Version of the format of exported states.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final byte STATE_FORMAT = 1;
+
+	/**
+	 * Length of an exported state before the buffered bytes:
+	 * the format version, four registers and the bit count.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int STATE_HEADER_LENGTH = 1 + 16 + 8;
+
+	/**
+	 * Get the number of bytes that have been hashed.
+	 *
+	 * @return the number of bytes that have been added to this hash since it was created or reset.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getByteCount(){
+		return workingState.bitCount >>> 3;
+	}
+
+	/**
+	 * Update this hash with the contents of a file, starting at the
+	 * given position and continuing to the end of the file.
+	 * <p>
+	 * Combined with {@link #getByteCount()} and an exported state,
+	 * this hashes only the bytes appended to a file since it was last hashed.
+	 *
+	 * @param f file to be hashed.
+	 * @param position the offset in the file of the first byte to hash.
+	 * @throws IOException if an I/O error occurs or the file is shorter than the position.
+	 * @throws IllegalArgumentException if the position is negative.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void update(File f, long position) throws IOException {
+		if (position < 0) throw new IllegalArgumentException("Negative position: " + position);
+		FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < position){
+				throw new IOException("File is shorter (" + size + " bytes) than the starting position (" + position + "): " + f);
+			}
+			update(channel, position, size - position);
+		} finally {
+			channel.close();
+		}
+	}
+
 	/**
 	 * Reset the MD5 sum to its initial state.
 	 *
@@ -338,26 +745,29 @@ public class MD5 {
 		int index = (int) (state.bitCount >>> 3) & 0x3f;
 
 		// add the length to the count (translate bytes to bits)
-		state.bitCount += length << 3;
+		state.bitCount += ((long) length) << 3;
 
-		int partlen = 64 - index;
-
-		int i = 0;
-		if (length >= partlen) {
-			System.arraycopy(buffer, offset, state.buffer, index, partlen);
-			transform(state, decode(state.buffer, 64, 0));
-			for (i = partlen; (i + 63) < length; i+= 64){
-				transform(state, decode(buffer, 64, i));
+		if (index > 0){
+			// fill up the partial block first
+			int partlen = 64 - index;
+			if (length < partlen){
+				System.arraycopy(buffer, offset, state.buffer, index, length);
+				return;
 			}
-			index = 0;
+			System.arraycopy(buffer, offset, state.buffer, index, partlen);
+			transform(state.state, state.buffer, 0, 64);
+			offset += partlen;
+			length -= partlen;
 		}
 
-		// buffer remaining input
-		if (i < length) {
-			for (int start = i; i < length; i++) {
-				state.buffer[index + i - start] = buffer[i + offset];
-			}
+		// hash whole blocks straight from the caller's array
+		int blocks = length & ~0x3f;
+		if (blocks > 0){
+			transform(state.state, buffer, offset, blocks);
 		}
+
+		// buffer remaining input
+		System.arraycopy(buffer, offset + blocks, state.buffer, 0, length - blocks);
 	}
 
 	/**
@@ -410,9 +820,57 @@ public class MD5 {
 	 * @since ostermillerutils 1.00.00
 	 */
 	public void update (byte b) {
-		byte buffer[] = new byte[1];
-		buffer[0] = b;
-		update(buffer, 1);
+		finalState.valid = false;
+		int index = (int) (workingState.bitCount >>> 3) & 0x3f;
+		workingState.bitCount += 8;
+		workingState.buffer[index] = b;
+		if (index == 63){
+			transform(workingState.state, workingState.buffer, 0, 64);
+		}
+	}
+
+	/**
+	 * Update this hash with the remaining bytes in a buffer.
+	 * <p>
+	 * Both heap and direct (including memory mapped) buffers are supported.
+	 * Bytes in a heap buffer are hashed in place; bytes in a direct buffer
+	 * are copied a block at a time into a buffer that is reused.
+	 * Upon return the position of the buffer will be equal to its limit.
+	 *
+	 * @param buffer bytes to be hashed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void update (ByteBuffer buffer) {
+		int length = buffer.remaining();
+		if (buffer.hasArray()){
+			int position = buffer.position();
+			update(workingState, buffer.array(), buffer.arrayOffset() + position, length);
+			buffer.position(position + length);
+		} else {
+			byte[] block = getBlockBuffer();
+			while (length > 0){
+				int blockLength = Math.min(length, block.length);
+				buffer.get(block, 0, blockLength);
+				update(workingState, block, 0, blockLength);
+				length -= blockLength;
+			}
+		}
+	}
+
+	/**
+	 * Get the buffer used to copy data from direct buffers and files,
+	 * creating it the first time that it is needed.
+	 *
+	 * @return a buffer of BLOCK_BUFFER_SIZE bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private byte[] getBlockBuffer(){
+		if (blockBuffer == null){
+			blockBuffer = new byte[BLOCK_BUFFER_SIZE];
+		}
+		return blockBuffer;
 	}
 
 	/**
@@ -459,28 +917,20 @@ public class MD5 {
 	private MD5State finalState = new MD5State();
 
 	/**
-	 * Temporary buffer cached here for performance reasons.
+	 * Size of the buffer used to copy data from direct buffers and files.
+	 * A multiple of 64 so that whole MD5 blocks are hashed.
 	 *
-	 * @since ostermillerutils 1.00.00
+	 * @since ostermillerutils 1.09.00
 	 */
-	private int[] decodeBuffer = new int[16];
+	private static final int BLOCK_BUFFER_SIZE = 0x4000;
 
 	/**
-	 * 64 bytes of padding that can be added if the length
-	 * is not divisible by 64.
+	 * Buffer for copying data from direct buffers and files,
+	 * cached here for performance reasons.
 	 *
-	 * @since ostermillerutils 1.00.00
+	 * @since ostermillerutils 1.09.00
 	 */
-	private static final byte padding[] = {
-		(byte) 0x80, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-				0, 0, 0, 0, 0, 0, 0, 0,
-	};
+	private byte[] blockBuffer = null;
 
 	/**
 	 * Contains internal state of the MD5 class.
@@ -575,55 +1025,6 @@ public class MD5 {
 		return buf.toString();
 	}
 
-	private static int FF (int a, int b, int c, int d, int x, int s, int ac) {
-		a += ((b & c) | (~b & d));
-		a += x;
-		a += ac;
-		//return rotateLeft(a, s) + b;
-		a = (a << s) | (a >>> (32 - s));
-		return a + b;
-	}
-
-	private static int GG (int a, int b, int c, int d, int x, int s, int ac) {
-		a += ((b & d) | (c & ~d));
-		a += x;
-		a += ac;
-		//return rotateLeft(a, s) + b;
-		a = (a << s) | (a >>> (32 - s));
-		return a + b;
-	}
-
-	private static int HH (int a, int b, int c, int d, int x, int s, int ac) {
-		a += (b ^ c ^ d);
-		a += x;
-		a += ac;
-		//return rotateLeft(a, s) + b;
-		a = (a << s) | (a >>> (32 - s));
-		return a + b;
-	}
-
-	private static int II (int a, int b, int c, int d, int x, int s, int ac) {
-		a += (c ^ (b | ~d));
-		a += x;
-		a += ac;
-		//return rotateLeft(a, s) + b;
-		a = (a << s) | (a >>> (32 - s));
-		return a + b;
-	}
-
-	private static byte[] encode(long l){
-		byte[] out = new byte[8];
-		out[0] = (byte) (l & 0xff);
-		out[1] = (byte) ((l >>> 8) & 0xff);
-		out[2] = (byte) ((l >>> 16) & 0xff);
-		out[3] = (byte) ((l >>> 24) & 0xff);
-		out[4] = (byte) ((l >>> 32) & 0xff);
-		out[5] = (byte) ((l >>> 40) & 0xff);
-		out[6] = (byte) ((l >>> 48) & 0xff);
-		out[7] = (byte) ((l >>> 56) & 0xff);
-		return out;
-	}
-
 	private static byte[] encode(int input[], int len){
 		byte[] out = new byte[len];
 		int i, j;
@@ -636,100 +1037,144 @@ public class MD5 {
 		return out;
 	}
 
-	private int[] decode(byte buffer[], int len, int offset){
-		int i, j;
-		for (i = j = 0; j < len; i++, j += 4) {
-			decodeBuffer[i] = (
-				(buffer[j + offset] & 0xff)) |
-				(((buffer[j + 1 + offset] & 0xff)) << 8) |
-				(((buffer[j + 2 + offset] & 0xff)) << 16) |
-				(((buffer[j + 3 + offset] & 0xff)) << 24
-			);
+	/**
+	 * @param b array of bytes.
+	 * @param i offset of four bytes in the array.
+	 * @return the four bytes as a little endian integer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static int word(byte[] b, int i){
+		return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | (b[i + 3] << 24);
+	}
+
+	/**
+	 * Apply the MD5 compression function to consecutive 64-byte blocks.
+	 * <p>
+	 * The rounds are fully unrolled and the message words and
+	 * registers are kept in local variables, so nothing is allocated
+	 * and the state is only read and written once per call rather than
+	 * once per block.  The message word and constant are added before
+	 * the round function so that the addition does not wait on the
+	 * previous step.
+	 *
+	 * @param state the four MD5 registers, updated in place.
+	 * @param buffer data to hash.
+	 * @param offset offset of the first block in the buffer.
+	 * @param length number of bytes to hash, a multiple of 64.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void transform(int[] state, byte[] buffer, int offset, int length){
+		int a = state[0];
+		int b = state[1];
+		int c = state[2];
+		int d = state[3];
+
+		for (int end = offset + length; offset < end; offset += 64){
+			int x0 = word(buffer, offset);
+			int x1 = word(buffer, offset + 4);
+			int x2 = word(buffer, offset + 8);
+			int x3 = word(buffer, offset + 12);
+			int x4 = word(buffer, offset + 16);
+			int x5 = word(buffer, offset + 20);
+			int x6 = word(buffer, offset + 24);
+			int x7 = word(buffer, offset + 28);
+			int x8 = word(buffer, offset + 32);
+			int x9 = word(buffer, offset + 36);
+			int x10 = word(buffer, offset + 40);
+			int x11 = word(buffer, offset + 44);
+			int x12 = word(buffer, offset + 48);
+			int x13 = word(buffer, offset + 52);
+			int x14 = word(buffer, offset + 56);
+			int x15 = word(buffer, offset + 60);
+
+			int aa = a;
+			int bb = b;
+			int cc = c;
+			int dd = d;
+
+			/* Round 1: F = (b & c) | (~b & d), computed as d ^ (b & (c ^ d)) */
+			a = b + Integer.rotateLeft(a + x0 + 0xd76aa478 + (d ^ (b & (c ^ d))), 7); /* 1 */
+			d = a + Integer.rotateLeft(d + x1 + 0xe8c7b756 + (c ^ (a & (b ^ c))), 12); /* 2 */
+			c = d + Integer.rotateLeft(c + x2 + 0x242070db + (b ^ (d & (a ^ b))), 17); /* 3 */
+			b = c + Integer.rotateLeft(b + x3 + 0xc1bdceee + (a ^ (c & (d ^ a))), 22); /* 4 */
+			a = b + Integer.rotateLeft(a + x4 + 0xf57c0faf + (d ^ (b & (c ^ d))), 7); /* 5 */
+			d = a + Integer.rotateLeft(d + x5 + 0x4787c62a + (c ^ (a & (b ^ c))), 12); /* 6 */
+			c = d + Integer.rotateLeft(c + x6 + 0xa8304613 + (b ^ (d & (a ^ b))), 17); /* 7 */
+			b = c + Integer.rotateLeft(b + x7 + 0xfd469501 + (a ^ (c & (d ^ a))), 22); /* 8 */
+			a = b + Integer.rotateLeft(a + x8 + 0x698098d8 + (d ^ (b & (c ^ d))), 7); /* 9 */
+			d = a + Integer.rotateLeft(d + x9 + 0x8b44f7af + (c ^ (a & (b ^ c))), 12); /* 10 */
+			c = d + Integer.rotateLeft(c + x10 + 0xffff5bb1 + (b ^ (d & (a ^ b))), 17); /* 11 */
+			b = c + Integer.rotateLeft(b + x11 + 0x895cd7be + (a ^ (c & (d ^ a))), 22); /* 12 */
+			a = b + Integer.rotateLeft(a + x12 + 0x6b901122 + (d ^ (b & (c ^ d))), 7); /* 13 */
+			d = a + Integer.rotateLeft(d + x13 + 0xfd987193 + (c ^ (a & (b ^ c))), 12); /* 14 */
+			c = d + Integer.rotateLeft(c + x14 + 0xa679438e + (b ^ (d & (a ^ b))), 17); /* 15 */
+			b = c + Integer.rotateLeft(b + x15 + 0x49b40821 + (a ^ (c & (d ^ a))), 22); /* 16 */
+
+			/* Round 2: G = (b & d) | (c & ~d), computed as c ^ (d & (b ^ c)) */
+			a = b + Integer.rotateLeft(a + x1 + 0xf61e2562 + (c ^ (d & (b ^ c))), 5); /* 17 */
+			d = a + Integer.rotateLeft(d + x6 + 0xc040b340 + (b ^ (c & (a ^ b))), 9); /* 18 */
+			c = d + Integer.rotateLeft(c + x11 + 0x265e5a51 + (a ^ (b & (d ^ a))), 14); /* 19 */
+			b = c + Integer.rotateLeft(b + x0 + 0xe9b6c7aa + (d ^ (a & (c ^ d))), 20); /* 20 */
+			a = b + Integer.rotateLeft(a + x5 + 0xd62f105d + (c ^ (d & (b ^ c))), 5); /* 21 */
+			d = a + Integer.rotateLeft(d + x10 + 0x02441453 + (b ^ (c & (a ^ b))), 9); /* 22 */
+			c = d + Integer.rotateLeft(c + x15 + 0xd8a1e681 + (a ^ (b & (d ^ a))), 14); /* 23 */
+			b = c + Integer.rotateLeft(b + x4 + 0xe7d3fbc8 + (d ^ (a & (c ^ d))), 20); /* 24 */
+			a = b + Integer.rotateLeft(a + x9 + 0x21e1cde6 + (c ^ (d & (b ^ c))), 5); /* 25 */
+			d = a + Integer.rotateLeft(d + x14 + 0xc33707d6 + (b ^ (c & (a ^ b))), 9); /* 26 */
+			c = d + Integer.rotateLeft(c + x3 + 0xf4d50d87 + (a ^ (b & (d ^ a))), 14); /* 27 */
+			b = c + Integer.rotateLeft(b + x8 + 0x455a14ed + (d ^ (a & (c ^ d))), 20); /* 28 */
+			a = b + Integer.rotateLeft(a + x13 + 0xa9e3e905 + (c ^ (d & (b ^ c))), 5); /* 29 */
+			d = a + Integer.rotateLeft(d + x2 + 0xfcefa3f8 + (b ^ (c & (a ^ b))), 9); /* 30 */
+			c = d + Integer.rotateLeft(c + x7 + 0x676f02d9 + (a ^ (b & (d ^ a))), 14); /* 31 */
+			b = c + Integer.rotateLeft(b + x12 + 0x8d2a4c8a + (d ^ (a & (c ^ d))), 20); /* 32 */
+
+			/* Round 3: H = b ^ c ^ d */
+			a = b + Integer.rotateLeft(a + x5 + 0xfffa3942 + (b ^ c ^ d), 4); /* 33 */
+			d = a + Integer.rotateLeft(d + x8 + 0x8771f681 + (a ^ b ^ c), 11); /* 34 */
+			c = d + Integer.rotateLeft(c + x11 + 0x6d9d6122 + (d ^ a ^ b), 16); /* 35 */
+			b = c + Integer.rotateLeft(b + x14 + 0xfde5380c + (c ^ d ^ a), 23); /* 36 */
+			a = b + Integer.rotateLeft(a + x1 + 0xa4beea44 + (b ^ c ^ d), 4); /* 37 */
+			d = a + Integer.rotateLeft(d + x4 + 0x4bdecfa9 + (a ^ b ^ c), 11); /* 38 */
+			c = d + Integer.rotateLeft(c + x7 + 0xf6bb4b60 + (d ^ a ^ b), 16); /* 39 */
+			b = c + Integer.rotateLeft(b + x10 + 0xbebfbc70 + (c ^ d ^ a), 23); /* 40 */
+			a = b + Integer.rotateLeft(a + x13 + 0x289b7ec6 + (b ^ c ^ d), 4); /* 41 */
+			d = a + Integer.rotateLeft(d + x0 + 0xeaa127fa + (a ^ b ^ c), 11); /* 42 */
+			c = d + Integer.rotateLeft(c + x3 + 0xd4ef3085 + (d ^ a ^ b), 16); /* 43 */
+			b = c + Integer.rotateLeft(b + x6 + 0x04881d05 + (c ^ d ^ a), 23); /* 44 */
+			a = b + Integer.rotateLeft(a + x9 + 0xd9d4d039 + (b ^ c ^ d), 4); /* 45 */
+			d = a + Integer.rotateLeft(d + x12 + 0xe6db99e5 + (a ^ b ^ c), 11); /* 46 */
+			c = d + Integer.rotateLeft(c + x15 + 0x1fa27cf8 + (d ^ a ^ b), 16); /* 47 */
+			b = c + Integer.rotateLeft(b + x2 + 0xc4ac5665 + (c ^ d ^ a), 23); /* 48 */
+
+			/* Round 4: I = c ^ (b | ~d) */
+			a = b + Integer.rotateLeft(a + x0 + 0xf4292244 + (c ^ (b | ~d)), 6); /* 49 */
+			d = a + Integer.rotateLeft(d + x7 + 0x432aff97 + (b ^ (a | ~c)), 10); /* 50 */
+			c = d + Integer.rotateLeft(c + x14 + 0xab9423a7 + (a ^ (d | ~b)), 15); /* 51 */
+			b = c + Integer.rotateLeft(b + x5 + 0xfc93a039 + (d ^ (c | ~a)), 21); /* 52 */
+			a = b + Integer.rotateLeft(a + x12 + 0x655b59c3 + (c ^ (b | ~d)), 6); /* 53 */
+			d = a + Integer.rotateLeft(d + x3 + 0x8f0ccc92 + (b ^ (a | ~c)), 10); /* 54 */
+			c = d + Integer.rotateLeft(c + x10 + 0xffeff47d + (a ^ (d | ~b)), 15); /* 55 */
+			b = c + Integer.rotateLeft(b + x1 + 0x85845dd1 + (d ^ (c | ~a)), 21); /* 56 */
+			a = b + Integer.rotateLeft(a + x8 + 0x6fa87e4f + (c ^ (b | ~d)), 6); /* 57 */
+			d = a + Integer.rotateLeft(d + x15 + 0xfe2ce6e0 + (b ^ (a | ~c)), 10); /* 58 */
+			c = d + Integer.rotateLeft(c + x6 + 0xa3014314 + (a ^ (d | ~b)), 15); /* 59 */
+			b = c + Integer.rotateLeft(b + x13 + 0x4e0811a1 + (d ^ (c | ~a)), 21); /* 60 */
+			a = b + Integer.rotateLeft(a + x4 + 0xf7537e82 + (c ^ (b | ~d)), 6); /* 61 */
+			d = a + Integer.rotateLeft(d + x11 + 0xbd3af235 + (b ^ (a | ~c)), 10); /* 62 */
+			c = d + Integer.rotateLeft(c + x2 + 0x2ad7d2bb + (a ^ (d | ~b)), 15); /* 63 */
+			b = c + Integer.rotateLeft(b + x9 + 0xeb86d391 + (d ^ (c | ~a)), 21); /* 64 */
+
+			a += aa;
+			b += bb;
+			c += cc;
+			d += dd;
 		}
-		return decodeBuffer;
-	}
-
-	private static void transform(MD5State state, int[] x){
-		int a = state.state[0];
-		int b = state.state[1];
-		int c = state.state[2];
-		int d = state.state[3];
-
-		/* Round 1 */
-		a = FF (a, b, c, d, x[ 0],   7, 0xd76aa478); /* 1 */
-		d = FF (d, a, b, c, x[ 1],  12, 0xe8c7b756); /* 2 */
-		c = FF (c, d, a, b, x[ 2],  17, 0x242070db); /* 3 */
-		b = FF (b, c, d, a, x[ 3],  22, 0xc1bdceee); /* 4 */
-		a = FF (a, b, c, d, x[ 4],   7, 0xf57c0faf); /* 5 */
-		d = FF (d, a, b, c, x[ 5],  12, 0x4787c62a); /* 6 */
-		c = FF (c, d, a, b, x[ 6],  17, 0xa8304613); /* 7 */
-		b = FF (b, c, d, a, x[ 7],  22, 0xfd469501); /* 8 */
-		a = FF (a, b, c, d, x[ 8],   7, 0x698098d8); /* 9 */
-		d = FF (d, a, b, c, x[ 9],  12, 0x8b44f7af); /* 10 */
-		c = FF (c, d, a, b, x[10],  17, 0xffff5bb1); /* 11 */
-		b = FF (b, c, d, a, x[11],  22, 0x895cd7be); /* 12 */
-		a = FF (a, b, c, d, x[12],   7, 0x6b901122); /* 13 */
-		d = FF (d, a, b, c, x[13],  12, 0xfd987193); /* 14 */
-		c = FF (c, d, a, b, x[14],  17, 0xa679438e); /* 15 */
-		b = FF (b, c, d, a, x[15],  22, 0x49b40821); /* 16 */
-
-		/* Round 2 */
-		a = GG (a, b, c, d, x[ 1],   5, 0xf61e2562); /* 17 */
-		d = GG (d, a, b, c, x[ 6],   9, 0xc040b340); /* 18 */
-		c = GG (c, d, a, b, x[11],  14, 0x265e5a51); /* 19 */
-		b = GG (b, c, d, a, x[ 0],  20, 0xe9b6c7aa); /* 20 */
-		a = GG (a, b, c, d, x[ 5],   5, 0xd62f105d); /* 21 */
-		d = GG (d, a, b, c, x[10],   9, 0x02441453); /* 22 */
-		c = GG (c, d, a, b, x[15],  14, 0xd8a1e681); /* 23 */
-		b = GG (b, c, d, a, x[ 4],  20, 0xe7d3fbc8); /* 24 */
-		a = GG (a, b, c, d, x[ 9],   5, 0x21e1cde6); /* 25 */
-		d = GG (d, a, b, c, x[14],   9, 0xc33707d6); /* 26 */
-		c = GG (c, d, a, b, x[ 3],  14, 0xf4d50d87); /* 27 */
-		b = GG (b, c, d, a, x[ 8],  20, 0x455a14ed); /* 28 */
-		a = GG (a, b, c, d, x[13],   5, 0xa9e3e905); /* 29 */
-		d = GG (d, a, b, c, x[ 2],   9, 0xfcefa3f8); /* 30 */
-		c = GG (c, d, a, b, x[ 7],  14, 0x676f02d9); /* 31 */
-		b = GG (b, c, d, a, x[12],  20, 0x8d2a4c8a); /* 32 */
-
-		/* Round 3 */
-		a = HH (a, b, c, d, x[ 5],   4, 0xfffa3942); /* 33 */
-		d = HH (d, a, b, c, x[ 8],  11, 0x8771f681); /* 34 */
-		c = HH (c, d, a, b, x[11],  16, 0x6d9d6122); /* 35 */
-		b = HH (b, c, d, a, x[14],  23, 0xfde5380c); /* 36 */
-		a = HH (a, b, c, d, x[ 1],   4, 0xa4beea44); /* 37 */
-		d = HH (d, a, b, c, x[ 4],  11, 0x4bdecfa9); /* 38 */
-		c = HH (c, d, a, b, x[ 7],  16, 0xf6bb4b60); /* 39 */
-		b = HH (b, c, d, a, x[10],  23, 0xbebfbc70); /* 40 */
-		a = HH (a, b, c, d, x[13],   4, 0x289b7ec6); /* 41 */
-		d = HH (d, a, b, c, x[ 0],  11, 0xeaa127fa); /* 42 */
-		c = HH (c, d, a, b, x[ 3],  16, 0xd4ef3085); /* 43 */
-		b = HH (b, c, d, a, x[ 6],  23, 0x04881d05); /* 44 */
-		a = HH (a, b, c, d, x[ 9],   4, 0xd9d4d039); /* 45 */
-		d = HH (d, a, b, c, x[12],  11, 0xe6db99e5); /* 46 */
-		c = HH (c, d, a, b, x[15],  16, 0x1fa27cf8); /* 47 */
-		b = HH (b, c, d, a, x[ 2],  23, 0xc4ac5665); /* 48 */
-
-		/* Round 4 */
-		a = II (a, b, c, d, x[ 0],   6, 0xf4292244); /* 49 */
-		d = II (d, a, b, c, x[ 7],  10, 0x432aff97); /* 50 */
-		c = II (c, d, a, b, x[14],  15, 0xab9423a7); /* 51 */
-		b = II (b, c, d, a, x[ 5],  21, 0xfc93a039); /* 52 */
-		a = II (a, b, c, d, x[12],   6, 0x655b59c3); /* 53 */
-		d = II (d, a, b, c, x[ 3],  10, 0x8f0ccc92); /* 54 */
-		c = II (c, d, a, b, x[10],  15, 0xffeff47d); /* 55 */
-		b = II (b, c, d, a, x[ 1],  21, 0x85845dd1); /* 56 */
-		a = II (a, b, c, d, x[ 8],   6, 0x6fa87e4f); /* 57 */
-		d = II (d, a, b, c, x[15],  10, 0xfe2ce6e0); /* 58 */
-		c = II (c, d, a, b, x[ 6],  15, 0xa3014314); /* 59 */
-		b = II (b, c, d, a, x[13],  21, 0x4e0811a1); /* 60 */
-		a = II (a, b, c, d, x[ 4],   6, 0xf7537e82); /* 61 */
-		d = II (d, a, b, c, x[11],  10, 0xbd3af235); /* 62 */
-		c = II (c, d, a, b, x[ 2],  15, 0x2ad7d2bb); /* 63 */
-		b = II (b, c, d, a, x[ 9],  21, 0xeb86d391); /* 64 */
-
-		state.state[0] += a;
-		state.state[1] += b;
-		state.state[2] += c;
-		state.state[3] += d;
+
+		state[0] = a;
+		state[1] = b;
+		state[2] = c;
+		state[3] = d;
 	}
 }
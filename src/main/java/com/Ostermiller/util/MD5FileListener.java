@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+
+/**
+ * Call back for the results of hashing many files at once.
+ * <p>
+ * Results are reported as soon as each file is hashed, in the
+ * order in which hashing finishes rather than the order in which
+ * the files were given.  Calls are never made concurrently, so
+ * implementations need not be thread safe, but they are made from
+ * the hashing threads and should return quickly.
+ *
+ * @see MD5#getHashes(java.util.Collection, int, MD5FileListener)
+ * @see MD5#getHashesRecursive(File, int, MD5FileListener)
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public interface MD5FileListener {
+
+	/**
+	 * Called when a file has been hashed.
+	 *
+	 * @param file the file.
+	 * @param hash Array of 16 bytes, the MD5 hash of the file.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void hashed(File file, byte[] hash);
+
+	/**
+	 * Called when a file (or a directory when walking a directory tree)
+	 * could not be read.  Hashing of other files continues.
+	 *
+	 * @param file the file.
+	 * @param x the reason that the file could not be read.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void failed(File file, IOException x);
+}
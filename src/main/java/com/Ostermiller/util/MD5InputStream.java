@@ -83,7 +83,7 @@ public class MD5InputStream extends FilterInputStream {
 		}
 		md5.update((byte)(c & 0xff));
 		return c;
-}
+	}
 
 	/**
 	 * Reads up to length bytes of data from this input stream into an
@@ -105,6 +105,71 @@ public class MD5InputStream extends FilterInputStream {
 		return r;
 	}
 
+	/**
+	 * Skips over and discards n bytes of data from this input stream.
+	 * <p>
+	 * The skipped bytes are read from the underlying stream
+	 * so that they are included in the hash.
+	 *
+	 * @param n the number of bytes to be skipped.
+	 * @return the actual number of bytes skipped.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public long skip(long n) throws IOException {
+		if (n <= 0) return 0;
+		byte[] buffer = new byte[(int)Math.min(n, SKIP_BUFFER_SIZE)];
+		long skipped = 0;
+		while (skipped < n){
+			int r = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+			if (r == -1) break;
+			skipped += r;
+		}
+		return skipped;
+	}
+
+	/**
+	 * Largest buffer used when skipping bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int SKIP_BUFFER_SIZE = 0x2000;
+
+	/**
+	 * Mark and reset are not supported because bytes read again
+	 * after a reset would be hashed twice.
+	 *
+	 * @return false
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public boolean markSupported(){
+		return false;
+	}
+
+	/**
+	 * Mark and reset are not supported.
+	 *
+	 * @param readlimit ignored.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void mark(int readlimit){
+		// not supported
+	}
+
+	/**
+	 * Mark and reset are not supported.
+	 *
+	 * @throws IOException always.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+
 	/**
 	 * Returns array of bytes representing hash of the stream so far.
 	 *
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MD5 hashing of many files at once, and of a single file in chunks,
+ * split across multiple threads.
+ * <p>
+ * The files are sorted largest first and each thread takes the next
+ * file from the list whenever it finishes one.  Starting with the
+ * large files means that the threads finish at about the same time
+ * rather than one thread being left with a large file at the end.
+ * Each thread reuses a single MD5 (and its read buffer) for all the
+ * files that it hashes.
+ * <p>
+ * A chunked hash is the MD5 of the concatenated MD5 hashes of
+ * fixed size chunks of a file.  The chunks are hashed on the
+ * common fork join pool, several consecutive chunks per task
+ * when the chunks are small.
+ *
+ * @see MD5
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+final class MD5Parallel {
+
+	/**
+	 * Minimum number of bytes hashed by each task when hashing a file
+	 * in chunks.  Small chunks are grouped together so that there aren't
+	 * more tasks than are useful.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static final long CHUNK_TASK_SIZE = 0x1000000;
+
+	/**
+	 * This class need not be instantiated, all methods are static.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private MD5Parallel(){
+		// should not be called
+	}
+
+	/**
+	 * A file waiting to be hashed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final class Job implements Comparable<Job> {
+		private final File file;
+		private final long length;
+		private Job(File file, long length){
+			this.file = file;
+			this.length = length;
+		}
+		/**
+		 * Larger files sort first.
+		 */
+		@Override public int compareTo(Job o){
+			return Long.compare(o.length, length);
+		}
+	}
+
+	/**
+	 * Hash the given files.
+	 *
+	 * @param files the files to hash.
+	 * @param threads the number of files to hash at once.
+	 * @param listener receives the results.
+	 * @throws InterruptedException if interrupted while waiting for the hashing to finish.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static void getHashes(Collection<File> files, int threads, MD5FileListener listener) throws InterruptedException {
+		if (threads < 1) throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		List<Job> jobs = new ArrayList<Job>(files.size());
+		for (File file: files){
+			jobs.add(new Job(file, file.length()));
+		}
+		run(jobs, threads, listener);
+	}
+
+	/**
+	 * Hash all the regular files in a directory tree.
+	 * Symbolic links are not followed.
+	 *
+	 * @param directory the root of the tree.
+	 * @param threads the number of files to hash at once.
+	 * @param listener receives the results, including directories that can't be read.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws InterruptedException if interrupted while waiting for the hashing to finish.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static void getHashesRecursive(File directory, int threads, final MD5FileListener listener) throws IOException, InterruptedException {
+		if (threads < 1) throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+		final List<Job> jobs = new ArrayList<Job>();
+		// The sizes come along with the directory listing, so sorting
+		// by size does not need an extra call per file.
+		Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>(){
+			@Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs){
+				if (attrs.isRegularFile()){
+					jobs.add(new Job(file.toFile(), attrs.size()));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+			@Override public FileVisitResult visitFileFailed(Path file, IOException x){
+				listener.failed(file.toFile(), x);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		run(jobs, threads, listener);
+	}
+
+	/**
+	 * Hash the files largest first using the given number of threads.
+	 *
+	 * @param jobList the files to hash.
+	 * @param threads the number of files to hash at once.
+	 * @param listener receives the results.
+	 * @throws InterruptedException if interrupted while waiting for the hashing to finish.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void run(List<Job> jobList, int threads, final MD5FileListener listener) throws InterruptedException {
+		final Job[] jobs = jobList.toArray(new Job[jobList.size()]);
+		Arrays.sort(jobs);
+		final AtomicInteger next = new AtomicInteger();
+		final Object lock = new Object();
+		Runnable worker = new Runnable(){
+			public void run(){
+				MD5 md5 = new MD5();
+				for (int i = next.getAndIncrement(); i < jobs.length; i = next.getAndIncrement()){
+					if (Thread.currentThread().isInterrupted()) return;
+					File file = jobs[i].file;
+					byte[] hash = null;
+					IOException failure = null;
+					try {
+						md5.reset();
+						md5.update(file.toPath());
+						hash = md5.getHash();
+					} catch (IOException x){
+						failure = x;
+					}
+					// Reading a file is interruptible; don't report files
+					// that failed because the hashing was stopped.
+					if (Thread.currentThread().isInterrupted()) return;
+					synchronized (lock){
+						if (failure == null){
+							listener.hashed(file, hash);
+						} else {
+							listener.failed(file, failure);
+						}
+					}
+				}
+			}
+		};
+		if (threads == 1 || jobs.length <= 1){
+			worker.run();
+			if (Thread.interrupted()) throw new InterruptedException();
+			return;
+		}
+		Parallelizer parallelizer = new Parallelizer(threads);
+		for (int i = Math.min(threads, jobs.length); i > 0; i--){
+			parallelizer.run(worker, "MD5");
+		}
+		boolean finished = false;
+		try {
+			parallelizer.join();
+			finished = true;
+		} finally {
+			if (!finished){
+				// Interrupted, or the listener threw an exception:
+				// stop the threads that are still hashing.
+				parallelizer.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Hash each chunk of a file.
+	 * <p>
+	 * A file always has at least one chunk, even when it is empty.
+	 * Only the last chunk may be shorter than the chunk size.
+	 *
+	 * @param path the file.
+	 * @param chunkSize number of bytes in each chunk.
+	 * @return the 16 byte MD5 hashes of the chunks, one after another.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalArgumentException if the chunk size is not positive or there would be too many chunks.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	static byte[] getChunkHashes(Path path, final long chunkSize) throws IOException {
+		if (chunkSize < 1) throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			final long size = channel.size();
+			long count = size / chunkSize + (size % chunkSize == 0 ? 0 : 1);
+			if (count == 0) count = 1;
+			if (count > Integer.MAX_VALUE / 16) throw new IllegalArgumentException("Too many chunks: " + count);
+			final int chunks = (int)count;
+			final byte[] hashes = new byte[chunks * 16];
+			// Number of consecutive chunks hashed by each task
+			final int chunksPerTask = (int)Math.max(1, Math.min(chunks, CHUNK_TASK_SIZE / chunkSize));
+			List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+			for (int i = 0; i < chunks; i += chunksPerTask){
+				final int first = i;
+				final int last = Math.min(chunks, i + chunksPerTask);
+				tasks.add(new RecursiveAction(){
+					private static final long serialVersionUID = 1L;
+					@Override protected void compute(){
+						try {
+							MD5 md5 = new MD5();
+							for (int chunk = first; chunk < last; chunk++){
+								long position = chunk * chunkSize;
+								md5.reset();
+								md5.update(channel, position, Math.min(chunkSize, size - position));
+								System.arraycopy(md5.getHash(), 0, hashes, chunk * 16, 16);
+							}
+						} catch (IOException x){
+							throw new UncheckedIOException(x);
+						}
+					}
+				});
+			}
+			if (tasks.size() == 1){
+				// Nothing to split up, hash on this thread
+				try {
+					tasks.get(0).invoke();
+				} catch (UncheckedIOException x){
+					throw x.getCause();
+				}
+			} else {
+				runAll(tasks);
+			}
+			return hashes;
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Run tasks in the common fork join pool and wait for them to finish.
+	 *
+	 * @param tasks tasks to run.
+	 * @throws IOException if any task fails with an I/O error.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void runAll(final List<RecursiveAction> tasks) throws IOException {
+		try {
+			ForkJoinPool.commonPool().invoke(new RecursiveAction(){
+				private static final long serialVersionUID = 1L;
+				@Override protected void compute(){
+					invokeAll(tasks);
+				}
+			});
+		} catch (UncheckedIOException x){
+			throw x.getCause();
+		}
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Implements MD5 functionality on a channel.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/MD5.html">ostermiller.org</a>.
+ * <p>
+ * This class produces a 128-bit "fingerprint" or "message digest" for
+ * all data read from this channel.  The bytes are hashed where
+ * they were read: bytes read into a heap buffer are hashed in place,
+ * and bytes read into a direct buffer are copied to the hash a block
+ * at a time through a buffer that is reused.
+ * <p>
+ * For more information see RFC1321.
+ *
+ * @see MD5
+ * @see MD5InputStream
+ * @see MD5WritableByteChannel
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class MD5ReadableByteChannel implements ReadableByteChannel {
+
+	/**
+	 * The underlying channel.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final ReadableByteChannel channel;
+
+	/**
+	 * MD5 context
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final MD5 md5 = new MD5();
+
+	/**
+	 * Creates a MD5ReadableByteChannel
+	 *
+	 * @param channel the underlying channel.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MD5ReadableByteChannel(ReadableByteChannel channel){
+		this.channel = channel;
+	}
+
+	/**
+	 * Reads a sequence of bytes from the underlying channel into the
+	 * given buffer and adds them to the hash.
+	 *
+	 * @param dst The buffer into which bytes are to be transferred.
+	 * @return The number of bytes read, possibly zero, or -1 if the channel has reached end-of-stream.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int read(ByteBuffer dst) throws IOException {
+		int position = dst.position();
+		int read = channel.read(dst);
+		if (read > 0){
+			ByteBuffer readBytes = dst.duplicate();
+			readBytes.limit(position + read).position(position);
+			md5.update(readBytes);
+		}
+		return read;
+	}
+
+	/**
+	 * Tells whether or not this channel is open.
+	 *
+	 * @return true if, and only if, the underlying channel is open.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean isOpen(){
+		return channel.isOpen();
+	}
+
+	/**
+	 * Closes the underlying channel.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns array of bytes representing hash of the channel so far.
+	 *
+	 * @return Array of 16 bytes, the hash of all read bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[] getHash(){
+		return md5.getHash();
+	}
+
+	/**
+	 * Get a 32-character hex representation representing hash of the channel so far.
+	 *
+	 * @return A string containing the hash of all read bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String getHashString(){
+		return md5.getHashString();
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Implements MD5 functionality on a channel.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/MD5.html">ostermiller.org</a>.
+ * <p>
+ * This class produces a 128-bit "fingerprint" or "message digest" for
+ * all data written to this channel.  The bytes are hashed where
+ * they are: bytes written from a heap buffer are hashed in place,
+ * and bytes written from a direct buffer are copied to the hash a block
+ * at a time through a buffer that is reused.
+ * <p>
+ * For more information see RFC1321.
+ *
+ * @see MD5
+ * @see MD5OutputStream
+ * @see MD5ReadableByteChannel
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class MD5WritableByteChannel implements WritableByteChannel {
+
+	/**
+	 * The underlying channel.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final WritableByteChannel channel;
+
+	/**
+	 * MD5 context
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final MD5 md5 = new MD5();
+
+	/**
+	 * Creates a MD5WritableByteChannel
+	 *
+	 * @param channel the underlying channel.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MD5WritableByteChannel(WritableByteChannel channel){
+		this.channel = channel;
+	}
+
+	/**
+	 * Writes a sequence of bytes from the given buffer to the
+	 * underlying channel and adds the bytes that were written to the hash.
+	 *
+	 * @param src The buffer from which bytes are to be retrieved.
+	 * @return The number of bytes written, possibly zero.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int write(ByteBuffer src) throws IOException {
+		int position = src.position();
+		int written = channel.write(src);
+		if (written > 0){
+			ByteBuffer writtenBytes = src.duplicate();
+			writtenBytes.limit(position + written).position(position);
+			md5.update(writtenBytes);
+		}
+		return written;
+	}
+
+	/**
+	 * Tells whether or not this channel is open.
+	 *
+	 * @return true if, and only if, the underlying channel is open.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean isOpen(){
+		return channel.isOpen();
+	}
+
+	/**
+	 * Closes the underlying channel.
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns array of bytes representing hash of the channel so far.
+	 *
+	 * @return Array of 16 bytes, the hash of all written bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public byte[] getHash(){
+		return md5.getHash();
+	}
+
+	/**
+	 * Get a 32-character hex representation representing hash of the channel so far.
+	 *
+	 * @return A string containing the hash of all written bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String getHashString(){
+		return md5.getHashString();
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
+
+/**
+ * A list of digests (MD5 hashes, message digests and checksums)
+ * that are all updated with the same data.
+ * <p>
+ * Large updates are split into blocks and each block is passed
+ * to every digest before moving on to the next block.  That way each
+ * block is read from memory once and is still in the processor's
+ * cache when the other digests read it.
+ *
+ * @see MultiDigestInputStream
+ * @see MultiDigestOutputStream
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+final class MultiDigest {
+
+	/**
+	 * Number of bytes passed to every digest before moving
+	 * on to the next block.  Small enough to stay in the cache.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int BLOCK_SIZE = 0x4000;
+
+	/**
+	 * Common interface for the different kinds of digests.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static abstract class Engine {
+		abstract void update(byte b);
+		abstract void update(byte[] bytes, int offset, int length);
+	}
+
+	/**
+	 * The digests, in the order in which they were added.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private Engine[] engines = new Engine[0];
+
+	/**
+	 * Add a digest to the list.
+	 *
+	 * @param engine the digest.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void add(Engine engine){
+		Engine[] newEngines = new Engine[engines.length + 1];
+		System.arraycopy(engines, 0, newEngines, 0, engines.length);
+		newEngines[engines.length] = engine;
+		engines = newEngines;
+	}
+
+	/**
+	 * Add an MD5 hash to the list.
+	 *
+	 * @param md5 the hash.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	void add(final MD5 md5){
+		if (md5 == null) throw new NullPointerException();
+		add(new Engine(){
+			@Override void update(byte b){
+				md5.update(b);
+			}
+			@Override void update(byte[] bytes, int offset, int length){
+				md5.update(bytes, offset, length);
+			}
+		});
+	}
+
+	/**
+	 * Add a message digest to the list.
+	 *
+	 * @param digest the message digest.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	void add(final MessageDigest digest){
+		if (digest == null) throw new NullPointerException();
+		add(new Engine(){
+			@Override void update(byte b){
+				digest.update(b);
+			}
+			@Override void update(byte[] bytes, int offset, int length){
+				digest.update(bytes, offset, length);
+			}
+		});
+	}
+
+	/**
+	 * Add a checksum to the list.
+	 *
+	 * @param checksum the checksum.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	void add(final Checksum checksum){
+		if (checksum == null) throw new NullPointerException();
+		add(new Engine(){
+			@Override void update(byte b){
+				checksum.update(b);
+			}
+			@Override void update(byte[] bytes, int offset, int length){
+				checksum.update(bytes, offset, length);
+			}
+		});
+	}
+
+	/**
+	 * Update every digest with a byte.
+	 *
+	 * @param b the byte.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	void update(byte b){
+		for (Engine engine: engines){
+			engine.update(b);
+		}
+	}
+
+	/**
+	 * Update every digest with the given bytes.
+	 *
+	 * @param bytes the data.
+	 * @param offset offset of the first byte in the array.
+	 * @param length number of bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	void update(byte[] bytes, int offset, int length){
+		Engine[] engines = this.engines;
+		if (engines.length == 1){
+			engines[0].update(bytes, offset, length);
+			return;
+		}
+		for (int end = offset + length; offset < end; offset += BLOCK_SIZE){
+			int blockLength = Math.min(BLOCK_SIZE, end - offset);
+			for (Engine engine: engines){
+				engine.update(bytes, offset, blockLength);
+			}
+		}
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
+
+/**
+ * An input stream that updates several digests with all the data
+ * read from it, in a single pass over the data.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/MD5.html">ostermiller.org</a>.
+ * <p>
+ * Any mix of {@link MD5} hashes, {@link MessageDigest}s (such as SHA-256)
+ * and {@link Checksum}s (such as CRC32) may be added.  Each block
+ * of data read is passed to every digest while it is still in the
+ * processor's cache, so computing several digests costs no more reading
+ * than computing one, and there is only a single stream in the chain
+ * to dispatch through.  The digests are updated in place;
+ * keep references to them to get the results.
+ * <pre>
+ * MD5 md5 = new MD5();
+ * CRC32 crc = new CRC32();
+ * InputStream in = new MultiDigestInputStream(upload).addDigest(md5).addDigest(crc);
+ * // read from in
+ * String hash = md5.getHashString();
+ * long checksum = crc.getValue();
+ * </pre>
+ *
+ * @see MultiDigestOutputStream
+ * @see MD5InputStream
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class MultiDigestInputStream extends FilterInputStream {
+
+	/**
+	 * The digests to update.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final MultiDigest digests = new MultiDigest();
+
+	/**
+	 * Creates a MultiDigestInputStream with no digests.
+	 *
+	 * @param in the underlying input stream.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiDigestInputStream(InputStream in){
+		super(in);
+	}
+
+	/**
+	 * Update an MD5 hash with the data read from this stream.
+	 *
+	 * @param md5 the hash to update.
+	 * @return this for method chaining
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiDigestInputStream addDigest(MD5 md5){
+		digests.add(md5);
+		return this;
+	}
+
+	/**
+	 * Update a message digest with the data read from this stream.
+	 *
+	 * @param digest the message digest to update.
+	 * @return this for method chaining
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiDigestInputStream addDigest(MessageDigest digest){
+		digests.add(digest);
+		return this;
+	}
+
+	/**
+	 * Update a checksum with the data read from this stream.
+	 *
+	 * @param checksum the checksum to update.
+	 * @return this for method chaining
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiDigestInputStream addDigest(Checksum checksum){
+		digests.add(checksum);
+		return this;
+	}
+
+	/**
+	 * Reads the next byte of data from this input stream and
+	 * updates the digests with it.
+	 *
+	 * @return the next byte of data, or -1 if the end of the stream is reached.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read() throws IOException {
+		int c = in.read();
+		if (c != -1){
+			digests.update((byte)c);
+		}
+		return c;
+	}
+
+	/**
+	 * Reads up to length bytes of data from this input stream into an
+	 * array of bytes and updates the digests with them.
+	 *
+	 * @param bytes the buffer into which the data is read.
+	 * @param offset the start offset of the data.
+	 * @param length the maximum number of bytes read.
+	 * @return the total number of bytes read into the buffer, or -1 if there is no more data because the end of the stream has been reached.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public int read(byte[] bytes, int offset, int length) throws IOException {
+		int r = in.read(bytes, offset, length);
+		if (r > 0){
+			digests.update(bytes, offset, r);
+		}
+		return r;
+	}
+
+	/**
+	 * Skips over and discards n bytes of data from this input stream.
+	 * <p>
+	 * The skipped bytes are read from the underlying stream
+	 * so that they are included in the digests.
+	 *
+	 * @param n the number of bytes to be skipped.
+	 * @return the actual number of bytes skipped.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public long skip(long n) throws IOException {
+		if (n <= 0) return 0;
+		byte[] buffer = new byte[(int)Math.min(n, SKIP_BUFFER_SIZE)];
+		long skipped = 0;
+		while (skipped < n){
+			int r = read(buffer, 0, (int)Math.min(n - skipped, buffer.length));
+			if (r == -1) break;
+			skipped += r;
+		}
+		return skipped;
+	}
+
+	/**
+	 * Largest buffer used when skipping bytes.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int SKIP_BUFFER_SIZE = 0x2000;
+
+	/**
+	 * Mark and reset are not supported because bytes read again
+	 * after a reset would be digested twice.
+	 *
+	 * @return false
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public boolean markSupported(){
+		return false;
+	}
+
+	/**
+	 * Mark and reset are not supported.
+	 *
+	 * @param readlimit ignored.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void mark(int readlimit){
+		// not supported
+	}
+
+	/**
+	 * Mark and reset are not supported.
+	 *
+	 * @throws IOException always.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+}
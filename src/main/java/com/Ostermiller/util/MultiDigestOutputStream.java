@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.util.zip.Checksum;
+
+/**
+ * An output stream that updates several digests with all the data
+ * written to it, in a single pass over the data.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/MD5.html">ostermiller.org</a>.
+ * <p>
+ * Any mix of {@link MD5} hashes, {@link MessageDigest}s (such as SHA-256)
+ * and {@link Checksum}s (such as CRC32) may be added.  Each block
+ * of data written is passed to every digest while it is still in the
+ * processor's cache, so computing several digests costs no more reading
+ * than computing one, and there is only a single stream in the chain
+ * to dispatch through.  The digests are updated in place;
+ * keep references to them to get the results.
+ * <pre>
+ * MD5 md5 = new MD5();
+ * MessageDigest sha = MessageDigest.getInstance("SHA-256");
+ * OutputStream out = new MultiDigestOutputStream(upload).addDigest(md5).addDigest(sha);
+ * // write to out
+ * String hash = md5.getHashString();
+ * byte[] shaHash = sha.digest();
+ * </pre>
+ *
+ * @see MultiDigestInputStream
+ * @see MD5OutputStream
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class MultiDigestOutputStream extends FilterOutputStream {
+
+	/**
+	 * The digests to update.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final MultiDigest digests = new MultiDigest();
+
+	/**
+	 * Creates a MultiDigestOutputStream with no digests.
+	 *
+	 * @param out the underlying output stream.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiDigestOutputStream(OutputStream out){
+		super(out);
+	}
+
+	/**
+	 * Update an MD5 hash with the data written to this stream.
+	 *
+	 * @param md5 the hash to update.
+	 * @return this for method chaining
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiDigestOutputStream addDigest(MD5 md5){
+		digests.add(md5);
+		return this;
+	}
+
+	/**
+	 * Update a message digest with the data written to this stream.
+	 *
+	 * @param digest the message digest to update.
+	 * @return this for method chaining
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiDigestOutputStream addDigest(MessageDigest digest){
+		digests.add(digest);
+		return this;
+	}
+
+	/**
+	 * Update a checksum with the data written to this stream.
+	 *
+	 * @param checksum the checksum to update.
+	 * @return this for method chaining
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiDigestOutputStream addDigest(Checksum checksum){
+		digests.add(checksum);
+		return this;
+	}
+
+	/**
+	 * Writes the specified byte to this output stream and
+	 * updates the digests with it.
+	 *
+	 * @param b the byte.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(int b) throws IOException {
+		out.write(b);
+		digests.update((byte)b);
+	}
+
+	/**
+	 * Writes length bytes from the specified byte array starting at
+	 * offset off to this output stream and updates the digests with them.
+	 *
+	 * @param b the data.
+	 * @param off the start offset in the data.
+	 * @param len the number of bytes to write.
+	 * @throws IOException if an I/O error occurs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public void write(byte b[], int off, int len) throws IOException {
+		out.write(b, off, len);
+		digests.update(b, off, len);
+	}
+}
@@ -0,0 +1,618 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.util.*;
+
+/**
+ * Finds any of a set of terms in strings.
+ * More information about this class is available from <a target="_top" href=
+ * "http://ostermiller.org/utils/StringHelper.html">ostermiller.org</a>.
+ * <p>
+ * The terms are compiled once into an Aho-Corasick automaton which then
+ * finds all of them in a single pass over a string, however many terms
+ * there are.  Compiling takes time in proportion to the total length of the
+ * terms, and searching takes time in proportion to the length of the string
+ * (plus the number of matches, when finding all of them).  A regular
+ * expression that is each of the terms or'd together tries the terms
+ * one after another at each position, which gets slow with thousands of terms.
+ * <p>
+ * Matchers are immutable and may be shared between threads.
+ * <p>
+ * When case is ignored, characters are compared using Unicode case rules,
+ * as by a regular expression with the CASE_INSENSITIVE and UNICODE_CASE flags:
+ * two characters are equal if they are the same after being converted to
+ * upper case and then back to lower case.
+ *
+ * @see StringHelper#containsAny(String, String[])
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public final class MultiStringMatcher {
+
+	/**
+	 * An occurrence of a term in a string.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static final class Match {
+
+		private final int start;
+		private final int end;
+		private final int termIndex;
+		private final String term;
+
+		private Match(int start, int end, int termIndex, String term){
+			this.start = start;
+			this.end = end;
+			this.termIndex = termIndex;
+			this.term = term;
+		}
+
+		/**
+		 * @return index in the string of the first character of the match.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public int getStart(){
+			return start;
+		}
+
+		/**
+		 * @return index in the string after the last character of the match.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public int getEnd(){
+			return end;
+		}
+
+		/**
+		 * @return index of the matched term in the array of terms from which
+		 *     the matcher was created (the first if the term appears more than once).
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public int getTermIndex(){
+			return termIndex;
+		}
+
+		/**
+		 * @return the matched term as given to the matcher, which may differ in case
+		 *     from the matched part of the string when case is ignored.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		public String getTerm(){
+			return term;
+		}
+
+		/**
+		 * @return the term and where it was matched.
+		 *
+		 * @since ostermillerutils 1.09.00
+		 */
+		@Override public String toString(){
+			return term + "@" + start + "-" + end;
+		}
+	}
+
+	/**
+	 * The terms, as given.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final String[] terms;
+
+	/**
+	 * Whether case is ignored.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final boolean ignoreCase;
+
+	/**
+	 * Index of the first term that is the empty string,
+	 * which matches at every position, or -1 if none is.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final int emptyTerm;
+
+	// The automaton.  State zero is the root, the empty prefix.
+	// Each other state is a prefix of one or more terms.
+
+	/**
+	 * The state after the root for each character, zero where the root
+	 * has no transition.  Characters beyond the end of the array
+	 * have none.  Most characters of a string being searched are
+	 * looked up here, so it is an array rather than part of edgeKeys.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final int[] rootNext;
+
+	/**
+	 * Transitions of states other than the root, an open addressed hash table
+	 * keyed by state and character, see {@link #edgeKey(int, char)}.
+	 * Empty slots are -1.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final long[] edgeKeys;
+
+	/**
+	 * State to which each transition in edgeKeys leads.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final int[] edgeValues;
+
+	/**
+	 * For each state, the state for its longest proper suffix that is
+	 * also a state: where to continue when there is no transition.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final int[] fail;
+
+	/**
+	 * For each state, the index of the term that ends there, or -1.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final int[] termAt;
+
+	/**
+	 * For each state, the longest of it and its suffixes at which a
+	 * term ends, or zero if none.  Following output[fail[state]] from
+	 * there leads to each of the other terms that end at the same place.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final int[] output;
+
+	/**
+	 * Create a matcher for the given terms that respects case.
+	 *
+	 * @param terms the terms to find.
+	 * @throws IllegalArgumentException if there are no terms.
+	 * @throws NullPointerException if terms or any of the terms is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiStringMatcher(String[] terms){
+		this(terms, false);
+	}
+
+	/**
+	 * Create a matcher for the given terms.
+	 *
+	 * @param terms the terms to find.
+	 * @param ignoreCase whether to ignore case using Unicode case rules.
+	 * @throws IllegalArgumentException if there are no terms.
+	 * @throws NullPointerException if terms or any of the terms is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public MultiStringMatcher(String[] terms, boolean ignoreCase){
+		if (terms.length == 0) throw new IllegalArgumentException("There must be at least one term to find.");
+		this.terms = terms.clone();
+		this.ignoreCase = ignoreCase;
+
+		// Build a trie of the terms.  Children of each state are kept
+		// in linked lists so that they can be visited breadth first.
+		int totalLength = 0;
+		for (String term: this.terms){
+			totalLength += term.length();
+		}
+		int capacity = totalLength + 1;
+		int[] firstChild = new int[capacity];
+		int[] nextSibling = new int[capacity];
+		char[] stateChar = new char[capacity];
+		int[] termIndex = new int[capacity];
+		Arrays.fill(termIndex, -1);
+		int[] rootEdges = new int[0x80];
+		int stateCount = 1;
+		// There is at most one transition for each character of the terms
+		edgeKeys = new long[tableSize(totalLength)];
+		Arrays.fill(edgeKeys, -1);
+		edgeValues = new int[edgeKeys.length];
+		int empty = -1;
+		for (int t = 0; t < this.terms.length; t++){
+			String term = this.terms[t];
+			int state = 0;
+			for (int i = 0; i < term.length(); i++){
+				char c = ignoreCase ? fold(term, i) : term.charAt(i);
+				int next;
+				if (state == 0){
+					if (c >= rootEdges.length) rootEdges = Arrays.copyOf(rootEdges, Math.max(c + 1, rootEdges.length * 2));
+					next = rootEdges[c];
+				} else {
+					next = edge(state, c);
+				}
+				if (next <= 0){
+					next = stateCount++;
+					stateChar[next] = c;
+					nextSibling[next] = firstChild[state];
+					firstChild[state] = next;
+					if (state == 0){
+						rootEdges[c] = next;
+					} else {
+						putEdge(state, c, next);
+					}
+				}
+				state = next;
+			}
+			if (state == 0){
+				if (empty == -1) empty = t;
+			} else if (termIndex[state] == -1){
+				termIndex[state] = t;
+			}
+		}
+		emptyTerm = empty;
+		int maxRootChar = 0;
+		for (int c = 0; c < rootEdges.length; c++){
+			if (rootEdges[c] != 0) maxRootChar = c;
+		}
+		rootNext = Arrays.copyOf(rootEdges, maxRootChar + 1);
+		termAt = Arrays.copyOf(termIndex, stateCount);
+
+		// Link each state to its longest proper suffix that is
+		// also a state, breadth first so that shorter states are
+		// linked before the states that need them.
+		fail = new int[stateCount];
+		output = new int[stateCount];
+		int[] queue = new int[stateCount];
+		int head = 0;
+		int tail = 0;
+		for (int child = firstChild[0]; child != 0; child = nextSibling[child]){
+			queue[tail++] = child;
+			output[child] = (termAt[child] >= 0) ? child : 0;
+		}
+		while (head < tail){
+			int state = queue[head++];
+			for (int child = firstChild[state]; child != 0; child = nextSibling[child]){
+				queue[tail++] = child;
+				int suffix = next(fail[state], stateChar[child]);
+				fail[child] = suffix;
+				output[child] = (termAt[child] >= 0) ? child : output[suffix];
+			}
+		}
+	}
+
+	/**
+	 * @param count number of entries.
+	 * @return a power of two size for a hash table that is no more than half full.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static int tableSize(int count){
+		return Integer.highestOneBit(Math.max(8, count) * 2 - 1) << 1;
+	}
+
+	/**
+	 * @param state a state other than the root.
+	 * @param c a character.
+	 * @return key for the transition from the state on the character.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static long edgeKey(int state, char c){
+		return ((long)state << 16) | c;
+	}
+
+	/**
+	 * @param key a transition key.
+	 * @param mask size of the hash table minus one.
+	 * @return the slot at which to start looking for the key.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static int slot(long key, int mask){
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+
+	/**
+	 * @param state a state other than the root.
+	 * @param c a character.
+	 * @return the state after the given state on the character, or -1 if there is no transition.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private int edge(int state, char c){
+		long key = edgeKey(state, c);
+		long[] keys = edgeKeys;
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); ; i = (i + 1) & mask){
+			long k = keys[i];
+			if (k == key) return edgeValues[i];
+			if (k == -1) return -1;
+		}
+	}
+
+	/**
+	 * Add a transition to the hash table.
+	 *
+	 * @param state a state other than the root.
+	 * @param c a character.
+	 * @param next the state after the given state on the character.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void putEdge(int state, char c, int next){
+		long key = edgeKey(state, c);
+		int mask = edgeKeys.length - 1;
+		int i = slot(key, mask);
+		while (edgeKeys[i] != -1){
+			i = (i + 1) & mask;
+		}
+		edgeKeys[i] = key;
+		edgeValues[i] = next;
+	}
+
+	/**
+	 * Get the state after the given state on the character,
+	 * following suffix links until there is a transition.
+	 *
+	 * @param state a state.
+	 * @param c a character.
+	 * @return the next state.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private int next(int state, char c){
+		while (state != 0){
+			int next = edge(state, c);
+			if (next != -1) return next;
+			state = fail[state];
+		}
+		return (c < rootNext.length) ? rootNext[c] : 0;
+	}
+
+	/**
+	 * Case folded characters, filled in when first needed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final class FoldTable {
+		private static final char[] FOLD = new char[0x10000];
+		static {
+			for (int c = 0; c < FOLD.length; c++){
+				FOLD[c] = (char)c;
+				if (!Character.isSurrogate((char)c)){
+					FOLD[c] = Character.toLowerCase(Character.toUpperCase((char)c));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get a character of a string with its case folded.
+	 * Halves of surrogate pairs are folded as a code point,
+	 * as long as it folds to another supplementary character.
+	 *
+	 * @param s a string.
+	 * @param i index of the character.
+	 * @return the folded character.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static char fold(CharSequence s, int i){
+		char c = s.charAt(i);
+		if (!Character.isSurrogate(c)) return FoldTable.FOLD[c];
+		int codePoint;
+		if (Character.isHighSurrogate(c)){
+			if (i + 1 >= s.length() || !Character.isLowSurrogate(s.charAt(i + 1))) return c;
+			codePoint = Character.toCodePoint(c, s.charAt(i + 1));
+		} else {
+			if (i == 0 || !Character.isHighSurrogate(s.charAt(i - 1))) return c;
+			codePoint = Character.toCodePoint(s.charAt(i - 1), c);
+		}
+		int folded = Character.toLowerCase(Character.toUpperCase(codePoint));
+		if (!Character.isSupplementaryCodePoint(folded)) return c;
+		return Character.isHighSurrogate(c) ? Character.highSurrogate(folded) : Character.lowSurrogate(folded);
+	}
+
+	/**
+	 * @return a copy of the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public String[] getTerms(){
+		return terms.clone();
+	}
+
+	/**
+	 * @return whether case is ignored.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean isIgnoreCase(){
+		return ignoreCase;
+	}
+
+	/**
+	 * Tests to see if the given string contains any of the terms.
+	 *
+	 * @param s String that may contain any of the terms.
+	 * @return true iff one of the terms is a substring of the given string.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean containsAny(CharSequence s){
+		return find(s, 0) != null;
+	}
+
+	/**
+	 * Tests to see if the given string equals any of the terms.
+	 *
+	 * @param s String that may equal any of the terms.
+	 * @return true iff one of the terms is equal to the given string.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean equalsAny(CharSequence s){
+		return prefixState(s, true) != -1;
+	}
+
+	/**
+	 * Tests to see if the given string starts with any of the terms.
+	 *
+	 * @param s String that may start with any of the terms.
+	 * @return true iff the given string starts with one of the terms.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean startsWithAny(CharSequence s){
+		return prefixState(s, false) != -1;
+	}
+
+	/**
+	 * Follow the characters of the string from the root without
+	 * following suffix links, as far as the terms allow.
+	 *
+	 * @param s a string.
+	 * @param whole true to require a term to be the whole string, false for any prefix.
+	 * @return a state at which a term ends that matched, or -1.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private int prefixState(CharSequence s, boolean whole){
+		int length = s.length();
+		if (emptyTerm != -1 && (!whole || length == 0)) return 0;
+		int state = 0;
+		for (int i = 0; i < length; i++){
+			char c = ignoreCase ? fold(s, i) : s.charAt(i);
+			if (state == 0){
+				state = (c < rootNext.length) ? rootNext[c] : 0;
+				if (state == 0) return -1;
+			} else {
+				state = edge(state, c);
+				if (state == -1) return -1;
+			}
+			if (!whole && termAt[state] != -1) return state;
+		}
+		return (termAt[state] != -1) ? state : -1;
+	}
+
+	/**
+	 * Tests to see if the given string ends with any of the terms.
+	 *
+	 * @param s String that may end with any of the terms.
+	 * @return true iff the given string ends with one of the terms.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean endsWithAny(CharSequence s){
+		if (emptyTerm != -1) return true;
+		int state = 0;
+		int length = s.length();
+		for (int i = 0; i < length; i++){
+			state = next(state, ignoreCase ? fold(s, i) : s.charAt(i));
+		}
+		return output[state] != 0;
+	}
+
+	/**
+	 * Find the first occurrence of any of the terms in the string.
+	 * The first occurrence is the one that ends first, and of those
+	 * that end at the same place, the longest.
+	 *
+	 * @param s String in which to search.
+	 * @return the first match, or null if none of the terms occurs.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Match find(CharSequence s){
+		return find(s, 0);
+	}
+
+	/**
+	 * Find the first occurrence of any of the terms in the string
+	 * that starts at or after the given index.
+	 * The first occurrence is the one that ends first, and of those
+	 * that end at the same place, the longest.
+	 *
+	 * @param s String in which to search.
+	 * @param fromIndex index in the string from which to search.
+	 * @return the first match, or null if none of the terms occurs.
+	 * @throws NullPointerException if s is null.
+	 * @throws IndexOutOfBoundsException if fromIndex is negative or greater than the length of the string.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Match find(CharSequence s, int fromIndex){
+		int length = s.length();
+		if (fromIndex < 0 || fromIndex > length) throw new IndexOutOfBoundsException("fromIndex: " + fromIndex);
+		if (emptyTerm != -1) return new Match(fromIndex, fromIndex, emptyTerm, terms[emptyTerm]);
+		int state = 0;
+		for (int i = fromIndex; i < length; i++){
+			state = next(state, ignoreCase ? fold(s, i) : s.charAt(i));
+			int found = output[state];
+			if (found != 0) return match(found, i + 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Find every occurrence of each of the terms in the string,
+	 * including occurrences that overlap.  Matches are ordered by
+	 * where they end, and of those that end at the same place, longest
+	 * first.  An empty term matches at every position.
+	 *
+	 * @param s String in which to search.
+	 * @return the matches, empty if none of the terms occurs.
+	 * @throws NullPointerException if s is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public List<Match> findAll(CharSequence s){
+		List<Match> matches = new ArrayList<Match>();
+		if (emptyTerm != -1) matches.add(new Match(0, 0, emptyTerm, terms[emptyTerm]));
+		int state = 0;
+		int length = s.length();
+		for (int i = 0; i < length; i++){
+			state = next(state, ignoreCase ? fold(s, i) : s.charAt(i));
+			for (int found = output[state]; found != 0; found = output[fail[found]]){
+				matches.add(match(found, i + 1));
+			}
+			if (emptyTerm != -1) matches.add(new Match(i + 1, i + 1, emptyTerm, terms[emptyTerm]));
+		}
+		return matches;
+	}
+
+	/**
+	 * @param state a state at which a term ends.
+	 * @param end index in the string after the match.
+	 * @return the match.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private Match match(int state, int end){
+		int index = termAt[state];
+		String term = terms[index];
+		return new Match(end - term.length(), end, index, term);
+	}
+}
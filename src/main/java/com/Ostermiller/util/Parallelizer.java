@@ -21,6 +21,11 @@
 package com.Ostermiller.util;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.lang.management.ManagementFactory;
+import javax.management.*;
 
 /**
  * Runs multiple jobs in parallel, n threads at a time, and waits
@@ -48,7 +53,45 @@ import java.util.*;
  * }
  * parallelizer.join();
  * System.out.println("done");
- *
+ * </pre>
+ * <p>
+ * Jobs that compute a result may be given as a Callable to
+ * {@link #submit(Callable)}, which returns a Future for the result,
+ * or a collection of them to {@link #invokeAll(Collection)}, which returns
+ * all the results in order.  To apply the same function to each
+ * element of a list or array, {@link #map(Iterable, Function)} and
+ * {@link #forEach(Iterable, Consumer)} split the elements into batches
+ * and run a job for each batch.
+ * <p>
+ * Jobs are run on a pool of threads that is shared by all Parallelizers
+ * rather than on a new thread for each job.  Threads in the pool are
+ * reused from one job to the next and exit after being idle for a second.
+ * An Executor may be supplied instead, in which case its threads run the jobs.
+ * Either way the concurrent thread limit is enforced by the
+ * Parallelizer: jobs beyond the limit wait in its queue and are only
+ * handed to the pool or Executor when another job finishes.
+ * On Java runtimes with virtual threads, {@link #newVirtualThreadParallelizer(int)}
+ * runs each job on a virtual thread of its own instead.
+ * <p>
+ * Jobs may run more jobs in the same Parallelizer, and {@link #join()}
+ * waits for all of them.  When many jobs do that, such as when walking
+ * a tree, a Parallelizer backed by a ForkJoinPool
+ * ({@link #Parallelizer(ForkJoinPool)}) keeps its own lock out of
+ * the way: each pool thread keeps the jobs it runs in a deque of its own
+ * and idle threads steal from the others.
+ * <p>
+ * Statistics about how long jobs wait and run are kept
+ * ({@link #getStatistics()}) and may be published with JMX
+ * ({@link #registerMBean(String)}).  Listeners
+ * ({@link #addListener(ParallelizerListener)}) are told as each job
+ * is queued, starts, and finishes.
+ * <p>
+ * A Parallelizer can limit how long jobs may run
+ * ({@link #setJobTimeout(long, TimeUnit)}), how many jobs may wait in its
+ * queue before {@link #run(Runnable)} blocks ({@link #setMaxQueueDepth(int)}),
+ * and how long to wait for jobs to finish ({@link #join(long, TimeUnit)}).
+ * Jobs that have not started may be cancelled ({@link #cancelQueued()}).
+ * <p>
  * More information about this class is available from <a target="_top" href=
  * "http://ostermiller.org/utils/Parallelizer.html">ostermiller.org</a>.
  *
@@ -99,21 +142,247 @@ public class Parallelizer
 	 * @since ostermillerutils 1.05.00
 	 */
 	public Parallelizer(int concurrentThreadLimit){
+		this(concurrentThreadLimit, null);
+	}
+
+	/**
+	 * Create a new Parallelizer that runs jobs using the given Executor
+	 * with the specified limit on the number of jobs that will be allowed
+	 * to run concurrently.
+	 * <p>
+	 * Jobs are handed to the executor only when fewer than the limit
+	 * are running, so the executor never holds more than the limit.
+	 * The executor is not shut down by the Parallelizer.  If the executor
+	 * rejects a job, the RejectedExecutionException is treated as if
+	 * the job had thrown it.
+	 *
+	 * @param concurrentThreadLimit number of jobs that will be allowed
+	 *     to run simultaneously or INFINITE_THREAD_LIMIT for no limit.
+	 * @param executor runs the jobs (null for the shared pool of threads).
+	 * @throws IllegalArgumentException if concurrentThreadLimit not a whole
+	 *     number or INFINITE_THREAD_LIMIT
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Parallelizer(int concurrentThreadLimit, Executor executor){
 		if (concurrentThreadLimit < INFINITE_THREAD_LIMIT) throw new IllegalArgumentException("Bad concurrent thread limit: " + concurrentThreadLimit);
 		this.concurrentThreadLimit = concurrentThreadLimit;
+		this.executor = (executor == null) ? getSharedPool() : executor;
+		this.forkJoinPool = null;
+	}
+
+	/**
+	 * Create a new Parallelizer that runs jobs with work stealing
+	 * on the given ForkJoinPool.
+	 * <p>
+	 * Jobs are not queued by the Parallelizer.  A job that is run from a
+	 * thread of the pool, typically by another job, is pushed
+	 * onto that thread's own deque, from which idle threads of the pool
+	 * steal.  Other jobs are submitted to the pool.  Jobs and their
+	 * completions are counted without locking, so many small jobs that run
+	 * more jobs don't contend with each other.
+	 * <p>
+	 * The number of jobs that run at once is limited by the
+	 * parallelism of the pool.  The pool is not shut down by the
+	 * Parallelizer.  Jobs should not block waiting for other jobs
+	 * in the same Parallelizer; leave that to {@link #join()}.
+	 *
+	 * @param pool runs the jobs.
+	 * @throws NullPointerException if pool is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public Parallelizer(ForkJoinPool pool){
+		if (pool == null) throw new NullPointerException();
+		this.executor = pool;
+		this.forkJoinPool = pool;
+	}
+
+	/**
+	 * Create a new Parallelizer that runs jobs with work stealing
+	 * on a new ForkJoinPool of its own.  The threads of the pool are
+	 * daemon threads and exit after they have been idle for a while.
+	 *
+	 * @param parallelism number of jobs that will be allowed to run simultaneously.
+	 * @return a new Parallelizer.
+	 * @throws IllegalArgumentException if parallelism is not positive.
+	 *
+	 * @see #Parallelizer(ForkJoinPool)
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static Parallelizer newWorkStealingParallelizer(int parallelism){
+		return new Parallelizer(new ForkJoinPool(parallelism));
+	}
+
+	/**
+	 * Pool on which jobs are forked and stolen, or null
+	 * when jobs are queued by this Parallelizer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final ForkJoinPool forkJoinPool;
+
+	/**
+	 * Number of jobs run on the forkJoinPool that have not yet finished.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final AtomicInteger pending = new AtomicInteger();
+
+	/**
+	 * Create a new Parallelizer that runs each job on a virtual thread
+	 * of its own, if the Java runtime supports virtual threads.
+	 * <p>
+	 * Virtual threads are cheap to create and to block, so this
+	 * suits large numbers of jobs that spend most of their time
+	 * blocked on I/O, with a high concurrent thread limit.
+	 * Jobs beyond the limit wait in the queue as usual and are
+	 * given a thread only once they may run, so waiting jobs cost
+	 * no more memory than they do with the shared pool.
+	 * <p>
+	 * When virtual threads are not supported, a Parallelizer that
+	 * queues jobs for the shared pool of threads is returned instead,
+	 * as if created with {@link #Parallelizer(int)}.
+	 *
+	 * @param concurrentThreadLimit number of jobs that will be allowed
+	 *     to run simultaneously or INFINITE_THREAD_LIMIT for no limit.
+	 * @return a new Parallelizer.
+	 * @throws IllegalArgumentException if concurrentThreadLimit not a whole
+	 *     number or INFINITE_THREAD_LIMIT
+	 *
+	 * @see #isVirtualThreadSupported()
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static Parallelizer newVirtualThreadParallelizer(int concurrentThreadLimit){
+		Executor virtual = getVirtualThreadExecutor();
+		if (virtual == null) return new Parallelizer(concurrentThreadLimit);
+		return new Parallelizer(concurrentThreadLimit, virtual);
+	}
+
+	/**
+	 * Whether the Java runtime supports virtual threads (Java 21 and later).
+	 *
+	 * @return true if {@link #newVirtualThreadParallelizer(int)} runs jobs on virtual threads.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static boolean isVirtualThreadSupported(){
+		return getVirtualThreadExecutor() != null;
+	}
+
+	/**
+	 * Executor that starts a virtual thread for each job,
+	 * or null if virtual threads are not supported.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static Executor virtualThreadExecutor = null;
+
+	/**
+	 * Whether virtualThreadExecutor has been looked up.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static boolean virtualThreadExecutorChecked = false;
+
+	/**
+	 * Get an executor that starts a virtual thread for each job.
+	 * It is looked up by reflection so that this class can still be
+	 * compiled for and run on older versions of Java.
+	 *
+	 * @return the executor, or null if virtual threads are not supported.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static synchronized Executor getVirtualThreadExecutor(){
+		if (!virtualThreadExecutorChecked){
+			virtualThreadExecutorChecked = true;
+			try {
+				virtualThreadExecutor = (Executor)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (Exception x){
+				// Not supported by this version of Java, or
+				// only as a preview feature that isn't enabled.
+				virtualThreadExecutor = null;
+			}
+		}
+		return virtualThreadExecutor;
+	}
+
+	/**
+	 * Runs the jobs that are started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final Executor executor;
+
+	/**
+	 * Pool of threads shared by all Parallelizers that are not
+	 * given an Executor.  Created when first needed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static ThreadPoolExecutor sharedPool = null;
+
+	/**
+	 * Get the pool of threads shared by all Parallelizers,
+	 * creating it if needed.
+	 * <p>
+	 * The pool hands each job to an idle thread or creates a new
+	 * thread; it doesn't queue.  Parallelizers queue their own jobs,
+	 * so the number of threads is bounded by the number of jobs allowed
+	 * to run at once.  Idle threads exit quickly so that they don't
+	 * hold up the exit of the virtual machine for long.
+	 *
+	 * @return the shared pool.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static synchronized Executor getSharedPool(){
+		if (sharedPool == null){
+			sharedPool = new ThreadPoolExecutor(
+				0, Integer.MAX_VALUE,
+				1, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(),
+				new ThreadFactory(){
+					private final AtomicInteger count = new AtomicInteger();
+					public Thread newThread(Runnable r){
+						Thread thread = new Thread(r, "Parallelizer-pool-" + count.getAndIncrement());
+						thread.setDaemon(false);
+						return thread;
+					}
+				}
+			);
+		}
+		return sharedPool;
 	}
 
 	/**
-	 * A Set of threads that are currently running.
+	 * The job that each thread that is currently running a job is running
+	 * (the outermost one when a job runs others on its own thread).
+	 * The map is thread safe so that jobs on a ForkJoinPool need not take a lock.
+	 */
+	private final ConcurrentHashMap<Thread,Job> runningJobs = new ConcurrentHashMap<Thread,Job>();
+
+	/**
+	 * A Set of threads that are currently running jobs.
 	 * This set is also used as a lock to synchronize
 	 * anything that touches running threads.
 	 */
-	private HashSet<Thread> runningThreads = new HashSet<Thread>();
+	private final Set<Thread> runningThreads = runningJobs.keySet();
 
 	/**
 	 * A queue of jobs that have not yet been started.
 	 */
-	private LinkedList<Thread> toRunQueue = new LinkedList<Thread>();
+	private LinkedList<Job> toRunQueue = new LinkedList<Job>();
+
+	/**
+	 * Number of jobs that have been started (handed to the executor
+	 * or given their own thread) and have not yet finished.
+	 * Some of them may not have a running thread yet.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private int startedCount = 0;
 
 	/**
 	 * Run the given job.  The given job is either run
@@ -146,7 +415,7 @@ public class Parallelizer
 	 * instance of the error.
 	 *
 	 * @param job job which is to be run in parallel with other jobs.
-	 * @param threadName name for the thread that will be created to run the job (null for auto generated thread name)
+	 * @param threadName name for the thread while it runs the job (null for the thread's own or an auto generated name)
 	 * @throws Error if any thread that is already running has thrown an Error.
 	 * @throws NullPointerException if job is null.
 	 *
@@ -166,7 +435,7 @@ public class Parallelizer
 	 * may be called again as it will not re-throw the same
 	 * instance of the error.
 	 *
-	 * @param threadGroup group in which this job should be run (null for default group).
+	 * @param threadGroup group in which this job should be run, on a thread of its own (null to run it on the pool or executor).
 	 * @param job job which is to be run in parallel with other jobs.
 	 * @throws Error if any thread that is already running has thrown an Error.
 	 * @throws NullPointerException if job is null.
@@ -187,9 +456,9 @@ public class Parallelizer
 	 * may be called again as it will not re-throw the same
 	 * instance of the error.
 	 *
-	 * @param threadGroup group in which this job should be run (null for default group).
+	 * @param threadGroup group in which this job should be run, on a thread of its own (null to run it on the pool or executor).
 	 * @param job job which is to be run in parallel with other jobs.
-	 * @param threadName name for the thread that will be created to run the job (null for auto generated thread name)
+	 * @param threadName name for the thread while it runs the job (null for the thread's own or an auto generated name)
 	 * @throws Error if any thread that is already running has thrown an Error.
 	 * @throws NullPointerException if job is null.
 	 *
@@ -209,60 +478,46 @@ public class Parallelizer
 	 * may be called again as it will not re-throw the same
 	 * instance of the error.
 	 *
-	 * @param threadGroup group in which this job should be run (null for default group).
+	 * @param threadGroup group in which this job should be run, on a thread of its own (null to run it on the pool or executor).
 	 * @param job job which is to be run in parallel with other jobs.
-	 * @param threadName name for the thread that will be created to run the job (null for auto generated thread name)
-	 * @param stackSize system dependent stack size suggestion for thread creation (0 for default stack size).
+	 * @param threadName name for the thread while it runs the job (null for the thread's own or an auto generated name)
+	 * @param stackSize system dependent stack size suggestion for a thread of its own (0 to run it on the pool or executor).
 	 * @throws Error if any thread that is already running has thrown an Error.
+	 * @see #setMaxQueueDepth(int)
 	 * @throws NullPointerException if job is null.
 	 *
 	 * @since ostermillerutils 1.05.00
 	 */
 	public void run(ThreadGroup threadGroup, final Runnable job, String threadName, long stackSize){
 		throwFirstError();
+		if (job == null) throw new NullPointerException();
+
+		submittedCount.increment();
+		fire(QUEUED, job, null, 0);
 
-		Runnable jobWrapper = new Runnable(){
-			public void run(){
+		if (forkJoinPool != null){
+			// The pool's deques are the queue
+			pending.incrementAndGet();
+			start(new Job(job, threadGroup, threadName, stackSize));
+			return;
+		}
+
+		// Queue this job up, it will be started right away
+		// unless we are already running the max number of jobs
+		synchronized(runningThreads){
+			// Wait for room in the queue, unless called from a job
+			// which might be holding up the jobs that would make room.
+			if (maxQueueDepth > 0 && toRunQueue.size() >= maxQueueDepth && !runningThreads.contains(Thread.currentThread())){
 				try {
-					job.run();
-				} catch (RuntimeException runtimeException){
-					// Put exceptions in the exception queue
-					synchronized(runningThreads){
-						exceptionList.add(runtimeException);
+					while (maxQueueDepth > 0 && toRunQueue.size() >= maxQueueDepth){
+						runningThreads.wait();
 					}
-				} catch (Error error){
-					// Put errors in the error queue
-					synchronized(runningThreads){
-						errorList.add(error);
-					}
-				} finally {
-					synchronized(runningThreads){
-						// when done remove ourselves from the list
-						// of running threads.
-						runningThreads.remove(Thread.currentThread());
-						// Notify the block method.
-						runningThreads.notifyAll();
-					}
-					// If there are jobs queued up to be run, now would
-					// be a good time to run them.
-					startAJobIfNeeded();
+				} catch (InterruptedException x){
+					// Queue the job anyway rather than lose it
+					Thread.currentThread().interrupt();
 				}
 			}
-		};
-
-		// ensure the thread name is not null, and auto generate a name if it is
-		threadName = getNextThreadName(threadName);
-
-		// If we are already running the max number of jobs, queue this job up
-		synchronized(runningThreads){
-			toRunQueue.add(
-				new Thread(
-					threadGroup,
-					jobWrapper,
-					threadName,
-					stackSize
-				)
-			);
+			toRunQueue.add(new Job(job, threadGroup, threadName, stackSize));
 		}
 
 		// Now that the job is in the queue of jobs to run,
@@ -271,158 +526,1318 @@ public class Parallelizer
 	}
 
 	/**
-	 * An number to assign to the next auto generated thread name
+	 * Run the given job and return a Future from which its result
+	 * may be retrieved once it has finished.  The given job is either run
+	 * immediately or if the max number of concurrent jobs are already
+	 * running, it is queued to be run when some job is finished.
+	 * <p>
+	 * Anything the job throws is thrown by {@link #join()} just as if
+	 * it had been run with {@link #run(Runnable)}, whether or not it is
+	 * also retrieved from the Future.  Checked exceptions are wrapped
+	 * in a RuntimeException for join().  A job that is cancelled
+	 * through its Future before it starts is never run.
+	 * <p>
+	 * A job run by this Parallelizer should not wait on the Future
+	 * of another job: if every slot is held by a waiting job, the job
+	 * it waits for never starts.  Use {@link #invokeAll(Collection)},
+	 * which runs queued jobs on the waiting thread, instead.
+	 * <p>
+	 * If this method throws an error, that
+	 * error may be handled and this method
+	 * may be called again as it will not re-throw the same
+	 * instance of the error.
+	 *
+	 * @param job job which is to be run in parallel with other jobs.
+	 * @return a Future for the result of the job.
+	 * @throws Error if any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if job is null.
+	 *
+	 * @since ostermillerutils 1.09.00
 	 */
-	private static int threadNameCount = 0;
+	public <T> Future<T> submit(Callable<T> job){
+		if (job == null) throw new NullPointerException();
+		Task<T> task = new Task<T>(job, true, null);
+		run(task);
+		return task;
+	}
 
 	/**
-	 * Ensure the given thread name is not null.  If not null, return it,
-	 * if it is null, then then generate a name.
+	 * Run all the given jobs and wait for them to finish.
+	 * Jobs are queued and run in the same way as {@link #run(Runnable)},
+	 * along with any other jobs in this Parallelizer, but only these
+	 * jobs are waited for.
+	 * <p>
+	 * Each job stores its result in a slot of its own, so
+	 * jobs don't contend for a lock to hand back their results.
+	 * If any of the jobs fails, the failure of the first of them
+	 * in iteration order is thrown once all have finished: runtime
+	 * exceptions and errors as they are, checked exceptions wrapped in
+	 * a RuntimeException.  Failures are thrown only by this method,
+	 * not also by {@link #join()}.
+	 * <p>
+	 * This method may be called from a job run by this Parallelizer
+	 * even when that job holds the last slot the given jobs would need:
+	 * jobs that are still queued are run on the calling thread
+	 * instead of waiting for a slot, and a thread of a ForkJoinPool
+	 * lets the pool add a thread while it waits.
+	 * <p>
+	 * If this method throws an error, that
+	 * error may be handled and this method
+	 * may be called again as it will not re-throw the same
+	 * instance of the error.
 	 *
-	 * @param threadName existing thread name to check
-	 * @return the given thread name or a generated thread name if the specified name was null.
+	 * @param jobs jobs which are to be run in parallel with other jobs.
+	 * @return the results of the jobs in iteration order.
+	 * @throws InterruptedException if interrupted while waiting, in which case the jobs continue to run.
+	 * @throws RuntimeException if any of the jobs throws an exception.
+	 * @throws CancellationException if any of the jobs was cancelled by {@link #cancelQueued()}.
+	 * @throws Error if any of the jobs throws an Error, or any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if any job is null.
+	 *
+	 * @since ostermillerutils 1.09.00
 	 */
-	private static String getNextThreadName(String threadName){
-		if (threadName != null) return threadName;
-		return "Parallelizer-"+(threadNameCount++);
+	public <T> List<T> invokeAll(Collection<? extends Callable<? extends T>> jobs) throws InterruptedException {
+		CountDownLatch finished = new CountDownLatch(jobs.size());
+		List<Task<T>> tasks = new ArrayList<Task<T>>(jobs.size());
+		for (Callable<? extends T> job: jobs){
+			if (job == null) throw new NullPointerException();
+			tasks.add(new Task<T>(job, false, finished));
+		}
+		for (Task<T> task: tasks){
+			run(task);
+		}
+		await(tasks, finished);
+		List<T> results = new ArrayList<T>(tasks.size());
+		for (Task<T> task: tasks){
+			try {
+				results.add(task.get());
+			} catch (ExecutionException x){
+				throw asUnchecked(x.getCause());
+			}
+		}
+		return results;
 	}
 
 	/**
-	 * A queue of exceptions that running threads have thrown.
+	 * Apply a function to each of the items, running batches of
+	 * items in parallel with other jobs, and return the results in
+	 * the same order as the items.
+	 * <p>
+	 * The items are split into about four batches for each job that may
+	 * run at once, so that there is one job for each batch
+	 * rather than for each item, while batches that finish early
+	 * leave others to keep every thread busy.  Failures are
+	 * thrown as by {@link #invokeAll(Collection)}: the first failure
+	 * in item order is thrown once all batches have finished.  A batch
+	 * stops at its first failure.  Like invokeAll(), this method
+	 * may be called from a job run by this Parallelizer.
+	 *
+	 * @param items items to which to apply the function.
+	 * @param function function to apply to each item.
+	 * @return the results of the function, in item order.
+	 * @throws InterruptedException if interrupted while waiting, in which case the batches continue to run.
+	 * @throws RuntimeException if the function throws an exception.
+	 * @throws Error if the function throws an Error, or any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if items or function is null.
+	 *
+	 * @since ostermillerutils 1.09.00
 	 */
-	private LinkedList<RuntimeException> exceptionList = new LinkedList<RuntimeException>();
+	public <T,R> List<R> map(Iterable<? extends T> items, Function<? super T,? extends R> function) throws InterruptedException {
+		return map(items, function, 0);
+	}
 
 	/**
-	 * Remove the first exception from the exception list and throw it.
+	 * Apply a function to each of the items, running batches of
+	 * items in parallel with other jobs, and return the results in
+	 * the same order as the items.
 	 *
-	 * @throws RuntimeException if a running thread has thrown an exception not yet thrown by this method.
+	 * @param items items to which to apply the function.
+	 * @param function function to apply to each item.
+	 * @param batchSize number of items in each batch, zero to choose automatically.
+	 * @return the results of the function, in item order.
+	 * @throws InterruptedException if interrupted while waiting, in which case the batches continue to run.
+	 * @throws RuntimeException if the function throws an exception.
+	 * @throws Error if the function throws an Error, or any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if items or function is null.
+	 * @throws IllegalArgumentException if batchSize is negative.
+	 *
+	 * @see #map(Iterable, Function)
+	 * @since ostermillerutils 1.09.00
 	 */
-	private void throwFirstException(){
-		synchronized(runningThreads){
-			if (exceptionList.size() > 0){
-				throw exceptionList.removeFirst();
+	public <T,R> List<R> map(Iterable<? extends T> items, final Function<? super T,? extends R> function, int batchSize) throws InterruptedException {
+		if (function == null) throw new NullPointerException();
+		final List<? extends T> list = toList(items);
+		final Object[] results = new Object[list.size()];
+		runBatches(list.size(), batchSize, new Batch(){
+			public void run(int from, int to){
+				for (int i = from; i < to; i++){
+					results[i] = function.apply(list.get(i));
+				}
 			}
-		}
+		});
+		@SuppressWarnings("unchecked") List<R> resultList = (List<R>)Arrays.asList(results);
+		return new ArrayList<R>(resultList);
 	}
 
 	/**
-	 * A queue of exceptions that running threads have thrown.
+	 * Apply a function to each item of an array, running batches of
+	 * items in parallel with other jobs, and return the results in
+	 * the same order as the items.
+	 *
+	 * @param items items to which to apply the function.
+	 * @param function function to apply to each item.
+	 * @return the results of the function, in item order.
+	 * @throws InterruptedException if interrupted while waiting, in which case the batches continue to run.
+	 * @throws RuntimeException if the function throws an exception.
+	 * @throws Error if the function throws an Error, or any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if items or function is null.
+	 *
+	 * @see #map(Iterable, Function)
+	 * @since ostermillerutils 1.09.00
 	 */
-	private LinkedList<Error> errorList = new LinkedList<Error>();
+	public <T,R> List<R> map(T[] items, Function<? super T,? extends R> function) throws InterruptedException {
+		return map(Arrays.asList(items), function, 0);
+	}
 
 	/**
-	 * Remove the first error from the error list and throw it.
+	 * Perform an action on each of the items, running batches of
+	 * items in parallel with other jobs, and wait for it to be done.
+	 * Items are batched and failures are thrown as by
+	 * {@link #map(Iterable, Function)}.
 	 *
-	 * @throws Error if a running thread has thrown an error not yet thrown by this method.
+	 * @param items items on which to perform the action.
+	 * @param action action to perform on each item.
+	 * @throws InterruptedException if interrupted while waiting, in which case the batches continue to run.
+	 * @throws RuntimeException if the action throws an exception.
+	 * @throws Error if the action throws an Error, or any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if items or action is null.
+	 *
+	 * @since ostermillerutils 1.09.00
 	 */
-	private void throwFirstError() throws Error {
-		synchronized(runningThreads){
-			if (errorList.size() > 0){
-				throw errorList.removeFirst();
-			}
-		}
+	public <T> void forEach(Iterable<? extends T> items, Consumer<? super T> action) throws InterruptedException {
+		forEach(items, action, 0);
 	}
 
 	/**
-	 * Remove a job from the toRunQueue, create a thread for it,
-	 * start the thread, and put the job in the set of running jobs.
-	 * But do all this only if there are jobs queued up to be run
-	 * and we are not already running the max number of concurrent
-	 * jobs at once.
+	 * Perform an action on each of the items, running batches of
+	 * items in parallel with other jobs, and wait for it to be done.
+	 *
+	 * @param items items on which to perform the action.
+	 * @param action action to perform on each item.
+	 * @param batchSize number of items in each batch, zero to choose automatically.
+	 * @throws InterruptedException if interrupted while waiting, in which case the batches continue to run.
+	 * @throws RuntimeException if the action throws an exception.
+	 * @throws Error if the action throws an Error, or any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if items or action is null.
+	 * @throws IllegalArgumentException if batchSize is negative.
+	 *
+	 * @see #forEach(Iterable, Consumer)
+	 * @since ostermillerutils 1.09.00
 	 */
-	private void startAJobIfNeeded(){
-		synchronized(runningThreads){
-			// If we are already running the max number of jobs, just return
-			if (concurrentThreadLimit != INFINITE_THREAD_LIMIT){
-				if (runningThreads.size() >= concurrentThreadLimit) return;
+	public <T> void forEach(Iterable<? extends T> items, final Consumer<? super T> action, int batchSize) throws InterruptedException {
+		if (action == null) throw new NullPointerException();
+		final List<? extends T> list = toList(items);
+		runBatches(list.size(), batchSize, new Batch(){
+			public void run(int from, int to){
+				for (int i = from; i < to; i++){
+					action.accept(list.get(i));
+				}
 			}
+		});
+	}
 
-			// If there are no more job to run, return
-			if (toRunQueue.size() == 0) return;
-
-			// Get a job out of the queue
-			Thread thread = toRunQueue.removeFirst();
+	/**
+	 * Perform an action on each item of an array, running batches of
+	 * items in parallel with other jobs, and wait for it to be done.
+	 *
+	 * @param items items on which to perform the action.
+	 * @param action action to perform on each item.
+	 * @throws InterruptedException if interrupted while waiting, in which case the batches continue to run.
+	 * @throws RuntimeException if the action throws an exception.
+	 * @throws Error if the action throws an Error, or any thread that is already running has thrown an Error.
+	 * @throws NullPointerException if items or action is null.
+	 *
+	 * @see #forEach(Iterable, Consumer)
+	 * @since ostermillerutils 1.09.00
+	 */
+	public <T> void forEach(T[] items, Consumer<? super T> action) throws InterruptedException {
+		forEach(Arrays.asList(items), action, 0);
+	}
 
-			// Put the thread in the list of running threads
-			runningThreads.add(thread);
-			thread.start();
+	/**
+	 * @param items some items.
+	 * @return the items as a list that can be read by index from many threads.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static <T> List<? extends T> toList(Iterable<? extends T> items){
+		if (items instanceof List && items instanceof RandomAccess) return (List<? extends T>)items;
+		List<T> list = new ArrayList<T>();
+		for (T item: items){
+			list.add(item);
 		}
+		return list;
 	}
 
 	/**
-	 * Return true iff all jobs that have been requested to run
-	 * in this Parallelizer have completed.
-	 * <p>
-	 * If this method throws an error, that
-	 * error may be handled and this method
-	 * may be called again as it will not re-throw the same
-	 * instance of the error.
+	 * Work on a range of items.
 	 *
-	 * @return Whether all jobs are done or not.
-	 * @throws Error if any of the running threads has thrown an Error.
+	 * @since ostermillerutils 1.09.00
+	 */
+	private interface Batch {
+		/**
+		 * @param from index of the first item.
+		 * @param to index after the last item.
+		 */
+		public void run(int from, int to);
+	}
+
+	/**
+	 * Split a number of items into batches, run a job for each
+	 * batch, and wait for them all.
 	 *
-	 * @since ostermillerutils 1.05.00
+	 * @param count number of items.
+	 * @param batchSize number of items in each batch, zero to choose automatically.
+	 * @param batch work to do on each batch.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws IllegalArgumentException if batchSize is negative.
+	 *
+	 * @since ostermillerutils 1.09.00
 	 */
-	public boolean done(){
-		throwFirstError();
-		synchronized(runningThreads){
-			return (toRunQueue.size() + runningThreads.size()) == 0;
+	private void runBatches(int count, int batchSize, final Batch batch) throws InterruptedException {
+		if (batchSize < 0) throw new IllegalArgumentException("Bad batch size: " + batchSize);
+		if (batchSize == 0){
+			int threads = (forkJoinPool != null) ? forkJoinPool.getParallelism() : concurrentThreadLimit;
+			if (threads == INFINITE_THREAD_LIMIT) threads = Runtime.getRuntime().availableProcessors();
+			long batches = 4L * threads;
+			batchSize = (int)Math.max(1, (count + batches - 1) / batches);
+		}
+		List<Callable<Object>> jobs = new ArrayList<Callable<Object>>();
+		for (int start = 0; start < count; start += batchSize){
+			final int from = start;
+			final int to = (int)Math.min(count, (long)start + batchSize);
+			jobs.add(new Callable<Object>(){
+				public Object call(){
+					batch.run(from, to);
+					return null;
+				}
+			});
 		}
+		invokeAll(jobs);
 	}
 
 	/**
-	 * All currently running threads will be interrupted.
-	 * The threads interrupted threads may die, causing
-	 * jobs that were queued but not yet started, to start.
+	 * Wait for the tasks of invokeAll() to finish.
 	 * <p>
-	 * If this method throws an error, that
-	 * error may be handled and this method
-	 * may be called again as it will not re-throw the same
-	 * instance of the error.
+	 * When called from one of this Parallelizer's jobs, the caller
+	 * holds a slot that the tasks may need.  In that case
+	 * tasks that are still queued are taken from the queue and run on
+	 * this thread, and a ForkJoinPool thread blocks through the pool
+	 * so that the pool can add a thread to run the tasks.
 	 *
-	 * @throws Error if any of the running threads has thrown an Error.
+	 * @param tasks the tasks, already given to run().
+	 * @param finished counted down as each task is done.
+	 * @throws InterruptedException if interrupted while waiting.
 	 *
-	 * @since ostermillerutils 1.05.00
+	 * @since ostermillerutils 1.09.00
 	 */
-	public void interrupt(){
-		throwFirstError();
-		synchronized(runningThreads){
-			for (Thread thread: runningThreads) {
-				(thread).interrupt();
-				throwFirstError();
+	private void await(List<? extends Task<?>> tasks, final CountDownLatch finished) throws InterruptedException {
+		if (runningThreads.contains(Thread.currentThread())){
+			if (forkJoinPool == null){
+				Set<Runnable> waitingFor = Collections.newSetFromMap(new IdentityHashMap<Runnable,Boolean>());
+				waitingFor.addAll(tasks);
+				Job job;
+				while ((job = unqueue(waitingFor)) != null){
+					job.run();
+				}
+			} else if (ForkJoinTask.getPool() == forkJoinPool){
+				ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker(){
+					public boolean block() throws InterruptedException {
+						finished.await();
+						return true;
+					}
+					public boolean isReleasable(){
+						return finished.getCount() == 0;
+					}
+				});
+				return;
 			}
 		}
+		finished.await();
 	}
 
 	/**
-	 * Dump the stack of each running thread.
-	 * <p>
-	 * If this method throws an error, that
-	 * error may be handled and this method
-	 * may be called again as it will not re-throw the same
-	 * instance of the error.
+	 * Take the first of the given jobs out of the queue
+	 * and count it as started, so that it can be run on this thread.
 	 *
-	 * @throws Error if any of the running threads has thrown an Error.
+	 * @param jobs jobs as given to run().
+	 * @return the job, or null if none of them is queued.
 	 *
-	 * @since ostermillerutils 1.05.00
+	 * @since ostermillerutils 1.09.00
 	 */
-	public void dumpStack(){
-		throwFirstError();
+	private Job unqueue(Set<Runnable> jobs){
 		synchronized(runningThreads){
-			for (Thread thread: runningThreads) {
-				for (StackTraceElement stackTraceElement: thread.getStackTrace()){
-					System.out.println(stackTraceElement.toString());
+			for (Iterator<Job> i = toRunQueue.iterator(); i.hasNext();){
+				Job job = i.next();
+				if (jobs.contains(job.job)){
+					i.remove();
+					startedCount++;
+					// Wake up run() if it is waiting for room in the queue
+					if (maxQueueDepth > 0) runningThreads.notifyAll();
+					return job;
 				}
-				throwFirstError();
 			}
 		}
+		return null;
 	}
 
 	/**
-	 * Gets a list of all running threads.  There may be jobs that
-	 * are queued and do not yet have threads.  These job are not
-	 * returned.
-	 * <p>
+	 * @param t something thrown by a job.
+	 * @return t if it is a runtime exception, otherwise a runtime exception caused by t.
+	 * @throws Error if t is an Error.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static RuntimeException asUnchecked(Throwable t){
+		if (t instanceof Error) throw (Error)t;
+		if (t instanceof RuntimeException) return (RuntimeException)t;
+		return new RuntimeException(t);
+	}
+
+	/**
+	 * A job that computes a result for a Future.
+	 * The result, or what the job threw, is kept in the Future itself.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final class Task<T> extends FutureTask<T> {
+
+		/**
+		 * Whether what the job throws is thrown by join().
+		 */
+		private final boolean report;
+
+		/**
+		 * Counted down when the job is done, or null.
+		 */
+		private final CountDownLatch latch;
+
+		/**
+		 * What the job threw, or null.
+		 */
+		private volatile Throwable failure = null;
+
+		@SuppressWarnings("unchecked")
+		private Task(Callable<? extends T> job, boolean report, CountDownLatch latch){
+			// A callable of a subtype of T is a callable of T
+			super((Callable<T>)job);
+			this.report = report;
+			this.latch = latch;
+		}
+
+		@Override protected void setException(Throwable t){
+			if (!isCancelled()) failure = t;
+			super.setException(t);
+		}
+
+		@Override protected void done(){
+			if (latch != null) latch.countDown();
+		}
+	}
+
+	/**
+	 * A job and how it should be run.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final class Job implements Runnable {
+
+		/**
+		 * The job supplied by the caller.
+		 */
+		private final Runnable job;
+
+		/**
+		 * Group for a thread of its own, or null.
+		 */
+		private final ThreadGroup threadGroup;
+
+		/**
+		 * Name for the thread while it runs the job, or null.
+		 */
+		private final String threadName;
+
+		/**
+		 * Stack size for a thread of its own, or zero.
+		 */
+		private final long stackSize;
+
+		/**
+		 * When the job was queued, from System.nanoTime().
+		 */
+		private final long queuedAt = System.nanoTime();
+
+		/**
+		 * The value of cancelGeneration when the job was queued.
+		 * If it has changed by the time the job starts, the job
+		 * has been cancelled.
+		 */
+		private final int generation = cancelGeneration;
+
+		/**
+		 * Thread that is running the job while it may be interrupted,
+		 * by interrupt() or for running too long, otherwise null.
+		 * Guarded by this job so that nothing interrupts the thread
+		 * once the job has let it go on to run something else.
+		 */
+		private Thread runner = null;
+
+		private Job(Runnable job, ThreadGroup threadGroup, String threadName, long stackSize){
+			this.job = job;
+			this.threadGroup = threadGroup;
+			this.threadName = threadName;
+			this.stackSize = stackSize;
+		}
+
+		/**
+		 * Hand the job to the executor, or start a thread for it when
+		 * a thread group or stack size was requested (pool threads
+		 * can't be given either).
+		 */
+		private void start(){
+			if (threadGroup != null || stackSize != 0){
+				new Thread(threadGroup, this, getNextThreadName(threadName), stackSize).start();
+			} else if (forkJoinPool != null && ForkJoinTask.getPool() == forkJoinPool){
+				// Run from one of the pool's threads, push it
+				// onto that thread's own deque
+				ForkJoinTask.adapt(this).fork();
+			} else {
+				executor.execute(this);
+			}
+		}
+
+		/**
+		 * Count the job as cancelled and cancel its Future if it has one.
+		 */
+		private void cancelled(){
+			cancelledCount.increment();
+			if (job instanceof Task) ((Task<?>)job).cancel(false);
+		}
+
+		/**
+		 * Interrupt the job if it is still running; called when it times out.
+		 */
+		private synchronized void timedOut(){
+			if (runner != null){
+				timedOutCount.increment();
+				runner.interrupt();
+			}
+		}
+
+		/**
+		 * Interrupt the job if it is still running.
+		 */
+		private synchronized void interrupt(){
+			if (runner != null) runner.interrupt();
+		}
+
+		public void run(){
+			if (generation != cancelGeneration){
+				// Cancelled after it was handed to the executor
+				cancelled();
+				finished();
+				if (forkJoinPool == null) startAJobIfNeeded();
+				return;
+			}
+			Thread thread = Thread.currentThread();
+			String poolThreadName = null;
+			if (threadName != null && !threadName.equals(thread.getName())){
+				poolThreadName = thread.getName();
+				thread.setName(threadName);
+			}
+			synchronized(this){
+				runner = thread;
+			}
+			// False when run by a job that is waiting for it in invokeAll()
+			boolean outermost = runningJobs.putIfAbsent(thread, this) == null;
+			long startTime = System.nanoTime();
+			jobStarted(job, startTime - queuedAt);
+			ScheduledFuture<?> timeout = null;
+			long timeoutNanos = jobTimeoutNanos;
+			if (timeoutNanos > 0){
+				timeout = getTimer().schedule(new Runnable(){
+					public void run(){
+						timedOut();
+					}
+				}, timeoutNanos, TimeUnit.NANOSECONDS);
+			}
+			Throwable failure = null;
+			try {
+				job.run();
+			} catch (RuntimeException runtimeException){
+				failure = runtimeException;
+			} catch (Error error){
+				failure = error;
+			} finally {
+				if (timeout != null) timeout.cancel(false);
+				synchronized(this){
+					runner = null;
+				}
+				boolean report = true;
+				if (job instanceof Task){
+					// The Future has already caught anything the job threw
+					Task<?> task = (Task<?>)job;
+					if (failure == null) failure = task.failure;
+					report = task.report;
+				}
+				jobEnded(job, failure, System.nanoTime() - startTime, report);
+				if (outermost){
+					// when done remove ourselves from the list
+					// of running threads.
+					runningJobs.remove(thread);
+					// A pool thread goes on to run other jobs; don't let
+					// an interrupt meant for this job carry over to them.
+					// Nothing interrupts the thread for this job now that
+					// the runner has been cleared.
+					Thread.interrupted();
+				}
+				if (poolThreadName != null) thread.setName(poolThreadName);
+				finished();
+				// If there are jobs queued up to be run, now would
+				// be a good time to run them.
+				if (forkJoinPool == null) startAJobIfNeeded();
+			}
+		}
+	}
+
+	/**
+	 * An number to assign to the next auto generated thread name
+	 */
+	private static int threadNameCount = 0;
+
+	/**
+	 * Ensure the given thread name is not null.  If not null, return it,
+	 * if it is null, then then generate a name.
+	 *
+	 * @param threadName existing thread name to check
+	 * @return the given thread name or a generated thread name if the specified name was null.
+	 */
+	private static String getNextThreadName(String threadName){
+		if (threadName != null) return threadName;
+		return "Parallelizer-"+(threadNameCount++);
+	}
+
+	/**
+	 * A queue of exceptions that running threads have thrown.
+	 */
+	private LinkedList<RuntimeException> exceptionList = new LinkedList<RuntimeException>();
+
+	/**
+	 * Remove the first exception from the exception list and throw it.
+	 *
+	 * @throws RuntimeException if a running thread has thrown an exception not yet thrown by this method.
+	 */
+	private void throwFirstException(){
+		synchronized(runningThreads){
+			if (exceptionList.size() > 0){
+				throw exceptionList.removeFirst();
+			}
+		}
+	}
+
+	/**
+	 * A queue of exceptions that running threads have thrown.
+	 */
+	private LinkedList<Error> errorList = new LinkedList<Error>();
+
+	/**
+	 * Remove the first error from the error list and throw it.
+	 *
+	 * @throws Error if a running thread has thrown an error not yet thrown by this method.
+	 */
+	private void throwFirstError() throws Error {
+		synchronized(runningThreads){
+			if (errorList.size() > 0){
+				throw errorList.removeFirst();
+			}
+		}
+	}
+
+	/**
+	 * Remove a job from the toRunQueue and start it.
+	 * But do all this only if there are jobs queued up to be run
+	 * and we are not already running the max number of concurrent
+	 * jobs at once.
+	 */
+	private void startAJobIfNeeded(){
+		Job job;
+		synchronized(runningThreads){
+			// If we are already running the max number of jobs, just return
+			if (concurrentThreadLimit != INFINITE_THREAD_LIMIT){
+				if (startedCount >= concurrentThreadLimit) return;
+			}
+
+			// If there are no more job to run, return
+			if (toRunQueue.size() == 0) return;
+
+			// Get a job out of the queue
+			job = toRunQueue.removeFirst();
+			startedCount++;
+			// Wake up run() if it is waiting for room in the queue
+			if (maxQueueDepth > 0) runningThreads.notifyAll();
+		}
+		start(job);
+	}
+
+	/**
+	 * Start a job that has been counted as started.
+	 * Called without holding the lock, an executor
+	 * may run the job on this thread.
+	 *
+	 * @param job the job to start.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void start(Job job){
+		try {
+			job.start();
+		} catch (RejectedExecutionException rejected){
+			boolean report = true;
+			if (job.job instanceof Task){
+				// Complete the Future so that nothing waits for it forever
+				Task<?> task = (Task<?>)job.job;
+				task.setException(rejected);
+				report = task.report;
+			}
+			failedCount.increment();
+			if (report) recordFailure(rejected);
+			fire(FAILURE, job.job, rejected, 0);
+			finished();
+		}
+	}
+
+	/**
+	 * Count a started job as finished and notify the join method
+	 * if it may be waiting for it.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void finished(){
+		if (forkJoinPool == null){
+			synchronized(runningThreads){
+				startedCount--;
+				runningThreads.notifyAll();
+			}
+		} else if (pending.decrementAndGet() == 0){
+			// Only the last job to finish needs the lock
+			synchronized(runningThreads){
+				runningThreads.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Number of jobs that have not finished, whether queued or started.
+	 * Called while holding the lock.
+	 *
+	 * @return the number of jobs.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private int unfinishedCount(){
+		if (forkJoinPool != null) return pending.get();
+		return toRunQueue.size() + startedCount;
+	}
+
+	/**
+	 * Put something thrown by a job or a listener in the
+	 * queue of exceptions or errors to be thrown by join().
+	 *
+	 * @param t what was thrown.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void recordFailure(Throwable t){
+		synchronized(runningThreads){
+			if (t instanceof Error){
+				errorList.add((Error)t);
+			} else {
+				exceptionList.add((t instanceof RuntimeException) ? (RuntimeException)t : new RuntimeException(t));
+			}
+		}
+	}
+
+	// Counters are LongAdders so that jobs finishing on many
+	// processors at once don't contend for them.
+
+	/**
+	 * Number of jobs given to this Parallelizer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final LongAdder submittedCount = new LongAdder();
+
+	/**
+	 * Number of jobs that have started running.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final LongAdder startedTotal = new LongAdder();
+
+	/**
+	 * Number of jobs that finished successfully.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final LongAdder completedCount = new LongAdder();
+
+	/**
+	 * Number of jobs that failed or were rejected.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final LongAdder failedCount = new LongAdder();
+
+	/**
+	 * Number of jobs that were cancelled before they started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final LongAdder cancelledCount = new LongAdder();
+
+	/**
+	 * Number of jobs that were interrupted for running too long.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final LongAdder timedOutCount = new LongAdder();
+
+	/**
+	 * Number of jobs running right now.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final AtomicInteger runningCount = new AtomicInteger();
+
+	/**
+	 * Most jobs that have been running at once.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final AtomicInteger peakRunningCount = new AtomicInteger();
+
+	/**
+	 * Nanoseconds that started jobs spent waiting to start.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final LongAdder totalQueueWaitNanos = new LongAdder();
+
+	/**
+	 * Longest nanoseconds that a job spent waiting to start.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+	/**
+	 * Nanoseconds that finished jobs spent running.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final LongAdder totalRunNanos = new LongAdder();
+
+	/**
+	 * Longest nanoseconds that a job spent running.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final AtomicLong maxRunNanos = new AtomicLong();
+
+	/**
+	 * Raise a maximum to the given value if it is larger.
+	 *
+	 * @param max the maximum.
+	 * @param value the new value.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static void raise(AtomicLong max, long value){
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value));
+	}
+
+	/**
+	 * Update statistics and tell listeners that a job is starting.
+	 *
+	 * @param job the job.
+	 * @param queueWaitNanos how long the job waited to start.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void jobStarted(Runnable job, long queueWaitNanos){
+		startedTotal.increment();
+		totalQueueWaitNanos.add(queueWaitNanos);
+		raise(maxQueueWaitNanos, queueWaitNanos);
+		int running = runningCount.incrementAndGet();
+		int peak;
+		while (running > (peak = peakRunningCount.get()) && !peakRunningCount.compareAndSet(peak, running));
+		fire(START, job, null, queueWaitNanos);
+	}
+
+	/**
+	 * Update statistics, record any failure for join(),
+	 * and tell listeners that a job has ended.
+	 *
+	 * @param job the job.
+	 * @param failure what the job threw or null if it was successful.
+	 * @param runNanos how long the job ran.
+	 * @param report whether a failure should be thrown by join().
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void jobEnded(Runnable job, Throwable failure, long runNanos, boolean report){
+		runningCount.decrementAndGet();
+		totalRunNanos.add(runNanos);
+		raise(maxRunNanos, runNanos);
+		if (failure == null){
+			completedCount.increment();
+			fire(FINISH, job, null, runNanos);
+		} else {
+			failedCount.increment();
+			if (report) recordFailure(failure);
+			fire(FAILURE, job, failure, runNanos);
+		}
+	}
+
+	/**
+	 * Get statistics about the jobs that have been run by
+	 * this Parallelizer so far.  Jobs are not held up while the
+	 * statistics are taken.
+	 *
+	 * @return the statistics.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public ParallelizerStatistics getStatistics(){
+		int running = runningCount.get();
+		int unfinished;
+		synchronized(runningThreads){
+			unfinished = unfinishedCount();
+		}
+		return new ParallelizerStatistics(
+			(forkJoinPool != null) ? forkJoinPool.getParallelism() : concurrentThreadLimit,
+			submittedCount.sum(),
+			Math.max(0, unfinished - running),
+			running,
+			peakRunningCount.get(),
+			startedTotal.sum(),
+			completedCount.sum(),
+			failedCount.sum(),
+			cancelledCount.sum(),
+			timedOutCount.sum(),
+			totalQueueWaitNanos.sum(),
+			maxQueueWaitNanos.get(),
+			totalRunNanos.sum(),
+			maxRunNanos.get()
+		);
+	}
+
+	/**
+	 * Listeners to be told about each job.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final List<ParallelizerListener> listeners = new CopyOnWriteArrayList<ParallelizerListener>();
+
+	/**
+	 * Add a listener that will be told as each job that is run from now on
+	 * is queued, starts, and finishes.
+	 *
+	 * @param listener the listener.
+	 * @throws NullPointerException if listener is null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void addListener(ParallelizerListener listener){
+		if (listener == null) throw new NullPointerException();
+		listeners.add(listener);
+	}
+
+	/**
+	 * Remove a listener.
+	 *
+	 * @param listener the listener.
+	 * @return whether the listener had been added.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean removeListener(ParallelizerListener listener){
+		return listeners.remove(listener);
+	}
+
+	private static final int QUEUED = 0;
+	private static final int START = 1;
+	private static final int FINISH = 2;
+	private static final int FAILURE = 3;
+
+	/**
+	 * Tell each listener about an event.  Anything
+	 * a listener throws is recorded for join().
+	 *
+	 * @param event QUEUED, START, FINISH, or FAILURE.
+	 * @param job the job.
+	 * @param failure what the job threw for FAILURE.
+	 * @param nanos queue wait for START, run time for FINISH and FAILURE.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private void fire(int event, Runnable job, Throwable failure, long nanos){
+		if (listeners.isEmpty()) return;
+		for (ParallelizerListener listener: listeners){
+			try {
+				switch (event){
+					case QUEUED: listener.onQueued(job); break;
+					case START: listener.onStart(job, nanos); break;
+					case FINISH: listener.onFinish(job, nanos); break;
+					default: listener.onFailure(job, failure, nanos); break;
+				}
+			} catch (RuntimeException x){
+				recordFailure(x);
+			} catch (Error x){
+				recordFailure(x);
+			}
+		}
+	}
+
+	/**
+	 * Name under which this Parallelizer is registered with the
+	 * platform MBean server, or null.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private ObjectName mBeanName = null;
+
+	/**
+	 * Publish the statistics of this Parallelizer with JMX by registering
+	 * a {@link ParallelizerMXBean} with the platform MBean server as
+	 * <code>com.Ostermiller.util:type=Parallelizer,name=<i>name</i></code>.
+	 * <p>
+	 * The MBean server keeps a reference to this Parallelizer until
+	 * {@link #unregisterMBean()} is called.
+	 *
+	 * @param name name that identifies this Parallelizer.
+	 * @return the name of the MBean.
+	 * @throws JMException if the MBean could not be registered, for example because the name is taken.
+	 * @throws IllegalStateException if this Parallelizer is already registered.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public synchronized ObjectName registerMBean(String name) throws JMException {
+		if (mBeanName != null) throw new IllegalStateException("Already registered as " + mBeanName);
+		ObjectName objectName = new ObjectName("com.Ostermiller.util:type=Parallelizer,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), objectName);
+		mBeanName = objectName;
+		return objectName;
+	}
+
+	/**
+	 * Remove the MBean registered by {@link #registerMBean(String)}, if any.
+	 *
+	 * @throws JMException if the MBean could not be unregistered.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public synchronized void unregisterMBean() throws JMException {
+		if (mBeanName == null) return;
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
+		mBeanName = null;
+	}
+
+	/**
+	 * Publishes the current statistics through JMX.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private final class MXBean implements ParallelizerMXBean {
+		public int getConcurrentThreadLimit(){
+			return getStatistics().getConcurrentThreadLimit();
+		}
+		public long getSubmittedCount(){
+			return submittedCount.sum();
+		}
+		public int getQueuedCount(){
+			return getStatistics().getQueuedCount();
+		}
+		public int getRunningCount(){
+			return runningCount.get();
+		}
+		public int getPeakRunningCount(){
+			return peakRunningCount.get();
+		}
+		public long getCompletedCount(){
+			return completedCount.sum();
+		}
+		public long getFailedCount(){
+			return failedCount.sum();
+		}
+		public long getCancelledCount(){
+			return cancelledCount.sum();
+		}
+		public long getTimedOutCount(){
+			return timedOutCount.sum();
+		}
+		public double getAverageQueueWaitNanos(){
+			return getStatistics().getAverageQueueWaitNanos();
+		}
+		public long getMaxQueueWaitNanos(){
+			return maxQueueWaitNanos.get();
+		}
+		public double getAverageRunNanos(){
+			return getStatistics().getAverageRunNanos();
+		}
+		public long getMaxRunNanos(){
+			return maxRunNanos.get();
+		}
+	}
+
+	/**
+	 * Maximum number of jobs that may wait in the queue
+	 * before run() blocks, zero for no maximum.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private volatile int maxQueueDepth = 0;
+
+	/**
+	 * Set the maximum number of jobs that may wait in the queue to be
+	 * started.  When the queue is full, {@link #run(Runnable)} blocks until
+	 * a job is started, so that jobs can't be queued faster than they
+	 * are run.  Jobs that run other jobs are never blocked because
+	 * that could prevent the queue from ever emptying.
+	 * <p>
+	 * If a thread is interrupted while waiting in run(), the job is queued
+	 * anyway and the thread's interrupt status is set.
+	 * The maximum has no effect on a work stealing Parallelizer,
+	 * which doesn't queue jobs itself.
+	 *
+	 * @param maxQueueDepth maximum number of waiting jobs, zero for no maximum.
+	 * @throws IllegalArgumentException if maxQueueDepth is negative.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setMaxQueueDepth(int maxQueueDepth){
+		if (maxQueueDepth < 0) throw new IllegalArgumentException("Bad max queue depth: " + maxQueueDepth);
+		synchronized(runningThreads){
+			this.maxQueueDepth = maxQueueDepth;
+			runningThreads.notifyAll();
+		}
+	}
+
+	/**
+	 * Nanoseconds after which a running job is interrupted, zero for never.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private volatile long jobTimeoutNanos = 0;
+
+	/**
+	 * Set how long each job may run before the thread running it is
+	 * interrupted.  The time is counted from when the job starts rather
+	 * than from when it is queued, and applies to jobs that start from
+	 * now on.  A job that doesn't respond to interruption keeps running,
+	 * as Java threads can't be stopped safely.
+	 *
+	 * @param timeout how long each job may run, zero for no limit.
+	 * @param unit the unit of the timeout.
+	 * @throws IllegalArgumentException if timeout is negative.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void setJobTimeout(long timeout, TimeUnit unit){
+		if (timeout < 0) throw new IllegalArgumentException("Bad timeout: " + timeout);
+		jobTimeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Timer that interrupts jobs that run too long, shared by
+	 * all Parallelizers.  Created when first needed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static ScheduledThreadPoolExecutor timer = null;
+
+	/**
+	 * Get the timer that interrupts jobs that run too long,
+	 * creating it if needed.  Its thread is a daemon thread so
+	 * that it doesn't hold up the exit of the virtual machine.
+	 *
+	 * @return the timer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static synchronized ScheduledExecutorService getTimer(){
+		if (timer == null){
+			timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory(){
+				public Thread newThread(Runnable r){
+					Thread thread = new Thread(r, "Parallelizer-timer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			// Most jobs finish in time; don't keep their timeouts around
+			timer.setRemoveOnCancelPolicy(true);
+		}
+		return timer;
+	}
+
+	/**
+	 * Changed to cancel every job that has been queued and has not
+	 * yet started.  Guarded by the lock.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private volatile int cancelGeneration = 0;
+
+	/**
+	 * Cancel all jobs that have been queued and have not yet started.
+	 * Running jobs are not affected, and jobs queued from now on run
+	 * as usual.  Cancelled jobs are never run, and the Future of a
+	 * cancelled job given to {@link #submit(Callable)} is cancelled.
+	 * <p>
+	 * Jobs waiting in the queue of this Parallelizer are removed right
+	 * away.  Jobs that have already been handed to the executor (or the
+	 * ForkJoinPool) are skipped when they come to start.
+	 *
+	 * @return the number of jobs removed from the queue.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int cancelQueued(){
+		List<Job> cancelled;
+		synchronized(runningThreads){
+			cancelGeneration++;
+			cancelled = new ArrayList<Job>(toRunQueue);
+			toRunQueue.clear();
+			runningThreads.notifyAll();
+		}
+		for (Job job: cancelled){
+			job.cancelled();
+		}
+		return cancelled.size();
+	}
+
+	/**
+	 * Block until all the jobs in this Parallelizer have run, or until
+	 * the timeout elapses.  This includes jobs that are run by other jobs
+	 * while this method waits.
+	 * <p>
+	 * If this method throws an exception or an error, that
+	 * exception or error may be handled and this method
+	 * may be called again as it will not re-throw the same
+	 * instance of the exception or error.
+	 *
+	 * @param timeout the most time to wait.
+	 * @param unit the unit of the timeout.
+	 * @return true if all jobs have run, false if the timeout elapsed first.
+	 * @throws InterruptedException if interrupted while waiting.
+	 * @throws RuntimeException any running thread throws or has thrown a runtime exception.
+	 * @throws Error if any of the running threads throws or has thrown an Error.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public boolean join(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized(runningThreads){
+			throwFirstError();
+			throwFirstException();
+			while (unfinishedCount() > 0){
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) return false;
+				TimeUnit.NANOSECONDS.timedWait(runningThreads, remaining);
+				throwFirstError();
+				throwFirstException();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return true iff all jobs that have been requested to run
+	 * in this Parallelizer have completed.
+	 * <p>
+	 * If this method throws an error, that
+	 * error may be handled and this method
+	 * may be called again as it will not re-throw the same
+	 * instance of the error.
+	 *
+	 * @return Whether all jobs are done or not.
+	 * @throws Error if any of the running threads has thrown an Error.
+	 *
+	 * @since ostermillerutils 1.05.00
+	 */
+	public boolean done(){
+		throwFirstError();
+		synchronized(runningThreads){
+			return unfinishedCount() == 0;
+		}
+	}
+
+	/**
+	 * All currently running threads will be interrupted.
+	 * The threads interrupted threads may die, causing
+	 * jobs that were queued but not yet started, to start.
+	 * <p>
+	 * If this method throws an error, that
+	 * error may be handled and this method
+	 * may be called again as it will not re-throw the same
+	 * instance of the error.
+	 *
+	 * @throws Error if any of the running threads has thrown an Error.
+	 *
+	 * @since ostermillerutils 1.05.00
+	 */
+	public void interrupt(){
+		throwFirstError();
+		synchronized(runningThreads){
+			for (Job job: runningJobs.values()) {
+				// Only while the job still has its thread, so that
+				// the interrupt can't land on whatever the thread runs next
+				job.interrupt();
+				throwFirstError();
+			}
+		}
+	}
+
+	/**
+	 * Dump the stack of each running thread.
+	 * <p>
+	 * If this method throws an error, that
+	 * error may be handled and this method
+	 * may be called again as it will not re-throw the same
+	 * instance of the error.
+	 *
+	 * @throws Error if any of the running threads has thrown an Error.
+	 *
+	 * @since ostermillerutils 1.05.00
+	 */
+	public void dumpStack(){
+		throwFirstError();
+		synchronized(runningThreads){
+			for (Thread thread: runningThreads) {
+				for (StackTraceElement stackTraceElement: thread.getStackTrace()){
+					System.out.println(stackTraceElement.toString());
+				}
+				throwFirstError();
+			}
+		}
+	}
+
+	/**
+	 * Gets a list of all running threads.  There may be jobs that
+	 * are queued and do not yet have threads.  These job are not
+	 * returned.
+	 * <p>
 	 * If this method throws an error, that
 	 * error may be handled and this method
 	 * may be called again as it will not re-throw the same
@@ -442,7 +1857,8 @@ public class Parallelizer
 
 	/**
 	 * Block until all the jobs in this Parallelizer have run
-	 * and then return.
+	 * and then return.  That includes jobs that are run by other jobs
+	 * while this method waits.
 	 * <p>
 	 * If this method throws an exception or an error, that
 	 * exception or error may be handled and this method
@@ -456,9 +1872,12 @@ public class Parallelizer
 	 * @since ostermillerutils 1.05.00
 	 */
 	public void join() throws InterruptedException {
-		while (!done()){
-			synchronized(runningThreads){
-				throwFirstException();
+		synchronized(runningThreads){
+			throwFirstError();
+			throwFirstException();
+			// Check and wait while holding the lock so that a job
+			// finishing in between can't be missed.
+			while (unfinishedCount() > 0){
 				runningThreads.wait();
 				throwFirstError();
 				throwFirstException();
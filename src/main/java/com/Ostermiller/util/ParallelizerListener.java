@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+/**
+ * Call back for the life cycle of jobs run by a Parallelizer.
+ * <p>
+ * Calls are made from the thread that runs the job (or from the
+ * thread that queues it for {@link #onQueued(Runnable)}), so they may be
+ * made concurrently and implementations must be thread safe.  They
+ * should return quickly as they hold up the job or the thread that
+ * queues it.  Anything a listener throws is thrown by
+ * {@link Parallelizer#join()} as if a job had thrown it.
+ * <p>
+ * The job passed to each call is the Runnable given to
+ * {@link Parallelizer#run(Runnable)}, or the Future returned by
+ * {@link Parallelizer#submit(java.util.concurrent.Callable)}.
+ *
+ * @see Parallelizer#addListener(ParallelizerListener)
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public interface ParallelizerListener {
+
+	/**
+	 * Called when a job is given to the Parallelizer, before it is queued.
+	 * If the job is cancelled before it starts, no other calls are made for it.
+	 *
+	 * @param job the job.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void onQueued(Runnable job);
+
+	/**
+	 * Called on the thread that runs a job just before it runs.
+	 *
+	 * @param job the job.
+	 * @param queueWaitNanos nanoseconds from when the job was queued until it started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void onStart(Runnable job, long queueWaitNanos);
+
+	/**
+	 * Called on the thread that ran a job when it has finished successfully.
+	 *
+	 * @param job the job.
+	 * @param runNanos nanoseconds that the job ran.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void onFinish(Runnable job, long runNanos);
+
+	/**
+	 * Called when a job has thrown an exception or error,
+	 * or could not be started because the executor rejected it.
+	 *
+	 * @param job the job.
+	 * @param failure what the job threw.
+	 * @param runNanos nanoseconds that the job ran, zero if it never started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public void onFailure(Runnable job, Throwable failure, long runNanos);
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+/**
+ * Management interface through which the statistics of a
+ * Parallelizer are published with JMX.
+ * Each attribute has the same meaning as in {@link ParallelizerStatistics}.
+ *
+ * @see Parallelizer#registerMBean(String)
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public interface ParallelizerMXBean {
+
+	/**
+	 * @return number of jobs allowed to run at once, zero for no limit.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getConcurrentThreadLimit();
+
+	/**
+	 * @return number of jobs that have been given to the Parallelizer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getSubmittedCount();
+
+	/**
+	 * @return number of jobs waiting to run.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getQueuedCount();
+
+	/**
+	 * @return number of jobs running.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getRunningCount();
+
+	/**
+	 * @return the most jobs that have been running at once.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getPeakRunningCount();
+
+	/**
+	 * @return number of jobs that have finished successfully.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getCompletedCount();
+
+	/**
+	 * @return number of jobs that have failed.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getFailedCount();
+
+	/**
+	 * @return number of jobs that were cancelled before they started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getCancelledCount();
+
+	/**
+	 * @return number of jobs that were interrupted for running too long.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getTimedOutCount();
+
+	/**
+	 * @return average nanoseconds that jobs waited to start.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double getAverageQueueWaitNanos();
+
+	/**
+	 * @return longest nanoseconds that a job waited to start.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getMaxQueueWaitNanos();
+
+	/**
+	 * @return average nanoseconds that finished jobs ran.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double getAverageRunNanos();
+
+	/**
+	 * @return longest nanoseconds that a job ran.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getMaxRunNanos();
+}
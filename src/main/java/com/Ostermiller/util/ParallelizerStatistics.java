@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+/**
+ * Statistics about the jobs run by a Parallelizer, as of
+ * the time that they were taken.
+ * <p>
+ * Comparing the average time that jobs wait in the queue with the
+ * time that they run, and the peak number of jobs running with
+ * the concurrent thread limit, shows whether the limit is
+ * holding jobs back or could be lower.
+ * <p>
+ * The counters are read one at a time while jobs continue to run,
+ * so they may not be exactly consistent with each other.
+ * Statistics are immutable.
+ *
+ * @see Parallelizer#getStatistics()
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public final class ParallelizerStatistics {
+
+	private final int concurrentThreadLimit;
+	private final long submittedCount;
+	private final int queuedCount;
+	private final int runningCount;
+	private final int peakRunningCount;
+	private final long startedCount;
+	private final long completedCount;
+	private final long failedCount;
+	private final long cancelledCount;
+	private final long timedOutCount;
+	private final long totalQueueWaitNanos;
+	private final long maxQueueWaitNanos;
+	private final long totalRunNanos;
+	private final long maxRunNanos;
+
+	ParallelizerStatistics(int concurrentThreadLimit, long submittedCount, int queuedCount, int runningCount, int peakRunningCount,
+			long startedCount, long completedCount, long failedCount, long cancelledCount, long timedOutCount,
+			long totalQueueWaitNanos, long maxQueueWaitNanos, long totalRunNanos, long maxRunNanos){
+		this.concurrentThreadLimit = concurrentThreadLimit;
+		this.submittedCount = submittedCount;
+		this.queuedCount = queuedCount;
+		this.runningCount = runningCount;
+		this.peakRunningCount = peakRunningCount;
+		this.startedCount = startedCount;
+		this.completedCount = completedCount;
+		this.failedCount = failedCount;
+		this.cancelledCount = cancelledCount;
+		this.timedOutCount = timedOutCount;
+		this.totalQueueWaitNanos = totalQueueWaitNanos;
+		this.maxQueueWaitNanos = maxQueueWaitNanos;
+		this.totalRunNanos = totalRunNanos;
+		this.maxRunNanos = maxRunNanos;
+	}
+
+	/**
+	 * @return number of jobs allowed to run at once (the parallelism of
+	 *     the pool for work stealing), zero for no limit.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getConcurrentThreadLimit(){
+		return concurrentThreadLimit;
+	}
+
+	/**
+	 * @return number of jobs that have been given to the Parallelizer.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getSubmittedCount(){
+		return submittedCount;
+	}
+
+	/**
+	 * @return number of jobs waiting to run, whether in the queue of the
+	 *     Parallelizer or handed to the executor and not yet running.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getQueuedCount(){
+		return queuedCount;
+	}
+
+	/**
+	 * @return number of jobs running.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getRunningCount(){
+		return runningCount;
+	}
+
+	/**
+	 * @return the most jobs that have been running at once.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public int getPeakRunningCount(){
+		return peakRunningCount;
+	}
+
+	/**
+	 * @return number of jobs that have started running.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getStartedCount(){
+		return startedCount;
+	}
+
+	/**
+	 * @return number of jobs that have finished successfully.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getCompletedCount(){
+		return completedCount;
+	}
+
+	/**
+	 * @return number of jobs that have thrown an exception or error,
+	 *     or were rejected by the executor.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getFailedCount(){
+		return failedCount;
+	}
+
+	/**
+	 * @return number of jobs that were cancelled before they started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getCancelledCount(){
+		return cancelledCount;
+	}
+
+	/**
+	 * @return number of jobs that were interrupted because they ran longer than the job timeout.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getTimedOutCount(){
+		return timedOutCount;
+	}
+
+	/**
+	 * @return total nanoseconds that started jobs waited to start.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getTotalQueueWaitNanos(){
+		return totalQueueWaitNanos;
+	}
+
+	/**
+	 * @return longest nanoseconds that a job waited to start.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getMaxQueueWaitNanos(){
+		return maxQueueWaitNanos;
+	}
+
+	/**
+	 * @return average nanoseconds that started jobs waited to start, zero if none have started.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double getAverageQueueWaitNanos(){
+		if (startedCount == 0) return 0;
+		return (double)totalQueueWaitNanos / startedCount;
+	}
+
+	/**
+	 * @return total nanoseconds that finished jobs ran.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getTotalRunNanos(){
+		return totalRunNanos;
+	}
+
+	/**
+	 * @return longest nanoseconds that a job ran.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public long getMaxRunNanos(){
+		return maxRunNanos;
+	}
+
+	/**
+	 * @return average nanoseconds that finished jobs ran, zero if none have finished.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public double getAverageRunNanos(){
+		long finished = startedCount - runningCount;
+		if (finished <= 0) return 0;
+		return (double)totalRunNanos / finished;
+	}
+
+	/**
+	 * @return a summary of the statistics.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	@Override public String toString(){
+		return "submitted=" + submittedCount
+			+ " queued=" + queuedCount
+			+ " running=" + runningCount
+			+ " peakRunning=" + peakRunningCount
+			+ " limit=" + concurrentThreadLimit
+			+ " completed=" + completedCount
+			+ " failed=" + failedCount
+			+ " cancelled=" + cancelledCount
+			+ " timedOut=" + timedOutCount
+			+ " averageQueueWaitMillis=" + (getAverageQueueWaitNanos() / 1000000)
+			+ " maxQueueWaitMillis=" + (maxQueueWaitNanos / 1000000.0)
+			+ " averageRunMillis=" + (getAverageRunNanos() / 1000000)
+			+ " maxRunMillis=" + (maxRunNanos / 1000000.0);
+	}
+}
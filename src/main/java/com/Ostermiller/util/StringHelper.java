@@ -17,8 +17,12 @@
 
 package com.Ostermiller.util;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
 /**
@@ -1214,6 +1218,8 @@ public class StringHelper {
 		// is part of an un-escaped construct.
 		//
 		// As a result, escape everything except [0-9a-zA-Z]
+		// and the halves of surrogate pairs, which a backslash would
+		// separate so that the pair no longer matches its code point.
 
 		int length = s.length();
 		int newLength = length;
@@ -1222,7 +1228,7 @@ public class StringHelper {
 		// of the string that has escapes.
 		for (int i=0; i<length; i++){
 			char c = s.charAt(i);
-			if (!((c>='0' && c<='9') || (c>='A' && c<='Z') || (c>='a' && c<='z'))){
+			if (!((c>='0' && c<='9') || (c>='A' && c<='Z') || (c>='a' && c<='z') || Character.isSurrogate(c))){
 				newLength += 1;
 			}
 		}
@@ -1233,7 +1239,7 @@ public class StringHelper {
 		StringBuffer sb = new StringBuffer(newLength);
 		for (int i=0; i<length; i++){
 			char c = s.charAt(i);
-			if (!((c>='0' && c<='9') || (c>='A' && c<='Z') || (c>='a' && c<='z'))){
+			if (!((c>='0' && c<='9') || (c>='A' && c<='Z') || (c>='a' && c<='z') || Character.isSurrogate(c))){
 				sb.append('\\');
 			}
 			sb.append(c);
@@ -1262,6 +1268,215 @@ public class StringHelper {
 		sb.append(")");
 	}
 
+	/**
+	 * Kind of compiled object: a pattern that matches strings containing any of the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int CONTAINS_ANY = 0;
+
+	/**
+	 * Kind of compiled object: a pattern that matches strings equal to any of the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int EQUALS_ANY = 1;
+
+	/**
+	 * Kind of compiled object: a pattern that matches strings starting with any of the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int STARTS_WITH_ANY = 2;
+
+	/**
+	 * Kind of compiled object: a pattern that matches strings ending with any of the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int ENDS_WITH_ANY = 3;
+
+	/**
+	 * Flag added to a kind of compiled object when case is ignored.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int IGNORE_CASE = 4;
+
+	/**
+	 * Kind of compiled object: a MultiStringMatcher for the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final int MATCHER = 8;
+
+	/**
+	 * Maximum number of compiled patterns and matchers to keep.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static volatile int patternCacheSize = 64;
+
+	/**
+	 * Recently used compiled patterns and matchers, least recently used first.
+	 * Access is synchronized on the map itself.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final LinkedHashMap<PatternCacheKey,Object> patternCache = new LinkedHashMap<PatternCacheKey,Object>(16, 0.75f, true){
+		private static final long serialVersionUID = 6385726386209143718L;
+		@Override protected boolean removeEldestEntry(Map.Entry<PatternCacheKey,Object> eldest){
+			return size() > patternCacheSize;
+		}
+	};
+
+	/**
+	 * Number of times a compiled pattern or matcher was found in the cache.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final LongAdder patternCacheHits = new LongAdder();
+
+	/**
+	 * Number of times a pattern or matcher had to be compiled.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final LongAdder patternCacheMisses = new LongAdder();
+
+	/**
+	 * Key for the pattern cache: the kind of compiled object and the terms.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static final class PatternCacheKey {
+		private final int kind;
+		private final String[] terms;
+		private final int hash;
+
+		private PatternCacheKey(int kind, String[] terms){
+			this.kind = kind;
+			this.terms = terms;
+			this.hash = Arrays.hashCode(terms) * 31 + kind;
+		}
+
+		@Override public int hashCode(){
+			return hash;
+		}
+
+		@Override public boolean equals(Object o){
+			if (!(o instanceof PatternCacheKey)) return false;
+			PatternCacheKey other = (PatternCacheKey)o;
+			return hash == other.hash && kind == other.kind && Arrays.equals(terms, other.terms);
+		}
+	}
+
+	/**
+	 * Get a compiled pattern or matcher from the cache, compiling
+	 * and caching it if it is not there.
+	 * <p>
+	 * Compilation happens outside the lock so that a large set of
+	 * terms doesn't hold up other threads.  The terms are copied
+	 * so that later changes to the caller's array don't affect the cache.
+	 *
+	 * @param kind what to compile: one of the kind constants, possibly with IGNORE_CASE.
+	 * @param terms Array of search strings.
+	 * @return a Pattern, or a MultiStringMatcher when the kind is MATCHER.
+	 * @throws IllegalArgumentException if the length of terms is zero.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	private static Object compiled(int kind, String[] terms){
+		Object compiled;
+		synchronized (patternCache){
+			compiled = patternCache.get(new PatternCacheKey(kind, terms));
+		}
+		if (compiled != null){
+			patternCacheHits.increment();
+			return compiled;
+		}
+		patternCacheMisses.increment();
+		terms = terms.clone();
+		if ((kind & MATCHER) != 0){
+			compiled = new MultiStringMatcher(terms, (kind & IGNORE_CASE) != 0);
+		} else {
+			StringBuffer sb = new StringBuffer();
+			if ((kind & IGNORE_CASE) != 0) sb.append("(?i)(?u)");
+			int match = kind & ~IGNORE_CASE;
+			sb.append((match == CONTAINS_ANY || match == ENDS_WITH_ANY) ? "(?s).*" : "(?s)\\A");
+			buildFindAnyPattern(terms, sb);
+			sb.append((match == CONTAINS_ANY || match == STARTS_WITH_ANY) ? ".*" : "\\z");
+			compiled = Pattern.compile(sb.toString());
+		}
+		synchronized (patternCache){
+			patternCache.put(new PatternCacheKey(kind, terms), compiled);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Set the maximum number of compiled patterns and matchers kept by
+	 * the get*AnyPattern methods and by containsAny, equalsAny,
+	 * startsWithAny, endsWithAny and their ignore case variants.
+	 * When the cache is full, the least recently used entry is discarded.
+	 * The default is 64.  A size of zero disables caching.
+	 *
+	 * @param size maximum number of cached patterns and matchers.
+	 * @throws IllegalArgumentException if the size is negative.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void setPatternCacheSize(int size){
+		if (size < 0) throw new IllegalArgumentException("Cache size must not be negative: " + size);
+		synchronized (patternCache){
+			patternCacheSize = size;
+			Iterator<PatternCacheKey> i = patternCache.keySet().iterator();
+			while (patternCache.size() > size){
+				i.next();
+				i.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return maximum number of compiled patterns and matchers that are cached.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static int getPatternCacheSize(){
+		return patternCacheSize;
+	}
+
+	/**
+	 * Discard all cached patterns and matchers.
+	 * The hit and miss counts are not reset.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static void clearPatternCache(){
+		synchronized (patternCache){
+			patternCache.clear();
+		}
+	}
+
+	/**
+	 * @return number of times a compiled pattern or matcher was reused from the cache.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static long getPatternCacheHitCount(){
+		return patternCacheHits.sum();
+	}
+
+	/**
+	 * @return number of times a pattern or matcher was compiled because it was not in the cache.
+	 *
+	 * @since ostermillerutils 1.09.00
+	 */
+	public static long getPatternCacheMissCount(){
+		return patternCacheMisses.sum();
+	}
+
 	/**
 	 * Compile a pattern that can will match a string if the string
 	 * contains any of the given terms.
@@ -1271,6 +1486,7 @@ public class StringHelper {
 	 * <p>
 	 * If multiple strings are matched against the same set of terms,
 	 * it is more efficient to reuse the pattern returned by this function.
+	 * Patterns for recently used terms are cached, see {@link #setPatternCacheSize(int)}.
 	 *
 	 * @param terms Array of search strings.
 	 * @return Compiled pattern that can be used to match a string to see if it contains any of the terms.
@@ -1278,11 +1494,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static Pattern getContainsAnyPattern(String[] terms){
-		StringBuffer sb = new StringBuffer();
-		sb.append("(?s).*");
-		buildFindAnyPattern(terms, sb);
-		sb.append(".*");
-		return Pattern.compile(sb.toString());
+		return (Pattern)compiled(CONTAINS_ANY, terms);
 	}
 
 	/**
@@ -1294,6 +1506,7 @@ public class StringHelper {
 	 * <p>
 	 * If multiple strings are matched against the same set of terms,
 	 * it is more efficient to reuse the pattern returned by this function.
+	 * Patterns for recently used terms are cached, see {@link #setPatternCacheSize(int)}.
 	 *
 	 * @param terms Array of search strings.
 	 * @return Compiled pattern that can be used to match a string to see if it equals any of the terms.
@@ -1301,11 +1514,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static Pattern getEqualsAnyPattern(String[] terms){
-		StringBuffer sb = new StringBuffer();
-		sb.append("(?s)\\A");
-		buildFindAnyPattern(terms, sb);
-		sb.append("\\z");
-		return Pattern.compile(sb.toString());
+		return (Pattern)compiled(EQUALS_ANY, terms);
 	}
 
 	/**
@@ -1317,6 +1526,7 @@ public class StringHelper {
 	 * <p>
 	 * If multiple strings are matched against the same set of terms,
 	 * it is more efficient to reuse the pattern returned by this function.
+	 * Patterns for recently used terms are cached, see {@link #setPatternCacheSize(int)}.
 	 *
 	 * @param terms Array of search strings.
 	 * @return Compiled pattern that can be used to match a string to see if it starts with any of the terms.
@@ -1324,11 +1534,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static Pattern getStartsWithAnyPattern(String[] terms){
-		StringBuffer sb = new StringBuffer();
-		sb.append("(?s)\\A");
-		buildFindAnyPattern(terms, sb);
-		sb.append(".*");
-		return Pattern.compile(sb.toString());
+		return (Pattern)compiled(STARTS_WITH_ANY, terms);
 	}
 
 	/**
@@ -1340,6 +1546,7 @@ public class StringHelper {
 	 * <p>
 	 * If multiple strings are matched against the same set of terms,
 	 * it is more efficient to reuse the pattern returned by this function.
+	 * Patterns for recently used terms are cached, see {@link #setPatternCacheSize(int)}.
 	 *
 	 * @param terms Array of search strings.
 	 * @return Compiled pattern that can be used to match a string to see if it ends with any of the terms.
@@ -1347,11 +1554,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static Pattern getEndsWithAnyPattern(String[] terms){
-		StringBuffer sb = new StringBuffer();
-		sb.append("(?s).*");
-		buildFindAnyPattern(terms, sb);
-		sb.append("\\z");
-		return Pattern.compile(sb.toString());
+		return (Pattern)compiled(ENDS_WITH_ANY, terms);
 	}
 
 	/**
@@ -1365,6 +1568,7 @@ public class StringHelper {
 	 * <p>
 	 * If multiple strings are matched against the same set of terms,
 	 * it is more efficient to reuse the pattern returned by this function.
+	 * Patterns for recently used terms are cached, see {@link #setPatternCacheSize(int)}.
 	 *
 	 * @param terms Array of search strings.
 	 * @return Compiled pattern that can be used to match a string to see if it contains any of the terms.
@@ -1372,11 +1576,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static Pattern getContainsAnyIgnoreCasePattern(String[] terms){
-		StringBuffer sb = new StringBuffer();
-		sb.append("(?i)(?u)(?s).*");
-		buildFindAnyPattern(terms, sb);
-		sb.append(".*");
-		return Pattern.compile(sb.toString());
+		return (Pattern)compiled(CONTAINS_ANY | IGNORE_CASE, terms);
 	}
 
 	/**
@@ -1390,6 +1590,7 @@ public class StringHelper {
 	 * <p>
 	 * If multiple strings are matched against the same set of terms,
 	 * it is more efficient to reuse the pattern returned by this function.
+	 * Patterns for recently used terms are cached, see {@link #setPatternCacheSize(int)}.
 	 *
 	 * @param terms Array of search strings.
 	 * @return Compiled pattern that can be used to match a string to see if it equals any of the terms.
@@ -1397,11 +1598,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static Pattern getEqualsAnyIgnoreCasePattern(String[] terms){
-		StringBuffer sb = new StringBuffer();
-		sb.append("(?i)(?u)(?s)\\A");
-		buildFindAnyPattern(terms, sb);
-		sb.append("\\z");
-		return Pattern.compile(sb.toString());
+		return (Pattern)compiled(EQUALS_ANY | IGNORE_CASE, terms);
 	}
 
 	/**
@@ -1415,6 +1612,7 @@ public class StringHelper {
 	 * <p>
 	 * If multiple strings are matched against the same set of terms,
 	 * it is more efficient to reuse the pattern returned by this function.
+	 * Patterns for recently used terms are cached, see {@link #setPatternCacheSize(int)}.
 	 *
 	 * @param terms Array of search strings.
 	 * @return Compiled pattern that can be used to match a string to see if it starts with any of the terms.
@@ -1422,11 +1620,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static Pattern getStartsWithAnyIgnoreCasePattern(String[] terms){
-		StringBuffer sb = new StringBuffer();
-		sb.append("(?i)(?u)(?s)\\A");
-		buildFindAnyPattern(terms, sb);
-		sb.append(".*");
-		return Pattern.compile(sb.toString());
+		return (Pattern)compiled(STARTS_WITH_ANY | IGNORE_CASE, terms);
 	}
 
 	/**
@@ -1440,6 +1634,7 @@ public class StringHelper {
 	 * <p>
 	 * If multiple strings are matched against the same set of terms,
 	 * it is more efficient to reuse the pattern returned by this function.
+	 * Patterns for recently used terms are cached, see {@link #setPatternCacheSize(int)}.
 	 *
 	 * @param terms Array of search strings.
 	 * @return Compiled pattern that can be used to match a string to see if it ends with any of the terms.
@@ -1447,25 +1642,22 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static Pattern getEndsWithAnyIgnoreCasePattern(String[] terms){
-		StringBuffer sb = new StringBuffer();
-		sb.append("(?i)(?u)(?s).*");
-		buildFindAnyPattern(terms, sb);
-		sb.append("\\z");
-		return Pattern.compile(sb.toString());
+		return (Pattern)compiled(ENDS_WITH_ANY | IGNORE_CASE, terms);
 	}
 
 	/**
 	 * Tests to see if the given string contains any of the given terms.
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
-	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * of testing the string against each of the terms.  It instead builds
+	 * a {@link MultiStringMatcher} that tests all the terms at once in a
+	 * single pass over the string.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getContainsAnyPattern(String[])
+	 * the same set of terms, it is more efficient to create a
+	 * MultiStringMatcher once and reuse it.  Matchers for recently
+	 * used terms are cached, see {@link #setPatternCacheSize(int)}.
+	 * @see MultiStringMatcher#containsAny(CharSequence)
 	 *
 	 * @param s String that may contain any of the given terms.
 	 * @param terms list of substrings that may be contained in the given string.
@@ -1474,21 +1666,22 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean containsAny(String s, String[] terms){
-		return getContainsAnyPattern(terms).matcher(s).matches();
+		return ((MultiStringMatcher)compiled(MATCHER, terms)).containsAny(s);
 	}
 
 	/**
 	 * Tests to see if the given string equals any of the given terms.
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
-	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * of testing the string against each of the terms.  It instead builds
+	 * a {@link MultiStringMatcher} that tests all the terms at once in a
+	 * single pass over the string.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getEqualsAnyPattern(String[])
+	 * the same set of terms, it is more efficient to create a
+	 * MultiStringMatcher once and reuse it.  Matchers for recently
+	 * used terms are cached, see {@link #setPatternCacheSize(int)}.
+	 * @see MultiStringMatcher#equalsAny(CharSequence)
 	 *
 	 * @param s String that may equal any of the given terms.
 	 * @param terms list of strings that may equal the given string.
@@ -1497,21 +1690,22 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean equalsAny(String s, String[] terms){
-		return getEqualsAnyPattern(terms).matcher(s).matches();
+		return ((MultiStringMatcher)compiled(MATCHER, terms)).equalsAny(s);
 	}
 
 	/**
 	 * Tests to see if the given string starts with any of the given terms.
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
-	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * of testing the string against each of the terms.  It instead builds
+	 * a {@link MultiStringMatcher} that tests all the terms at once in a
+	 * single pass over the string.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getStartsWithAnyPattern(String[])
+	 * the same set of terms, it is more efficient to create a
+	 * MultiStringMatcher once and reuse it.  Matchers for recently
+	 * used terms are cached, see {@link #setPatternCacheSize(int)}.
+	 * @see MultiStringMatcher#startsWithAny(CharSequence)
 	 *
 	 * @param s String that may start with any of the given terms.
 	 * @param terms list of strings that may start with the given string.
@@ -1520,21 +1714,22 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean startsWithAny(String s, String[] terms){
-		return getStartsWithAnyPattern(terms).matcher(s).matches();
+		return ((MultiStringMatcher)compiled(MATCHER, terms)).startsWithAny(s);
 	}
 
 	/**
 	 * Tests to see if the given string ends with any of the given terms.
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
-	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * of testing the string against each of the terms.  It instead builds
+	 * a {@link MultiStringMatcher} that tests all the terms at once in a
+	 * single pass over the string.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getEndsWithAnyPattern(String[])
+	 * the same set of terms, it is more efficient to create a
+	 * MultiStringMatcher once and reuse it.  Matchers for recently
+	 * used terms are cached, see {@link #setPatternCacheSize(int)}.
+	 * @see MultiStringMatcher#endsWithAny(CharSequence)
 	 *
 	 * @param s String that may end with any of the given terms.
 	 * @param terms list of strings that may end with the given string.
@@ -1543,7 +1738,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean endsWithAny(String s, String[] terms){
-		return getEndsWithAnyPattern(terms).matcher(s).matches();
+		return ((MultiStringMatcher)compiled(MATCHER, terms)).endsWithAny(s);
 	}
 
 	/**
@@ -1552,14 +1747,15 @@ public class StringHelper {
 	 * Case is ignored when matching using Unicode case rules.
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
-	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * of testing the string against each of the terms.  It instead builds
+	 * a {@link MultiStringMatcher} that tests all the terms at once in a
+	 * single pass over the string.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getContainsAnyIgnoreCasePattern(String[])
+	 * the same set of terms, it is more efficient to create a
+	 * MultiStringMatcher once and reuse it.  Matchers for recently
+	 * used terms are cached, see {@link #setPatternCacheSize(int)}.
+	 * @see MultiStringMatcher#containsAny(CharSequence)
 	 *
 	 * @param s String that may contain any of the given terms.
 	 * @param terms list of substrings that may be contained in the given string.
@@ -1568,7 +1764,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean containsAnyIgnoreCase(String s, String[] terms){
-		return getContainsAnyIgnoreCasePattern(terms).matcher(s).matches();
+		return ((MultiStringMatcher)compiled(MATCHER | IGNORE_CASE, terms)).containsAny(s);
 	}
 
 	/**
@@ -1577,14 +1773,15 @@ public class StringHelper {
 	 * Case is ignored when matching using Unicode case rules.
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
-	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * of testing the string against each of the terms.  It instead builds
+	 * a {@link MultiStringMatcher} that tests all the terms at once in a
+	 * single pass over the string.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getEqualsAnyIgnoreCasePattern(String[])
+	 * the same set of terms, it is more efficient to create a
+	 * MultiStringMatcher once and reuse it.  Matchers for recently
+	 * used terms are cached, see {@link #setPatternCacheSize(int)}.
+	 * @see MultiStringMatcher#equalsAny(CharSequence)
 	 *
 	 * @param s String that may equal any of the given terms.
 	 * @param terms list of strings that may equal the given string.
@@ -1593,7 +1790,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean equalsAnyIgnoreCase(String s, String[] terms){
-		return getEqualsAnyIgnoreCasePattern(terms).matcher(s).matches();
+		return ((MultiStringMatcher)compiled(MATCHER | IGNORE_CASE, terms)).equalsAny(s);
 	}
 
 	/**
@@ -1602,14 +1799,15 @@ public class StringHelper {
 	 * Case is ignored when matching using Unicode case rules.
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
-	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * of testing the string against each of the terms.  It instead builds
+	 * a {@link MultiStringMatcher} that tests all the terms at once in a
+	 * single pass over the string.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getStartsWithAnyIgnoreCasePattern(String[])
+	 * the same set of terms, it is more efficient to create a
+	 * MultiStringMatcher once and reuse it.  Matchers for recently
+	 * used terms are cached, see {@link #setPatternCacheSize(int)}.
+	 * @see MultiStringMatcher#startsWithAny(CharSequence)
 	 *
 	 * @param s String that may start with any of the given terms.
 	 * @param terms list of strings that may start with the given string.
@@ -1618,7 +1816,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean startsWithAnyIgnoreCase(String s, String[] terms){
-		return getStartsWithAnyIgnoreCasePattern(terms).matcher(s).matches();
+		return ((MultiStringMatcher)compiled(MATCHER | IGNORE_CASE, terms)).startsWithAny(s);
 	}
 
 	/**
@@ -1627,14 +1825,15 @@ public class StringHelper {
 	 * Case is ignored when matching using Unicode case rules.
 	 * <p>
 	 * This implementation is more efficient than the brute force approach
-	 * of testing the string against each of the terms.  It instead compiles
-	 * a single regular expression that can test all the terms at once, and
-	 * uses that expression against the string.
+	 * of testing the string against each of the terms.  It instead builds
+	 * a {@link MultiStringMatcher} that tests all the terms at once in a
+	 * single pass over the string.
 	 * <p>
 	 * This is a convenience method.  If multiple strings are tested against
-	 * the same set of terms, it is more efficient not to compile the regular
-	 * expression multiple times.
-	 * @see #getEndsWithAnyIgnoreCasePattern(String[])
+	 * the same set of terms, it is more efficient to create a
+	 * MultiStringMatcher once and reuse it.  Matchers for recently
+	 * used terms are cached, see {@link #setPatternCacheSize(int)}.
+	 * @see MultiStringMatcher#endsWithAny(CharSequence)
 	 *
 	 * @param s String that may end with any of the given terms.
 	 * @param terms list of strings that may end with the given string.
@@ -1643,7 +1842,7 @@ public class StringHelper {
 	 * @since ostermillerutils 1.02.25
 	 */
 	public static boolean endsWithAnyIgnoreCase(String s, String[] terms){
-		return getEndsWithAnyIgnoreCasePattern(terms).matcher(s).matches();
+		return ((MultiStringMatcher)compiled(MATCHER | IGNORE_CASE, terms)).endsWithAny(s);
 	}
 
 	/**
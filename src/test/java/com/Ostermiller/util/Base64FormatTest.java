@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for Base64Format
+ */
+public class Base64FormatTest extends TestCase {
+
+	private static final byte[] SYMBOLS = { (byte) 0xfb, (byte) 0xff, (byte) 0xbf };
+
+	public void testStandardMatchesBase64() {
+		Random rand = new Random(31415926);
+		for (int length = 0; length < 200; length++) {
+			byte[] bytes = new byte[length];
+			rand.nextBytes(bytes);
+			assertTrue(Arrays.equals(Base64.encode(bytes, false), Base64Format.STANDARD.encode(bytes)));
+			assertTrue(Arrays.equals(Base64.encode(bytes, true), Base64Format.MIME.encode(bytes)));
+			assertTrue(Arrays.equals(bytes, Base64Format.MIME.decode(Base64.encode(bytes, true))));
+		}
+	}
+
+	public void testUrlSafe() {
+		assertEquals("-_-_", Base64Format.URL_SAFE.encodeToString(SYMBOLS));
+		assertEquals("aA==", Base64Format.URL_SAFE.encodeToString(new byte[] { 'h' }));
+		assertEquals("aA", Base64Format.URL_SAFE_NO_PADDING.encodeToString(new byte[] { 'h' }));
+		assertEquals("dGU", Base64Format.URL_SAFE_NO_PADDING.encodeToString(new byte[] { 't', 'e' }));
+		assertTrue(Arrays.equals(SYMBOLS, Base64Format.URL_SAFE.decode("-_-_")));
+		assertTrue(Arrays.equals(new byte[] { 't', 'e' }, Base64Format.URL_SAFE_NO_PADDING.decode("dGU")));
+		assertTrue(Arrays.equals(new byte[] { 't', 'e' }, Base64Format.URL_SAFE_NO_PADDING.decode("dGU=")));
+		// The standard symbols are not part of the URL safe alphabet
+		assertEquals(0, Base64Format.URL_SAFE.decode("+/+/").length);
+	}
+
+	public void testLineLength() throws IOException {
+		Base64Format format = Base64Format.URL_SAFE_NO_PADDING.withLineLength(8);
+		assertEquals(8, format.getLineLength());
+		assertFalse(format.isPadding());
+		byte[] bytes = new byte[] { 1, 2, 3, 4, 5, 6, 7 };
+		assertEquals("AQIDBAUG\nBw\n", format.encodeToString(bytes));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		format.encode(new ByteArrayInputStream(bytes), out);
+		assertEquals("AQIDBAUG\nBw\n", out.toString("ASCII"));
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		format.decode(new ByteArrayInputStream(out.toByteArray()), decoded, true);
+		assertTrue(Arrays.equals(bytes, decoded.toByteArray()));
+		assertTrue(Arrays.equals(bytes, format.decode("AQIDBAUG\nBw\n")));
+	}
+
+	public void testExceptions() throws IOException {
+		try {
+			Base64Format.URL_SAFE.decode(new ByteArrayInputStream("ab+c".getBytes("ASCII")), new ByteArrayOutputStream(), true);
+			fail("Expected Base64DecodingException");
+		} catch (Base64DecodingException x) {
+			assertEquals('+', x.getChar());
+		}
+		try {
+			new Base64Format('-', '-', true, 0);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException x) {
+			// expected
+		}
+		try {
+			new Base64Format('-', '_', true, 75);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException x) {
+			// expected
+		}
+	}
+}
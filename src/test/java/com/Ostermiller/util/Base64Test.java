@@ -17,8 +17,15 @@
 package com.Ostermiller.util;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.Random;
 
 import junit.framework.TestCase;
@@ -52,6 +59,376 @@ public class Base64Test extends TestCase {
 		}
 	}
 
+	public void testLineBreaks() {
+		byte[] line = new byte[57];
+		String encodedLine = "AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA";
+		assertEquals(encodedLine + "\n", new String(Base64.encode(line, true)));
+		assertEquals(encodedLine, new String(Base64.encode(line, false)));
+		assertEquals(encodedLine + "\n" + "AA==\n", new String(Base64.encode(new byte[58], true)));
+		assertEquals("aA==\n", new String(Base64.encode(new byte[] { 'h' }, true)));
+		assertEquals("", new String(Base64.encode(new byte[0], true)));
+	}
+
+	public void testStreamMatchesArray() throws IOException {
+		Random rand = new Random(987654321);
+		for (int length : new int[] { 0, 1, 2, 56, 57, 58, 57 * 1024 - 1, 57 * 1024, 57 * 1024 + 1, 200000 }) {
+			byte[] bytes = new byte[length];
+			rand.nextBytes(bytes);
+			for (boolean lineBreaks : new boolean[] { true, false }) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				Base64.encode(new ByteArrayInputStream(bytes), out, lineBreaks);
+				byte[] encoded = Base64.encode(bytes, lineBreaks);
+				assertTrue(byteArraysEqual(encoded, out.toByteArray()));
+				assertTrue(byteArraysEqual(bytes, Base64.decode(encoded)));
+			}
+		}
+	}
+
+	public void testDecodeSkipsNonBase64() {
+		byte[] expected = "cob".getBytes();
+		assertTrue(byteArraysEqual(expected, Base64.decodeToBytes(" Y2\r\n9i\t")));
+		assertTrue(byteArraysEqual(expected, Base64.decodeToBytes("Y*2-9i")));
+		assertTrue(byteArraysEqual(expected, Base64.decodeToBytes(new byte[] { 'Y', (byte)0xe9, '2', '9', (byte)0x80, 'i' })));
+		assertTrue(byteArraysEqual(expected, Base64.decodeToBytes("Y2\u00e99\u4e2di".toCharArray())));
+		assertTrue(byteArraysEqual(new byte[] { 't', 'e' }, Base64.decodeToBytes("d G U =")));
+	}
+
+	public void testDecodeThrowsExceptions() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Base64.decode(new StringReader("Y29i\n dGU=\n"), out);
+		assertTrue(byteArraysEqual("cobte".getBytes(), out.toByteArray()));
+		assertUnexpectedChar("Y2*9i", '*');
+		assertUnexpectedChar("Y2\u00e99i", '\u00e9');
+		assertUnexpectedChar("dGU=dGU=", 'd');
+	}
+
+	public void testDecodeStreamBlocks() throws IOException {
+		Random rand = new Random(24681357);
+		byte[] bytes = new byte[300000];
+		rand.nextBytes(bytes);
+		byte[] encoded = Base64.encode(bytes, true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Base64.decode(new ByteArrayInputStream(encoded), out);
+		assertTrue(byteArraysEqual(bytes, out.toByteArray()));
+		assertTrue(byteArraysEqual(bytes, Base64.decodeToBytes(new String(encoded, "ASCII"))));
+	}
+
+	public void testEncodingOutputStream() throws IOException {
+		Random rand = new Random(13579);
+		byte[] bytes = new byte[100000];
+		rand.nextBytes(bytes);
+		for (boolean lineBreaks : new boolean[] { true, false }) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Base64EncodingOutputStream encoder = new Base64EncodingOutputStream(out, lineBreaks);
+			int off = 0;
+			while (off < bytes.length) {
+				int len = Math.min(rand.nextInt(10000), bytes.length - off);
+				if (len == 1) {
+					encoder.write(bytes[off]);
+				} else {
+					encoder.write(bytes, off, len);
+				}
+				off += len;
+			}
+			encoder.close();
+			assertTrue(byteArraysEqual(Base64.encode(bytes, lineBreaks), out.toByteArray()));
+		}
+	}
+
+	public void testEncodingOutputStreamFinish() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Base64EncodingOutputStream encoder = new Base64EncodingOutputStream(out);
+		encoder.write('h');
+		encoder.flush();
+		assertEquals("", out.toString("ASCII"));
+		encoder.finish();
+		assertEquals("aA==\n", out.toString("ASCII"));
+		try {
+			encoder.write('h');
+			fail("Expected IOException");
+		} catch (IOException x) {
+			// expected
+		}
+	}
+
+	public void testDecodingInputStream() throws IOException {
+		Random rand = new Random(97531);
+		byte[] bytes = new byte[100000];
+		rand.nextBytes(bytes);
+		Base64DecodingInputStream in = new Base64DecodingInputStream(new ByteArrayInputStream(Base64.encode(bytes, true)), true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(in.read());
+		assertEquals(9, in.skip(9));
+		out.write(bytes, 1, 9);
+		byte[] buffer = new byte[777];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		assertEquals(-1, in.read());
+		assertTrue(byteArraysEqual(bytes, out.toByteArray()));
+
+		in = new Base64DecodingInputStream(new ByteArrayInputStream("Y29i*".getBytes("ASCII")), true);
+		try {
+			while (in.read() != -1) {
+				// keep reading
+			}
+			fail("Expected Base64DecodingException");
+		} catch (Base64DecodingException x) {
+			assertEquals('*', x.getChar());
+		}
+	}
+
+	public void testParallel() throws IOException {
+		Random rand = new Random(1122334455);
+		for (int length : new int[] { 0, 1, 2, 3, 57, 1 << 20, Base64Parallel.ENCODE_CHUNK_SIZE * 3 + 1000 }) {
+			byte[] bytes = new byte[length];
+			rand.nextBytes(bytes);
+			for (boolean lineBreaks : new boolean[] { true, false }) {
+				byte[] encoded = Base64.encode(bytes, lineBreaks);
+				assertTrue(byteArraysEqual(encoded, Base64.encodeParallel(bytes, lineBreaks)));
+				assertTrue(byteArraysEqual(bytes, Base64.decodeParallel(encoded, true)));
+			}
+		}
+		// Mostly white space so that groups straddle decoding chunks
+		StringBuilder sb = new StringBuilder();
+		byte[] bytes = new byte[5000];
+		rand.nextBytes(bytes);
+		String encoded = Base64.encodeToString(bytes, false);
+		for (int i = 0; i < encoded.length(); i++) {
+			sb.append(encoded.charAt(i));
+			for (int j = rand.nextInt(1000); j > 0; j--) {
+				sb.append(' ');
+			}
+		}
+		byte[] spaced = sb.toString().getBytes("ASCII");
+		assertTrue(spaced.length > Base64Parallel.DECODE_CHUNK_SIZE * 2);
+		assertTrue(byteArraysEqual(bytes, Base64.decodeParallel(spaced, true)));
+	}
+
+	public void testParallelExceptions() throws Base64DecodingException {
+		byte[] bytes = new byte[Base64Parallel.DECODE_CHUNK_SIZE * 2];
+		java.util.Arrays.fill(bytes, (byte) 'A');
+		bytes[Base64Parallel.DECODE_CHUNK_SIZE + 5] = '=';
+		bytes[Base64Parallel.DECODE_CHUNK_SIZE + 7] = '*';
+		try {
+			Base64.decodeParallel(bytes, true);
+			fail("Expected Base64DecodingException");
+		} catch (Base64DecodingException x) {
+			assertEquals('A', x.getChar());
+		}
+		bytes[Base64Parallel.DECODE_CHUNK_SIZE + 5] = 'A';
+		try {
+			Base64.decodeParallel(bytes, true);
+			fail("Expected Base64DecodingException");
+		} catch (Base64DecodingException x) {
+			assertEquals('*', x.getChar());
+		}
+		assertEquals((bytes.length - 1) / 4 * 3 + 2, Base64.decodeParallel(bytes, false).length);
+	}
+
+	public void testParallelFiles() throws IOException {
+		Random rand = new Random(5544332211L);
+		byte[] bytes = new byte[Base64Parallel.ENCODE_CHUNK_SIZE * 2 + 12345];
+		rand.nextBytes(bytes);
+		File file = File.createTempFile("Base64Test", null);
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(bytes);
+			out.close();
+			Base64.encodeParallel(file, file, true);
+			assertTrue(byteArraysEqual(Base64.encode(bytes, true), readFile(file)));
+			Base64.decodeParallel(file, file, true);
+			assertTrue(byteArraysEqual(bytes, readFile(file)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static byte[] readFile(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testByteBuffers() throws IOException {
+		Random rand = new Random(192837465);
+		byte[] bytes = new byte[1000];
+		rand.nextBytes(bytes);
+		for (boolean direct : new boolean[] { true, false }) {
+			for (boolean lineBreaks : new boolean[] { true, false }) {
+				byte[] expected = Base64.encode(bytes, lineBreaks);
+				ByteBuffer src = ByteBuffer.wrap(bytes);
+				ByteBuffer encoded = direct ? ByteBuffer.allocateDirect(expected.length) : ByteBuffer.allocate(expected.length);
+				// Encode in pieces by limiting the room in the destination
+				while (src.hasRemaining()) {
+					encoded.limit(Math.min(encoded.position() + 200, encoded.capacity()));
+					assertTrue(Base64.encode(src, encoded, lineBreaks) > 0);
+				}
+				assertEquals(expected.length, encoded.position());
+				encoded.flip();
+				byte[] actual = new byte[expected.length];
+				encoded.duplicate().get(actual);
+				assertTrue(byteArraysEqual(expected, actual));
+
+				ByteBuffer decoded = direct ? ByteBuffer.allocateDirect(bytes.length) : ByteBuffer.allocate(bytes.length);
+				while (encoded.hasRemaining()) {
+					decoded.limit(Math.min(decoded.position() + 100, decoded.capacity()));
+					assertTrue(Base64.decode(encoded, decoded, true) > 0);
+				}
+				assertEquals(bytes.length, decoded.position());
+				decoded.flip();
+				actual = new byte[bytes.length];
+				decoded.get(actual);
+				assertTrue(byteArraysEqual(bytes, actual));
+			}
+		}
+	}
+
+	public void testSmallByteBuffer() throws IOException {
+		Random rand = new Random(564738291);
+		byte[] bytes = new byte[1000];
+		rand.nextBytes(bytes);
+		for (boolean lineBreaks : new boolean[] { true, false }) {
+			ByteBuffer src = ByteBuffer.wrap(bytes);
+			ByteBuffer dst = ByteBuffer.allocate(64);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			while (src.hasRemaining()) {
+				assertTrue(Base64.encode(src, dst, lineBreaks) > 0);
+				out.write(dst.array(), 0, dst.position());
+				dst.clear();
+			}
+			byte[] encoded = out.toByteArray();
+			if (lineBreaks) {
+				int lineLength = 0;
+				for (byte b : encoded) {
+					lineLength = (b == '\n') ? 0 : lineLength + 1;
+					assertTrue(lineLength <= 76);
+				}
+			} else {
+				assertTrue(byteArraysEqual(Base64.encode(bytes, false), encoded));
+			}
+			assertTrue(byteArraysEqual(bytes, Base64.decodeToBytes(encoded)));
+		}
+		// Too little room to make progress
+		assertEquals(0, Base64.encode(ByteBuffer.wrap(bytes), ByteBuffer.allocate(4), true));
+		assertEquals(4, Base64.encode(ByteBuffer.wrap(bytes), ByteBuffer.allocate(4), false));
+	}
+
+	public void testCharBuffer() throws IOException {
+		ByteBuffer dst = ByteBuffer.allocate(4);
+		CharBuffer src = CharBuffer.wrap(" Y29i\n dGU=\n");
+		assertEquals(3, Base64.decode(src, dst, true));
+		assertEquals(5, src.position());
+		assertEquals(0, Base64.decode(src, dst, true));
+		dst = ByteBuffer.allocate(2);
+		assertEquals(2, Base64.decode(src, dst, true));
+		assertFalse(src.hasRemaining());
+		assertEquals('t', dst.get(0));
+		assertEquals('e', dst.get(1));
+		try {
+			Base64.decode(CharBuffer.wrap("Y2\u4e2d9i"), ByteBuffer.allocate(3), true);
+			fail("Expected Base64DecodingException");
+		} catch (Base64DecodingException x) {
+			assertEquals('\u4e2d', x.getChar());
+		}
+		dst = ByteBuffer.allocate(3);
+		assertEquals(3, Base64.decode(CharBuffer.wrap("Y2\u4e2d9i"), dst, false));
+	}
+
+	public void testDecodeInPieces() throws IOException {
+		ByteBuffer dst = ByteBuffer.allocate(3);
+		CharBuffer src = CharBuffer.wrap("QU");
+		assertEquals(0, Base64.decode(src, dst, true, false));
+		assertEquals(0, src.position());
+		src = CharBuffer.wrap(src.toString() + "JD");
+		assertEquals(3, Base64.decode(src, dst, true, true));
+		assertEquals("ABC", new String(dst.array(), "ASCII"));
+
+		Random rand = new Random(918273645);
+		for (int length : new int[] { 100, 101, 102 }) {
+			byte[] bytes = new byte[length];
+			rand.nextBytes(bytes);
+			String encoded = Base64.encodeToString(bytes, true);
+			for (int split = 0; split <= encoded.length(); split++) {
+				dst = ByteBuffer.allocate(length);
+				src = CharBuffer.wrap(encoded.substring(0, split));
+				Base64.decode(src, dst, true, false);
+				src = CharBuffer.wrap(src.toString() + encoded.substring(split));
+				Base64.decode(src, dst, true, true);
+				assertFalse(src.hasRemaining());
+				assertTrue(byteArraysEqual(bytes, dst.array()));
+
+				dst = ByteBuffer.allocate(length);
+				ByteBuffer first = ByteBuffer.wrap(encoded.substring(0, split).getBytes("ASCII"));
+				Base64.decode(first, dst, true, false);
+				ByteBuffer rest = ByteBuffer.allocate(encoded.length());
+				rest.put(first);
+				rest.put(encoded.substring(split).getBytes("ASCII"));
+				rest.flip();
+				Base64.decode(rest, dst, true, true);
+				assertFalse(rest.hasRemaining());
+				assertTrue(byteArraysEqual(bytes, dst.array()));
+			}
+		}
+	}
+
+	public void testIsBase64Long() {
+		byte[] encoded = Base64.encode(new byte[3000], true);
+		assertTrue(Base64.isBase64(encoded));
+		char[] chars = new String(encoded).toCharArray();
+		assertTrue(Base64.isBase64(chars));
+		encoded[2000] = '*';
+		assertFalse(Base64.isBase64(encoded));
+		encoded[2000] = '=';
+		assertFalse(Base64.isBase64(encoded));
+		chars[2000] = '\u4e2d';
+		assertFalse(Base64.isBase64(chars));
+		chars[2000] = '=';
+		assertFalse(Base64.isBase64(chars));
+		assertBase64(Base64.encodeToString(new byte[2999], false));
+		assertNotBase64(Base64.encodeToString(new byte[2999], false) + "A");
+	}
+
+	public void testIsBase64File() throws IOException {
+		File file = File.createTempFile("Base64Test", null);
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			out.close();
+			assertFalse(Base64.isBase64(file));
+			out = new FileOutputStream(file);
+			out.write(Base64.encode(new byte[100000], true));
+			out.close();
+			assertTrue(Base64.isBase64(file));
+			out = new FileOutputStream(file, true);
+			out.write('!');
+			out.close();
+			assertFalse(Base64.isBase64(file));
+			// Large enough to be memory mapped
+			out = new FileOutputStream(file);
+			out.write(Base64.encode(new byte[13000000], true));
+			out.close();
+			assertTrue(file.length() > 0x1000000);
+			assertTrue(Base64.isBase64(file));
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			raf.seek(file.length() - 100);
+			raf.write('*');
+			raf.close();
+			assertFalse(Base64.isBase64(file));
+		} finally {
+			file.delete();
+		}
+	}
+
 	public void testIsBase64Blank() {
 		assertNotBase64("");
 	}
@@ -124,6 +501,15 @@ public class Base64Test extends TestCase {
 		}
 	}
 
+	private void assertUnexpectedChar(String s, char c) throws IOException {
+		try {
+			Base64.decode(new ByteArrayInputStream(s.getBytes("ISO-8859-1")), new ByteArrayOutputStream());
+			fail("Expected Base64DecodingException");
+		} catch (Base64DecodingException x){
+			assertEquals(c, x.getChar());
+		}
+	}
+
 	private void assertBase64Equal(String encoded, byte[] decoded) {
 		String enc = Base64.encodeToString(decoded);
 		assertEquals(encoded, enc);
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.TestCase;
+
+import com.Ostermiller.util.CSVColumnTable.ColumnType;
+
+/**
+ * Tests for loading comma separated values into typed columns.
+ */
+public class CSVColumnTableTest extends TestCase {
+
+	private static CSVColumnTable load(String csv, int sampleSize) throws IOException {
+		DateTimeParse dateTimeParse = new DateTimeParse(Locale.US);
+		dateTimeParse.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return CSVColumnTable.load(new CSVParser(new StringReader(csv)), true, sampleSize, dateTimeParse);
+	}
+
+	public void testInferredTypes() throws IOException {
+		CSVColumnTable table = load(
+			"id,big,price,flag,when,name\n" +
+			"1,10000000000,1.5,true,2010-03-04,apple\n" +
+			"2,-3,2,FALSE,1999-12-31,pear\n" +
+			"3,4,-0.25,false,2000-01-01,apple\n",
+			100
+		);
+		assertEquals(3, table.getRowCount());
+		assertEquals(6, table.getColumnCount());
+		assertEquals(ColumnType.INT, table.getColumnType(0));
+		assertEquals(ColumnType.LONG, table.getColumnType(1));
+		assertEquals(ColumnType.DOUBLE, table.getColumnType(2));
+		assertEquals(ColumnType.BOOLEAN, table.getColumnType(3));
+		assertEquals(ColumnType.DATE, table.getColumnType(4));
+		assertEquals(ColumnType.STRING, table.getColumnType(5));
+		assertEquals(2, table.getInt(1, 0));
+		assertEquals(10000000000L, table.getLong(0, 1));
+		assertEquals(-0.25, table.getDouble(2, 2), 0);
+		assertEquals(3.0, table.getDouble(2, 0), 0);
+		assertFalse(table.getBoolean(1, 3));
+		assertTrue(table.getBoolean(0, 3));
+		assertEquals(new DateTimeParse(Locale.US).setTimeZone(TimeZone.getTimeZone("UTC")).parse("1999-12-31"), table.getDate(1, 4));
+		assertEquals("pear", table.getString(1, 5));
+		assertEquals("1", table.getString(0, 0));
+		assertEquals(5, table.getColumnIndex("name"));
+		assertEquals("price", table.getColumnName(2));
+		assertEquals(-1, table.getColumnIndex("missing"));
+	}
+
+	public void testDictionary() throws IOException {
+		CSVColumnTable table = load("name\nb\na\nb\nb\n\"\"\n", 100);
+		String[] dictionary = table.getStringDictionary(0);
+		int[] codes = table.getStringCodes(0);
+		assertEquals(2, dictionary.length);
+		assertEquals(5, codes.length);
+		assertEquals(codes[0], codes[2]);
+		assertEquals("a", dictionary[codes[1]]);
+		assertEquals(-1, codes[4]);
+		assertTrue(table.isNull(4, 0));
+		assertNull(table.getString(4, 0));
+	}
+
+	public void testNulls() throws IOException {
+		CSVColumnTable table = load("a,b,c\n1,,3\n4\n", 100);
+		assertEquals(3, table.getColumnCount());
+		assertFalse(table.isNull(0, 0));
+		assertTrue(table.isNull(0, 1));
+		assertTrue(table.isNull(1, 1));
+		assertTrue(table.isNull(1, 2));
+		assertEquals(ColumnType.INT, table.getColumnType(2));
+		assertEquals(ColumnType.STRING, table.getColumnType(1));
+	}
+
+	public void testWidenAfterSample() throws IOException {
+		CSVColumnTable table = load("a,b,c\n1,1,true\n2,2,false\n3000000000,x,true\n4.5,3,true\n", 2);
+		assertEquals(ColumnType.DOUBLE, table.getColumnType(0));
+		assertEquals(1.0, table.getDouble(0, 0), 0);
+		assertEquals(3000000000.0, table.getDouble(2, 0), 0);
+		assertEquals(4.5, table.getDouble(3, 0), 0);
+		assertEquals(ColumnType.STRING, table.getColumnType(1));
+		assertEquals("1", table.getString(0, 1));
+		assertEquals("x", table.getString(2, 1));
+		assertEquals("3", table.getString(3, 1));
+		assertEquals(ColumnType.BOOLEAN, table.getColumnType(2));
+		assertEquals(4, table.getDoubleColumn(0).length);
+	}
+
+	public void testWrongType() throws IOException {
+		CSVColumnTable table = load("a\nx\n", 100);
+		try {
+			table.getInt(0, 0);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException x){
+			// expected
+		}
+	}
+
+	public void testManyRows() throws IOException {
+		StringBuilder sb = new StringBuilder("n,s\n");
+		for (int i=0; i<1000; i++){
+			sb.append(i).append(",v").append(i % 7).append('\n');
+		}
+		CSVColumnTable table = load(sb.toString(), 10);
+		assertEquals(1000, table.getRowCount());
+		assertEquals(1000, table.getIntColumn(0).length);
+		assertEquals(999, table.getInt(999, 0));
+		assertEquals(7, table.getStringDictionary(1).length);
+		assertEquals("v5", table.getString(999, 1));
+	}
+
+	public void testLateColumn() throws IOException {
+		StringBuilder sb = new StringBuilder("n\n");
+		for (int i=0; i<300; i++){
+			sb.append(i).append('\n');
+		}
+		sb.append("300,late\n");
+		sb.append("301,later\n");
+		CSVColumnTable table = load(sb.toString(), 10);
+		assertEquals(302, table.getRowCount());
+		assertEquals(2, table.getColumnCount());
+		assertTrue(table.isNull(0, 1));
+		assertNull(table.getString(0, 1));
+		assertTrue(table.isNull(299, 1));
+		assertEquals("late", table.getString(300, 1));
+		assertEquals("later", table.getString(301, 1));
+		int[] codes = table.getStringCodes(1);
+		assertEquals(302, codes.length);
+		assertEquals(-1, codes[0]);
+		assertEquals(-1, codes[299]);
+		assertEquals(301, table.getInt(301, 0));
+	}
+}
@@ -140,6 +140,39 @@ public class CSVTest extends TestCase {
 		compare(output, getAllValues(csvParser));
 	}
 
+	public void testCharArrayInPlace(){
+		char[] input = "xx1,\"two\"\nthree,four\nyy".toCharArray();
+		String[][] output = new String[][]{{"1", "two"},{"three", "four"}};
+		CSVParser csvParser = new CSVParser(input, 2, input.length - 5);
+		compare(output, getAllValues(csvParser));
+		assertEquals("xx1,\"two\"\nthree,four\nyy", new String(input));
+	}
+
+	public void testSmallBuffer(){
+		String input = "a long first value,\"a quoted value\"\nthird value,fourth";
+		String[][] output = new String[][]{{"a long first value", "a quoted value"},{"third value", "fourth"}};
+		CSVParser csvParser = new CSVParser(new StringReader(input));
+		csvParser.setBufferSize(1);
+		compare(output, getAllValues(csvParser));
+	}
+
+	public void testReset(){
+		CSVParser csvParser = new CSVParser(new StringReader("a,b\nc"));
+		csvParser.setCommentStart("#");
+		compare(new String[][]{{"a", "b"},{"c"}}, getAllValues(csvParser));
+		csvParser.reset(new StringReader("#comment\nd,e"));
+		compare(new String[][]{{"d", "e"}}, getAllValues(csvParser));
+		assertEquals(2, csvParser.getLastLineNumber());
+	}
+
+	public void testStaticParseDoesNotKeepSettings() throws BadDelimiterException {
+		compare(new String[][]{{"a", "b\tc"}}, CSVParser.parse("a,b\tc"));
+		compare(new String[][]{{"a,b", "c"}}, CSVParser.parse("a,b\tc", '\t'));
+		compare(new String[][]{{"a", "b\tc"}}, CSVParser.parse("a,b\tc"));
+		compare(new String[][]{{"\n"}}, CSVParser.parse("#x\n\"\\n\"", "n", "\n", "#"));
+		compare(new String[][]{{"#x"},{"n"}}, CSVParser.parse("#x\n\"\\n\""));
+	}
+
 	private static String[][] getAllValues(CSVParser csvParser){
 		try {
 			return csvParser.getAllValues();
@@ -16,7 +16,18 @@
  */
 package com.Ostermiller.util;
 
-import java.io.UnsupportedEncodingException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
 import junit.framework.TestCase;
 
 /**
@@ -63,4 +74,392 @@ public class MD5Test extends TestCase {
 	public void testLonger(){
 		runTest("57edf4a22be3c955ac49da2e2107b67a", getBytes("12345678901234567890123456789012345678901234567890123456789012345678901234567890"));
 	}
+
+	private static String toHex(byte[] b){
+		StringBuilder sb = new StringBuilder();
+		for (byte element: b){
+			sb.append(Integer.toHexString((element & 0xff) | 0x100).substring(1));
+		}
+		return sb.toString();
+	}
+
+	private static byte[] randomBytes(int length){
+		byte[] b = new byte[length];
+		new Random(length).nextBytes(b);
+		return b;
+	}
+
+	private static byte[] messageDigest(byte[] b, int offset, int length){
+		try {
+			MessageDigest md = MessageDigest.getInstance("MD5");
+			md.update(b, offset, length);
+			return md.digest();
+		} catch (NoSuchAlgorithmException nsax){
+			throw new RuntimeException(nsax);
+		}
+	}
+
+	public void testLengths(){
+		for (int length = 0; length < 300; length++){
+			byte[] b = randomBytes(length);
+			assertTrue("length " + length, Arrays.equals(messageDigest(b, 0, length), MD5.getHash(b)));
+		}
+	}
+
+	public void testOffsets(){
+		byte[] b = randomBytes(1000);
+		for (int offset = 0; offset < 130; offset += 7){
+			for (int chunk = 1; chunk < 200; chunk += 13){
+				MD5 md5 = new MD5();
+				for (int i = offset; i < b.length; i += chunk){
+					md5.update(b, i, Math.min(chunk, b.length - i));
+				}
+				assertTrue("offset " + offset + " chunk " + chunk, Arrays.equals(messageDigest(b, offset, b.length - offset), md5.getHash()));
+			}
+		}
+	}
+
+	public void testSingleBytes(){
+		byte[] b = randomBytes(200);
+		MD5 md5 = new MD5();
+		for (int i = 0; i < b.length; i++){
+			md5.update(b[i]);
+			assertTrue("length " + (i + 1), Arrays.equals(messageDigest(b, 0, i + 1), md5.getHash()));
+		}
+	}
+
+	public void testByteBuffers(){
+		byte[] b = randomBytes(100000);
+		byte[] expected = messageDigest(b, 10, b.length - 20);
+		ByteBuffer heap = ByteBuffer.wrap(b, 10, b.length - 20);
+		ByteBuffer direct = ByteBuffer.allocateDirect(b.length);
+		direct.put(b).position(10).limit(b.length - 10);
+		ByteBuffer readOnly = heap.duplicate().asReadOnlyBuffer();
+		ByteBuffer slice = ByteBuffer.wrap(b).position(5).slice();
+		slice.position(5).limit(b.length - 15);
+		for (ByteBuffer buffer: new ByteBuffer[]{heap, direct, readOnly, slice}){
+			MD5 md5 = new MD5();
+			md5.update(buffer);
+			assertEquals(buffer.limit(), buffer.position());
+			assertTrue(Arrays.equals(expected, md5.getHash()));
+		}
+	}
+
+	private static void assertFileHash(int length) throws IOException {
+		byte[] b = randomBytes(length);
+		File file = File.createTempFile("MD5Test", ".dat");
+		try {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(b);
+			} finally {
+				out.close();
+			}
+			assertTrue("length " + length, Arrays.equals(messageDigest(b, 0, length), MD5.getHash(file)));
+			assertEquals(MD5.getHashString(b), MD5.getHashString(file.toPath()));
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testFiles() throws IOException {
+		assertFileHash(0);
+		assertFileHash(1000);
+		// larger than a memory mapped region
+		assertFileHash(0x1000000 + 1000);
+	}
+
+	private static File writeFile(File file, int length) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(randomBytes(length));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void delete(File file){
+		File[] children = file.listFiles();
+		if (children != null){
+			for (File child: children){
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static class CollectingListener implements MD5FileListener {
+		Map<File,String> hashes = new HashMap<File,String>();
+		List<File> failed = new ArrayList<File>();
+		public void hashed(File file, byte[] hash){
+			assertFalse(hashes.containsKey(file));
+			try {
+				assertTrue(Arrays.equals(MD5.getHash(file), hash));
+			} catch (IOException x){
+				throw new RuntimeException(x);
+			}
+			hashes.put(file, toHex(hash));
+		}
+		public void failed(File file, IOException x){
+			failed.add(file);
+		}
+	}
+
+	public void testGetHashes() throws Exception {
+		File dir = java.nio.file.Files.createTempDirectory("MD5Test").toFile();
+		try {
+			File sub = new File(dir, "sub");
+			sub.mkdir();
+			List<File> files = new ArrayList<File>();
+			for (int i = 0; i < 20; i++){
+				files.add(writeFile(new File(i % 2 == 0 ? dir : sub, "f" + i), i * 10007));
+			}
+			File missing = new File(dir, "missing");
+			for (int threads = 1; threads <= 4; threads++){
+				List<File> withMissing = new ArrayList<File>(files);
+				withMissing.add(missing);
+				CollectingListener listener = new CollectingListener();
+				MD5.getHashes(withMissing, threads, listener);
+				assertEquals(files.size(), listener.hashes.size());
+				assertEquals(1, listener.failed.size());
+				assertEquals(missing, listener.failed.get(0));
+
+				listener = new CollectingListener();
+				MD5.getHashesRecursive(dir, threads, listener);
+				assertEquals(files.size(), listener.hashes.size());
+				assertTrue(listener.hashes.keySet().containsAll(files));
+				assertEquals(0, listener.failed.size());
+			}
+			CollectingListener listener = new CollectingListener();
+			MD5.getHashesRecursive(missing, listener);
+			assertEquals(0, listener.hashes.size());
+			assertEquals(1, listener.failed.size());
+		} finally {
+			delete(dir);
+		}
+	}
+
+	public void testGetHashesListenerException() throws Exception {
+		File dir = java.nio.file.Files.createTempDirectory("MD5Test").toFile();
+		try {
+			List<File> files = new ArrayList<File>();
+			for (int i = 0; i < 10; i++){
+				files.add(writeFile(new File(dir, "f" + i), 1000));
+			}
+			try {
+				MD5.getHashes(files, 3, new MD5FileListener(){
+					public void hashed(File file, byte[] hash){
+						throw new IllegalStateException("stop");
+					}
+					public void failed(File file, IOException x){
+						// not expected
+					}
+				});
+				fail("Expected exception");
+			} catch (IllegalStateException x){
+				assertEquals("stop", x.getMessage());
+			}
+			try {
+				MD5.getHashes(files, 0, new CollectingListener());
+				fail("Expected exception");
+			} catch (IllegalArgumentException x){
+				// expected
+			}
+		} finally {
+			delete(dir);
+		}
+	}
+
+	private static String chunkedHash(byte[] b, int chunkSize){
+		ByteArrayOutputStream hashes = new ByteArrayOutputStream();
+		int offset = 0;
+		do {
+			int length = Math.min(chunkSize, b.length - offset);
+			hashes.write(messageDigest(b, offset, length), 0, 16);
+			offset += length;
+		} while (offset < b.length);
+		return MD5.getHashString(hashes.toByteArray()) + "-" + (hashes.size() / 16);
+	}
+
+	public void testChunkedHash() throws IOException {
+		File file = File.createTempFile("MD5Test", ".dat");
+		try {
+			int[][] cases = {
+				{0, 100},
+				{1, 100},
+				{100, 100},
+				{1000, 100},
+				{1001, 100},
+				{1000, 1},
+				{1000, 5000},
+				// more chunks than are hashed by one task
+				{0x1100000 + 10, 0x100000},
+			};
+			for (int[] c: cases){
+				writeFile(file, c[0]);
+				byte[] b = randomBytes(c[0]);
+				String expected = chunkedHash(b, c[1]);
+				assertEquals("length " + c[0] + " chunk " + c[1], expected, MD5.getChunkedHashString(file, c[1]));
+				assertEquals(expected.substring(0, 32), toHex(MD5.getChunkedHash(file.toPath(), c[1])));
+			}
+			try {
+				MD5.getChunkedHash(file, 0);
+				fail("Expected exception");
+			} catch (IllegalArgumentException x){
+				// expected
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testStreams() throws IOException {
+		byte[] b = randomBytes(100000);
+		String expected = MD5.getHashString(b);
+		MD5InputStream in = new MD5InputStream(new ByteArrayInputStream(b));
+		assertFalse(in.markSupported());
+		assertEquals(b[0] & 0xff, in.read());
+		assertEquals(50000, in.skip(50000));
+		assertEquals(1000, in.read(new byte[1000]));
+		assertEquals(b.length - 51001, in.skip(b.length));
+		assertEquals(-1, in.read());
+		assertEquals(expected, in.getHashString());
+
+		MD5OutputStream out = new MD5OutputStream(new ByteArrayOutputStream());
+		out.write(b[0]);
+		out.write(b, 1, 50000);
+		for (int i = 50001; i < b.length; i++){
+			out.write(b[i]);
+		}
+		assertEquals(expected, out.getHashString());
+	}
+
+	public void testChannels() throws IOException {
+		byte[] b = randomBytes(100000);
+		String expected = MD5.getHashString(b);
+		for (boolean direct: new boolean[]{false, true}){
+			MD5ReadableByteChannel in = new MD5ReadableByteChannel(Channels.newChannel(new ByteArrayInputStream(b)));
+			ByteArrayOutputStream copy = new ByteArrayOutputStream();
+			MD5WritableByteChannel out = new MD5WritableByteChannel(Channels.newChannel(copy));
+			ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(3000) : ByteBuffer.allocate(3000);
+			// leave room before the position to check that only the read bytes are hashed
+			buffer.position(7);
+			while (in.read(buffer) != -1){
+				buffer.flip();
+				buffer.position(7);
+				while (buffer.hasRemaining()){
+					out.write(buffer);
+				}
+				buffer.clear();
+				buffer.position(7);
+			}
+			assertTrue(in.isOpen());
+			in.close();
+			out.close();
+			assertFalse(in.isOpen());
+			assertFalse(out.isOpen());
+			assertEquals(expected, in.getHashString());
+			assertEquals(expected, out.getHashString());
+			assertTrue(Arrays.equals(b, copy.toByteArray()));
+		}
+	}
+
+	public void testMultiDigestStreams() throws Exception {
+		byte[] b = randomBytes(100000);
+		MessageDigest expectedSha = MessageDigest.getInstance("SHA-256");
+		byte[] sha = expectedSha.digest(b);
+		CRC32 expectedCrc = new CRC32();
+		expectedCrc.update(b, 0, b.length);
+		String md5 = MD5.getHashString(b);
+
+		MD5 inMd5 = new MD5();
+		MessageDigest inSha = MessageDigest.getInstance("SHA-256");
+		CRC32 inCrc = new CRC32();
+		MultiDigestInputStream in = new MultiDigestInputStream(new ByteArrayInputStream(b)).addDigest(inMd5).addDigest(inSha).addDigest(inCrc);
+		assertEquals(b[0] & 0xff, in.read());
+		assertEquals(1000, in.skip(1000));
+		byte[] buffer = new byte[50000];
+		assertEquals(buffer.length, in.read(buffer));
+		while (in.read(buffer) != -1);
+		assertEquals(md5, inMd5.getHashString());
+		assertTrue(Arrays.equals(sha, inSha.digest()));
+		assertEquals(expectedCrc.getValue(), inCrc.getValue());
+
+		MD5 outMd5 = new MD5();
+		MessageDigest outSha = MessageDigest.getInstance("SHA-256");
+		CRC32 outCrc = new CRC32();
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		MultiDigestOutputStream out = new MultiDigestOutputStream(copy).addDigest(outMd5).addDigest(outSha).addDigest(outCrc);
+		out.write(b[0]);
+		out.write(b, 1, b.length - 1);
+		out.close();
+		assertEquals(md5, outMd5.getHashString());
+		assertTrue(Arrays.equals(sha, outSha.digest()));
+		assertEquals(expectedCrc.getValue(), outCrc.getValue());
+		assertTrue(Arrays.equals(b, copy.toByteArray()));
+	}
+
+	public void testState(){
+		byte[] b = randomBytes(300);
+		byte[] expected = messageDigest(b, 0, b.length);
+		for (int split = 0; split <= b.length; split += 7){
+			MD5 md5 = new MD5();
+			md5.update(b, 0, split);
+			// getting the hash should not change the state
+			md5.getHash();
+			byte[] state = md5.getState();
+			assertEquals(25 + split % 64, state.length);
+			MD5 resumed = new MD5(state);
+			assertEquals(split, resumed.getByteCount());
+			assertTrue(Arrays.equals(md5.getHash(), resumed.getHash()));
+			resumed.update(b, split, b.length - split);
+			assertTrue("split " + split, Arrays.equals(expected, resumed.getHash()));
+			md5.setState(state);
+			md5.update(b, split, b.length - split);
+			assertTrue("split " + split, Arrays.equals(expected, md5.getHash()));
+		}
+		byte[][] badStates = {
+			new byte[0],
+			new byte[25],
+			Arrays.copyOf(new MD5().getState(), 26),
+		};
+		for (byte[] badState: badStates){
+			try {
+				new MD5(badState);
+				fail("Expected exception");
+			} catch (IllegalArgumentException x){
+				// expected
+			}
+		}
+	}
+
+	public void testIncrementalFile() throws IOException {
+		File file = File.createTempFile("MD5Test", ".dat");
+		try {
+			byte[] b = randomBytes(100000);
+			byte[] state = null;
+			for (int length = 0; length <= b.length; length += 9999){
+				OutputStream out = new FileOutputStream(file);
+				try {
+					out.write(b, 0, length);
+				} finally {
+					out.close();
+				}
+				MD5 md5 = (state == null) ? new MD5() : new MD5(state);
+				md5.update(file, md5.getByteCount());
+				assertEquals(length, md5.getByteCount());
+				assertTrue(Arrays.equals(messageDigest(b, 0, length), md5.getHash()));
+				state = md5.getState();
+			}
+			try {
+				new MD5(state).update(file, b.length + 1);
+				fail("Expected exception");
+			} catch (IOException x){
+				// expected
+			}
+		} finally {
+			file.delete();
+		}
+	}
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2010 Stephen Ostermiller
+ * http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * See LICENSE.txt for details.
+ */
+package com.Ostermiller.util;
+
+import java.util.*;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+
+/**
+ * MultiStringMatcher regression test.
+ *
+ * @author Stephen Ostermiller http://ostermiller.org/contact.pl?regarding=Java+Utilities
+ * @since ostermillerutils 1.09.00
+ */
+public class MultiStringMatcherTest extends TestCase {
+
+	public void testClassic(){
+		MultiStringMatcher matcher = new MultiStringMatcher(new String[]{"he", "she", "his", "hers"});
+		assertEquals("[she@1-4, he@2-4, hers@2-6]", matcher.findAll("ushers").toString());
+		MultiStringMatcher.Match match = matcher.find("ushers");
+		assertEquals(1, match.getStart());
+		assertEquals(4, match.getEnd());
+		assertEquals(1, match.getTermIndex());
+		assertEquals("she", match.getTerm());
+		assertEquals("he@2-4", matcher.find("ushers", 2).toString());
+		assertNull(matcher.find("ushers", 3));
+		assertTrue(matcher.containsAny("ushers"));
+		assertFalse(matcher.containsAny("hasty"));
+		assertTrue(matcher.startsWithAny("hiss"));
+		assertFalse(matcher.startsWithAny("ahis"));
+		assertTrue(matcher.endsWithAny("ahis"));
+		assertFalse(matcher.endsWithAny("hiss"));
+		assertTrue(matcher.equalsAny("hers"));
+		assertFalse(matcher.equalsAny("her"));
+		assertFalse(matcher.equalsAny(""));
+	}
+
+	public void testIgnoreCase(){
+		MultiStringMatcher matcher = new MultiStringMatcher(new String[]{"Stra\u00dfe", "\u0130", "\ud801\udc00"}, true);
+		assertTrue(matcher.isIgnoreCase());
+		// Characters are compared one at a time, so sharp s doesn't match SS,
+		// but dotted capital I matches I
+		assertEquals("[\u0130@0-1, Stra\u00dfe@14-20]", matcher.findAll("In STRASSE or strA\u00dfE").toString());
+		// Dotted capital I folds to the same as i
+		assertTrue(matcher.equalsAny("i"));
+		// Deseret capital and small long i
+		assertTrue(matcher.containsAny("x\ud801\udc28x"));
+		assertFalse(new MultiStringMatcher(new String[]{"\ud801\udc00"}).containsAny("x\ud801\udc28x"));
+	}
+
+	public void testEmptyTerm(){
+		MultiStringMatcher matcher = new MultiStringMatcher(new String[]{"ab", ""});
+		assertTrue(matcher.containsAny("x"));
+		assertTrue(matcher.startsWithAny("x"));
+		assertTrue(matcher.endsWithAny("x"));
+		assertTrue(matcher.equalsAny(""));
+		assertFalse(matcher.equalsAny("x"));
+		assertEquals("[@0-0, @1-1, ab@0-2, @2-2]", matcher.findAll("ab").toString());
+		assertEquals("@1-1", matcher.find("ab", 1).toString());
+	}
+
+	public void testArguments(){
+		try {
+			new MultiStringMatcher(new String[0]);
+			fail("Expected exception");
+		} catch (IllegalArgumentException x){
+			// expected
+		}
+		try {
+			new MultiStringMatcher(new String[]{"a", null});
+			fail("Expected exception");
+		} catch (NullPointerException x){
+			// expected
+		}
+		String[] terms = new String[]{"a", "a", "b"};
+		MultiStringMatcher matcher = new MultiStringMatcher(terms);
+		terms[0] = "c";
+		assertEquals("[a, a, b]", Arrays.asList(matcher.getTerms()).toString());
+		// The first of duplicate terms is reported
+		assertEquals("[a@0-1, b@1-2]", matcher.findAll("ab").toString());
+		assertEquals(0, matcher.find("ab").getTermIndex());
+		try {
+			matcher.find("ab", 3);
+			fail("Expected exception");
+		} catch (IndexOutOfBoundsException x){
+			// expected
+		}
+	}
+
+	/**
+	 * Characters from which random terms and strings are made, including
+	 * some that are tricky to compare without case.
+	 */
+	private static final String[] ALPHABET = {"a", "b", "A", "B", "c", "\u00df", "\u0130", "i", "I", "\u0131", "\u03a3", "\u03c2", "\u03c3", "\ud801\udc00", "\ud801\udc28"};
+
+	private static String randomString(Random random, int maxLength){
+		StringBuilder sb = new StringBuilder();
+		int length = random.nextInt(maxLength + 1);
+		for (int i = 0; i < length; i++){
+			sb.append(ALPHABET[random.nextInt(random.nextBoolean() ? 4 : ALPHABET.length)]);
+		}
+		return sb.toString();
+	}
+
+	public void testAgainstRegularExpressions(){
+		Random random = new Random(49);
+		for (int round = 0; round < 300; round++){
+			String[] terms = new String[1 + random.nextInt(round < 150 ? 4 : 40)];
+			for (int i = 0; i < terms.length; i++){
+				terms[i] = randomString(random, 4);
+			}
+			for (boolean ignoreCase: new boolean[]{false, true}){
+				MultiStringMatcher matcher = new MultiStringMatcher(terms, ignoreCase);
+				Pattern contains = ignoreCase ? StringHelper.getContainsAnyIgnoreCasePattern(terms) : StringHelper.getContainsAnyPattern(terms);
+				Pattern equals = ignoreCase ? StringHelper.getEqualsAnyIgnoreCasePattern(terms) : StringHelper.getEqualsAnyPattern(terms);
+				Pattern startsWith = ignoreCase ? StringHelper.getStartsWithAnyIgnoreCasePattern(terms) : StringHelper.getStartsWithAnyPattern(terms);
+				Pattern endsWith = ignoreCase ? StringHelper.getEndsWithAnyIgnoreCasePattern(terms) : StringHelper.getEndsWithAnyPattern(terms);
+				for (int i = 0; i < 20; i++){
+					String s = (i < 5) ? terms[random.nextInt(terms.length)] : randomString(random, 12);
+					String message = Arrays.asList(terms) + " " + ignoreCase + " " + s;
+					assertEquals(message, contains.matcher(s).matches(), matcher.containsAny(s));
+					assertEquals(message, equals.matcher(s).matches(), matcher.equalsAny(s));
+					assertEquals(message, startsWith.matcher(s).matches(), matcher.startsWithAny(s));
+					assertEquals(message, endsWith.matcher(s).matches(), matcher.endsWithAny(s));
+					assertEquals(message, bruteForceFindAll(terms, ignoreCase, s), matcher.findAll(s).toString());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find all matches one term and one position at a time.
+	 */
+	private static String bruteForceFindAll(String[] terms, boolean ignoreCase, String s){
+		Pattern[] patterns = new Pattern[terms.length];
+		for (int t = 0; t < terms.length; t++){
+			patterns[t] = Pattern.compile(Pattern.quote(terms[t]), ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+		}
+		// Longest first, then in term order
+		Integer[] order = new Integer[terms.length];
+		for (int t = 0; t < terms.length; t++){
+			order[t] = Integer.valueOf(t);
+		}
+		final String[] sortTerms = terms;
+		Arrays.sort(order, new Comparator<Integer>(){
+			public int compare(Integer a, Integer b){
+				int byLength = sortTerms[b.intValue()].length() - sortTerms[a.intValue()].length();
+				return (byLength != 0) ? byLength : a.intValue() - b.intValue();
+			}
+		});
+		List<String> matches = new ArrayList<String>();
+		for (int end = 0; end <= s.length(); end++){
+			Set<String> matched = new HashSet<String>();
+			for (Integer t: order){
+				String term = terms[t.intValue()];
+				int start = end - term.length();
+				if (start < 0) continue;
+				java.util.regex.Matcher m = patterns[t.intValue()].matcher(s).region(start, end);
+				// Duplicate terms (after folding case) are reported once
+				if (m.matches() && matched.add(ignoreCase ? s.substring(start, end).toUpperCase().toLowerCase() + start : term)){
+					matches.add(term + "@" + start + "-" + end);
+				}
+			}
+		}
+		return matches.toString();
+	}
+}
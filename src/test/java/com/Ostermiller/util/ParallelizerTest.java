@@ -18,6 +18,9 @@ package com.Ostermiller.util;
 
 import junit.framework.TestCase;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
 
 /**
  * Regression test for Parallelizer. More information about this class is
@@ -82,4 +85,802 @@ public class ParallelizerTest extends TestCase {
 		assertNotNull(rx);
 		assertEquals("Testing Parallelizer", rx.getMessage());
 	}
+
+	/**
+	 * Runs jobs that record how many of them are running at once.
+	 */
+	private static class ConcurrencyCounter {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicInteger finished = new AtomicInteger();
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		Runnable job(final long sleep){
+			return new Runnable(){
+				public void run(){
+					int now = running.incrementAndGet();
+					int max;
+					while (now > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, now));
+					threads.add(Thread.currentThread());
+					try {
+						if (sleep > 0) Thread.sleep(sleep);
+					} catch (InterruptedException x){
+						throw new RuntimeException(x);
+					} finally {
+						running.decrementAndGet();
+						finished.incrementAndGet();
+					}
+				}
+			};
+		}
+	}
+
+	public void testThreadsReused() throws InterruptedException {
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		Parallelizer pll = new Parallelizer(2);
+		for (int i = 0; i < 1000; i++){
+			pll.run(counter.job(0));
+		}
+		pll.join();
+		assertTrue(pll.done());
+		assertEquals(1000, counter.finished.get());
+		assertTrue(counter.maxRunning.get() <= 2);
+		// Far fewer threads than jobs
+		assertTrue("threads: " + counter.threads.size(), counter.threads.size() < 100);
+	}
+
+	public void testConcurrentLimit() throws InterruptedException {
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		for (int i = 0; i < 30; i++){
+			pll.run(counter.job(5));
+		}
+		pll.join();
+		assertEquals(30, counter.finished.get());
+		assertTrue(counter.maxRunning.get() <= SIMULTANEOUS_THREADS);
+	}
+
+	public void testExecutor() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(2, new ThreadFactory(){
+			public Thread newThread(Runnable r){
+				return new Thread(r, "test-executor");
+			}
+		});
+		try {
+			ConcurrencyCounter counter = new ConcurrencyCounter();
+			Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS, executor);
+			for (int i = 0; i < 50; i++){
+				pll.run(counter.job(1));
+			}
+			pll.join();
+			assertEquals(50, counter.finished.get());
+			for (Thread thread: counter.threads){
+				assertEquals("test-executor", thread.getName());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		// A shut down executor rejects jobs
+		Parallelizer pll = new Parallelizer(1, executor);
+		pll.run(new Runnable(){
+			public void run(){
+				fail("should not run");
+			}
+		});
+		try {
+			pll.join();
+			fail("Expected exception");
+		} catch (RejectedExecutionException x){
+			// expected
+		}
+		assertTrue(pll.done());
+	}
+
+	public void testThreadNameAndGroup() throws InterruptedException {
+		final String[] names = new String[2];
+		final ThreadGroup[] groups = new ThreadGroup[1];
+		final ThreadGroup group = new ThreadGroup("test-group");
+		Parallelizer pll = new Parallelizer();
+		pll.run(new Runnable(){
+			public void run(){
+				names[0] = Thread.currentThread().getName();
+			}
+		}, "named-job");
+		pll.run(group, new Runnable(){
+			public void run(){
+				names[1] = Thread.currentThread().getName();
+				groups[0] = Thread.currentThread().getThreadGroup();
+			}
+		}, "grouped-job");
+		pll.join();
+		assertEquals("named-job", names[0]);
+		assertEquals("grouped-job", names[1]);
+		assertSame(group, groups[0]);
+	}
+
+	public void testInterrupt() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicInteger interrupted = new AtomicInteger();
+		final AtomicInteger leaked = new AtomicInteger();
+		Parallelizer pll = new Parallelizer(1);
+		pll.run(new Runnable(){
+			public void run(){
+				started.countDown();
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException x){
+					interrupted.incrementAndGet();
+				}
+			}
+		});
+		for (int i = 0; i < 5; i++){
+			pll.run(new Runnable(){
+				public void run(){
+					if (Thread.currentThread().isInterrupted()) leaked.incrementAndGet();
+				}
+			});
+		}
+		started.await();
+		pll.interrupt();
+		pll.join();
+		assertEquals(1, interrupted.get());
+		assertEquals(0, leaked.get());
+	}
+
+	public void testNullJob(){
+		try {
+			new Parallelizer().run(null);
+			fail("Expected exception");
+		} catch (NullPointerException x){
+			// expected
+		}
+	}
+
+	public void testVirtualThreads() throws InterruptedException {
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		Parallelizer pll = Parallelizer.newVirtualThreadParallelizer(SIMULTANEOUS_THREADS);
+		for (int i = 0; i < 30; i++){
+			pll.run(counter.job(2));
+		}
+		pll.run(new Runnable(){
+			public void run(){
+				throw new RuntimeException("Testing Parallelizer");
+			}
+		});
+		try {
+			pll.join();
+			fail("Expected exception");
+		} catch (RuntimeException x){
+			assertEquals("Testing Parallelizer", x.getMessage());
+		}
+		pll.join();
+		assertEquals(30, counter.finished.get());
+		assertTrue(counter.maxRunning.get() <= SIMULTANEOUS_THREADS);
+	}
+
+	public void testSubmit() throws Exception {
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < 10; i++){
+			final int n = i;
+			futures.add(pll.submit(new Callable<Integer>(){
+				public Integer call() throws InterruptedException {
+					Thread.sleep(2);
+					return Integer.valueOf(n * n);
+				}
+			}));
+		}
+		Future<String> failed = pll.submit(new Callable<String>(){
+			public String call() throws Exception {
+				throw new Exception("Testing Parallelizer");
+			}
+		});
+		try {
+			pll.join();
+			fail("Expected exception");
+		} catch (RuntimeException x){
+			assertEquals("Testing Parallelizer", x.getCause().getMessage());
+		}
+		pll.join();
+		for (int i = 0; i < 10; i++){
+			assertTrue(futures.get(i).isDone());
+			assertEquals(i * i, futures.get(i).get().intValue());
+		}
+		try {
+			failed.get();
+			fail("Expected exception");
+		} catch (ExecutionException x){
+			assertEquals("Testing Parallelizer", x.getCause().getMessage());
+		}
+	}
+
+	public void testSubmitCancel() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger ran = new AtomicInteger();
+		Parallelizer pll = new Parallelizer(1);
+		pll.run(new Runnable(){
+			public void run(){
+				try {
+					release.await();
+				} catch (InterruptedException x){
+					throw new RuntimeException(x);
+				}
+			}
+		});
+		Future<Object> queued = pll.submit(new Callable<Object>(){
+			public Object call(){
+				ran.incrementAndGet();
+				return null;
+			}
+		});
+		assertTrue(queued.cancel(false));
+		release.countDown();
+		pll.join();
+		assertTrue(queued.isCancelled());
+		assertEquals(0, ran.get());
+	}
+
+	public void testInvokeAll() throws InterruptedException {
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		List<Callable<String>> jobs = new ArrayList<Callable<String>>();
+		for (int i = 0; i < 30; i++){
+			final int n = i;
+			final Runnable job = counter.job(30 - n);
+			jobs.add(new Callable<String>(){
+				public String call(){
+					job.run();
+					return "result " + n;
+				}
+			});
+		}
+		List<String> results = pll.invokeAll(jobs);
+		assertEquals(30, results.size());
+		for (int i = 0; i < 30; i++){
+			assertEquals("result " + i, results.get(i));
+		}
+		assertEquals(30, counter.finished.get());
+		assertTrue(counter.maxRunning.get() <= SIMULTANEOUS_THREADS);
+		pll.join();
+	}
+
+	public void testInvokeAllException() throws InterruptedException {
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		List<Callable<Object>> jobs = new ArrayList<Callable<Object>>();
+		for (int i = 0; i < 10; i++){
+			final int n = i;
+			jobs.add(new Callable<Object>(){
+				public Object call() throws InterruptedException {
+					// Later jobs fail sooner
+					Thread.sleep(20 - n);
+					if (n % 3 == 2) throw new IllegalStateException("Job " + n);
+					return null;
+				}
+			});
+		}
+		try {
+			pll.invokeAll(jobs);
+			fail("Expected exception");
+		} catch (IllegalStateException x){
+			assertEquals("Job 2", x.getMessage());
+		}
+		// Already thrown by invokeAll
+		pll.join();
+		try {
+			pll.invokeAll(Arrays.asList(jobs.get(0), null));
+			fail("Expected exception");
+		} catch (NullPointerException x){
+			// expected
+		}
+		assertTrue(pll.done());
+	}
+
+	/**
+	 * Run a job that runs two more jobs, each of which runs two more,
+	 * down to the given depth.
+	 */
+	private static void runTree(final Parallelizer pll, final int depth, final AtomicInteger count, final ConcurrencyCounter counter){
+		pll.run(new Runnable(){
+			public void run(){
+				count.incrementAndGet();
+				counter.job(0).run();
+				if (depth > 0){
+					runTree(pll, depth - 1, count, counter);
+					runTree(pll, depth - 1, count, counter);
+				}
+			}
+		});
+	}
+
+	public void testNestedJobs() throws InterruptedException {
+		AtomicInteger count = new AtomicInteger();
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		runTree(pll, 10, count, counter);
+		pll.join();
+		assertEquals(2047, count.get());
+		assertTrue(pll.done());
+		assertTrue(counter.maxRunning.get() <= SIMULTANEOUS_THREADS);
+	}
+
+	public void testWorkStealing() throws InterruptedException {
+		AtomicInteger count = new AtomicInteger();
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		Parallelizer pll = Parallelizer.newWorkStealingParallelizer(SIMULTANEOUS_THREADS);
+		for (int i = 0; i < 3; i++){
+			runTree(pll, 12, count, counter);
+		}
+		pll.join();
+		assertEquals(3 * 8191, count.get());
+		assertTrue(pll.done());
+		assertTrue(counter.maxRunning.get() <= SIMULTANEOUS_THREADS);
+		for (Thread thread: counter.threads){
+			assertTrue(thread instanceof ForkJoinWorkerThread);
+		}
+	}
+
+	public void testWorkStealingException() throws InterruptedException {
+		final Parallelizer pll = new Parallelizer(new ForkJoinPool(SIMULTANEOUS_THREADS));
+		final AtomicInteger ran = new AtomicInteger();
+		pll.run(new Runnable(){
+			public void run(){
+				for (int i = 0; i < 20; i++){
+					final int n = i;
+					pll.run(new Runnable(){
+						public void run(){
+							ran.incrementAndGet();
+							if (n == 7) throw new RuntimeException("Testing Parallelizer");
+						}
+					});
+				}
+			}
+		});
+		try {
+			pll.join();
+			fail("Expected exception");
+		} catch (RuntimeException x){
+			assertEquals("Testing Parallelizer", x.getMessage());
+		}
+		pll.join();
+		assertEquals(20, ran.get());
+		assertTrue(pll.done());
+	}
+
+	private static class CountingListener implements ParallelizerListener {
+		final AtomicInteger queued = new AtomicInteger();
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger finished = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		public void onQueued(Runnable job){
+			queued.incrementAndGet();
+		}
+		public void onStart(Runnable job, long queueWaitNanos){
+			assertTrue(queueWaitNanos >= 0);
+			started.incrementAndGet();
+		}
+		public void onFinish(Runnable job, long runNanos){
+			assertTrue(runNanos >= 0);
+			finished.incrementAndGet();
+		}
+		public void onFailure(Runnable job, Throwable failure, long runNanos){
+			assertEquals("Testing Parallelizer", failure.getMessage());
+			failed.incrementAndGet();
+		}
+	}
+
+	public void testStatistics() throws Exception {
+		CountingListener listener = new CountingListener();
+		Parallelizer pll = new Parallelizer(2);
+		pll.addListener(listener);
+		ConcurrencyCounter counter = new ConcurrencyCounter();
+		for (int i = 0; i < 10; i++){
+			pll.run(counter.job(10));
+		}
+		pll.run(new Runnable(){
+			public void run(){
+				throw new RuntimeException("Testing Parallelizer");
+			}
+		});
+		pll.submit(new Callable<Object>(){
+			public Object call(){
+				throw new RuntimeException("Testing Parallelizer");
+			}
+		});
+		int exceptions = 0;
+		while (true){
+			try {
+				pll.join();
+				break;
+			} catch (RuntimeException x){
+				exceptions++;
+			}
+		}
+		assertEquals(2, exceptions);
+		ParallelizerStatistics stats = pll.getStatistics();
+		assertEquals(2, stats.getConcurrentThreadLimit());
+		assertEquals(12, stats.getSubmittedCount());
+		assertEquals(12, stats.getStartedCount());
+		assertEquals(10, stats.getCompletedCount());
+		assertEquals(2, stats.getFailedCount());
+		assertEquals(0, stats.getQueuedCount());
+		assertEquals(0, stats.getRunningCount());
+		assertEquals(2, stats.getPeakRunningCount());
+		assertTrue(stats.getMaxRunNanos() >= 10000000L);
+		assertTrue(stats.getAverageRunNanos() > 0);
+		// Most of the jobs had to wait for others to finish
+		assertTrue(stats.getMaxQueueWaitNanos() >= 30000000L);
+		assertTrue(stats.getAverageQueueWaitNanos() > 0);
+		assertNotNull(stats.toString());
+		assertEquals(12, listener.queued.get());
+		assertEquals(12, listener.started.get());
+		assertEquals(10, listener.finished.get());
+		assertEquals(2, listener.failed.get());
+
+		assertTrue(pll.removeListener(listener));
+		pll.run(counter.job(0));
+		pll.join();
+		assertEquals(12, listener.queued.get());
+	}
+
+	public void testListenerException() throws InterruptedException {
+		final AtomicInteger ran = new AtomicInteger();
+		Parallelizer pll = new Parallelizer();
+		pll.addListener(new CountingListener(){
+			@Override public void onStart(Runnable job, long queueWaitNanos){
+				throw new IllegalStateException("Testing listener");
+			}
+		});
+		pll.run(new Runnable(){
+			public void run(){
+				ran.incrementAndGet();
+			}
+		});
+		try {
+			pll.join();
+			fail("Expected exception");
+		} catch (IllegalStateException x){
+			assertEquals("Testing listener", x.getMessage());
+		}
+		pll.join();
+		assertEquals(1, ran.get());
+	}
+
+	public void testMBean() throws Exception {
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		javax.management.ObjectName name = pll.registerMBean("ParallelizerTest");
+		try {
+			pll.run(new ConcurrencyCounter().job(0));
+			pll.join();
+			javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+			assertEquals(Long.valueOf(1), server.getAttribute(name, "CompletedCount"));
+			assertEquals(Integer.valueOf(SIMULTANEOUS_THREADS), server.getAttribute(name, "ConcurrentThreadLimit"));
+			try {
+				pll.registerMBean("ParallelizerTest");
+				fail("Expected exception");
+			} catch (IllegalStateException x){
+				// expected
+			}
+		} finally {
+			pll.unregisterMBean();
+		}
+		assertFalse(java.lang.management.ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+
+	private static Runnable await(final CountDownLatch latch){
+		return new Runnable(){
+			public void run(){
+				try {
+					latch.await();
+				} catch (InterruptedException x){
+					throw new RuntimeException(x);
+				}
+			}
+		};
+	}
+
+	public void testJoinTimeout() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		Parallelizer pll = new Parallelizer();
+		pll.run(await(release));
+		long start = System.nanoTime();
+		assertFalse(pll.join(50, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - start >= 50000000L);
+		release.countDown();
+		assertTrue(pll.join(10, TimeUnit.SECONDS));
+		assertTrue(pll.join(0, TimeUnit.SECONDS));
+	}
+
+	public void testJobTimeout() throws InterruptedException {
+		final AtomicInteger interrupted = new AtomicInteger();
+		Parallelizer pll = new Parallelizer(1);
+		pll.setJobTimeout(50, TimeUnit.MILLISECONDS);
+		pll.run(new Runnable(){
+			public void run(){
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException x){
+					interrupted.incrementAndGet();
+				}
+			}
+		});
+		for (int i = 0; i < 3; i++){
+			pll.run(new Runnable(){
+				public void run(){
+					if (Thread.currentThread().isInterrupted()) interrupted.incrementAndGet();
+				}
+			});
+		}
+		assertTrue(pll.join(5, TimeUnit.SECONDS));
+		assertEquals(1, interrupted.get());
+		assertEquals(1, pll.getStatistics().getTimedOutCount());
+	}
+
+	public void testCancelQueued() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger ran = new AtomicInteger();
+		Runnable counted = new Runnable(){
+			public void run(){
+				ran.incrementAndGet();
+			}
+		};
+		Parallelizer pll = new Parallelizer(1);
+		pll.run(await(release));
+		for (int i = 0; i < 5; i++){
+			pll.run(counted);
+		}
+		Future<Object> future = pll.submit(Executors.callable(counted));
+		// A job that hasn't started yet on the pool would be cancelled too
+		while (pll.getStatistics().getRunningCount() == 0){
+			Thread.sleep(1);
+		}
+		assertEquals(6, pll.cancelQueued());
+		assertTrue(future.isCancelled());
+		pll.run(counted);
+		release.countDown();
+		pll.join();
+		assertEquals(1, ran.get());
+		assertEquals(6, pll.getStatistics().getCancelledCount());
+
+		// Jobs already handed to the executor
+		final List<Runnable> held = new ArrayList<Runnable>();
+		pll = new Parallelizer(Parallelizer.INFINITE_THREAD_LIMIT, new Executor(){
+			public void execute(Runnable r){
+				held.add(r);
+			}
+		});
+		for (int i = 0; i < 3; i++){
+			pll.run(counted);
+		}
+		assertEquals(3, held.size());
+		assertEquals(0, pll.cancelQueued());
+		assertFalse(pll.done());
+		for (Runnable r: held){
+			r.run();
+		}
+		assertTrue(pll.done());
+		assertEquals(1, ran.get());
+		assertEquals(3, pll.getStatistics().getCancelledCount());
+	}
+
+	public void testMaxQueueDepth() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		final Parallelizer pll = new Parallelizer(1);
+		pll.setMaxQueueDepth(2);
+		pll.run(await(release));
+		final AtomicInteger queued = new AtomicInteger();
+		final ConcurrencyCounter counter = new ConcurrencyCounter();
+		Thread producer = new Thread(){
+			@Override public void run(){
+				for (int i = 0; i < 5; i++){
+					pll.run(counter.job(0));
+					queued.incrementAndGet();
+				}
+			}
+		};
+		producer.start();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (producer.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline){
+			Thread.sleep(1);
+		}
+		// Blocked on the third job while two wait in the queue
+		assertEquals(2, queued.get());
+		assertEquals(2, pll.getStatistics().getQueuedCount());
+		release.countDown();
+		producer.join();
+		pll.join();
+		assertEquals(5, counter.finished.get());
+
+		// Removing the maximum releases a blocked producer
+		// even though the queue has not drained
+		release = new CountDownLatch(1);
+		pll.run(await(release));
+		queued.set(0);
+		Thread unlimited = new Thread(producer);
+		unlimited.start();
+		deadline = System.currentTimeMillis() + 10000;
+		while (unlimited.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline){
+			Thread.sleep(1);
+		}
+		assertEquals(2, queued.get());
+		pll.setMaxQueueDepth(0);
+		unlimited.join(10000);
+		assertFalse(unlimited.isAlive());
+		assertEquals(5, queued.get());
+		release.countDown();
+		pll.join();
+		assertEquals(10, counter.finished.get());
+
+		// Jobs that run jobs are not blocked
+		final AtomicInteger count = new AtomicInteger();
+		pll.setMaxQueueDepth(1);
+		runTree(pll, 6, count, counter);
+		assertTrue(pll.join(10, TimeUnit.SECONDS));
+		assertEquals(127, count.get());
+	}
+
+	public void testMap() throws InterruptedException {
+		final ConcurrencyCounter counter = new ConcurrencyCounter();
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		List<Integer> items = new ArrayList<Integer>();
+		for (int i = 0; i < 1000; i++){
+			items.add(Integer.valueOf(i));
+		}
+		Function<Integer,String> function = new Function<Integer,String>(){
+			public String apply(Integer i){
+				if (i.intValue() % 100 == 0) counter.job(1).run();
+				return "item " + i;
+			}
+		};
+		for (int batchSize: new int[]{0, 1, 7, 1000, 5000}){
+			// A set is not a random access list
+			List<String> results = pll.map(new LinkedHashSet<Integer>(items), function, batchSize);
+			assertEquals(1000, results.size());
+			for (int i = 0; i < 1000; i++){
+				assertEquals("item " + i, results.get(i));
+			}
+		}
+		assertEquals(Arrays.asList("item 3", "item 1", "item 2"), pll.map(new Integer[]{3, 1, 2}, function));
+		assertTrue(pll.map(new ArrayList<Integer>(), function).isEmpty());
+		assertTrue(counter.maxRunning.get() <= SIMULTANEOUS_THREADS);
+		try {
+			pll.map(items, function, -1);
+			fail("Expected exception");
+		} catch (IllegalArgumentException x){
+			// expected
+		}
+	}
+
+	public void testInterruptDoesNotLeak() throws InterruptedException {
+		// Pairs of Parallelizers that share their threads: interrupting
+		// the jobs of one must never interrupt jobs of the other.
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			Parallelizer[][] pairs = {
+				{ new Parallelizer(2), new Parallelizer(2) },
+				{ new Parallelizer(pool), new Parallelizer(pool) },
+			};
+			for (Parallelizer[] pair: pairs){
+				final Parallelizer interrupted = pair[0];
+				Parallelizer bystander = pair[1];
+				final AtomicBoolean stop = new AtomicBoolean();
+				final AtomicInteger leaked = new AtomicInteger();
+				Thread interrupter = new Thread(){
+					@Override public void run(){
+						while (!stop.get()){
+							interrupted.interrupt();
+						}
+					}
+				};
+				Runnable shortJob = new Runnable(){
+					public void run(){
+					}
+				};
+				Runnable check = new Runnable(){
+					public void run(){
+						if (Thread.currentThread().isInterrupted()) leaked.incrementAndGet();
+					}
+				};
+				interrupter.start();
+				try {
+					for (int i = 0; i < 200000; i++){
+						interrupted.run(shortJob);
+						bystander.run(check);
+					}
+					interrupted.join();
+					bystander.join();
+				} finally {
+					stop.set(true);
+					interrupter.join();
+				}
+				assertEquals(0, leaked.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public void testNestedMap() throws InterruptedException {
+		// The outer job holds the only slot while it waits for its batches
+		Parallelizer[] parallelizers = {
+			new Parallelizer(1),
+			Parallelizer.newWorkStealingParallelizer(1),
+		};
+		for (final Parallelizer pll: parallelizers){
+			final List<Integer> items = new ArrayList<Integer>();
+			for (int i = 0; i < 100; i++){
+				items.add(Integer.valueOf(i));
+			}
+			final AtomicReference<List<Integer>> squares = new AtomicReference<List<Integer>>();
+			final AtomicInteger total = new AtomicInteger();
+			pll.run(new Runnable(){
+				public void run(){
+					try {
+						squares.set(pll.map(items, new Function<Integer,Integer>(){
+							public Integer apply(Integer i){
+								return Integer.valueOf(i.intValue() * i.intValue());
+							}
+						}));
+						List<Callable<Integer>> jobs = new ArrayList<Callable<Integer>>();
+						for (int i = 0; i < 10; i++){
+							final int n = i;
+							jobs.add(new Callable<Integer>(){
+								public Integer call(){
+									return Integer.valueOf(n);
+								}
+							});
+						}
+						for (Integer n: pll.invokeAll(jobs)){
+							total.addAndGet(n.intValue());
+						}
+					} catch (InterruptedException x){
+						throw new RuntimeException(x);
+					}
+				}
+			});
+			assertTrue(pll.join(10, TimeUnit.SECONDS));
+			assertEquals(100, squares.get().size());
+			assertEquals(Integer.valueOf(99 * 99), squares.get().get(99));
+			assertEquals(45, total.get());
+			assertEquals(0, pll.getStatistics().getRunningCount());
+			assertEquals(0, pll.getRunningThreads().length);
+		}
+	}
+
+	public void testMapException() throws InterruptedException {
+		Parallelizer pll = new Parallelizer(SIMULTANEOUS_THREADS);
+		List<Integer> items = new ArrayList<Integer>();
+		for (int i = 0; i < 100; i++){
+			items.add(Integer.valueOf(i));
+		}
+		try {
+			pll.map(items, new Function<Integer,Integer>(){
+				public Integer apply(Integer i){
+					if (i.intValue() >= 42 && i.intValue() % 2 == 0) throw new IllegalStateException("Item " + i);
+					return i;
+				}
+			}, 5);
+			fail("Expected exception");
+		} catch (IllegalStateException x){
+			assertEquals("Item 42", x.getMessage());
+		}
+		pll.join();
+		assertTrue(pll.done());
+	}
+
+	public void testForEach() throws InterruptedException {
+		Parallelizer pll = Parallelizer.newWorkStealingParallelizer(SIMULTANEOUS_THREADS);
+		final AtomicIntegerArray seen = new AtomicIntegerArray(10000);
+		Integer[] items = new Integer[10000];
+		for (int i = 0; i < items.length; i++){
+			items[i] = Integer.valueOf(i);
+		}
+		pll.forEach(items, new Consumer<Integer>(){
+			public void accept(Integer i){
+				seen.incrementAndGet(i.intValue());
+			}
+		});
+		for (int i = 0; i < items.length; i++){
+			assertEquals(1, seen.get(i));
+		}
+		assertEquals(4 * SIMULTANEOUS_THREADS, pll.getStatistics().getCompletedCount());
+	}
 }
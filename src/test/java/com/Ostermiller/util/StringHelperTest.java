@@ -768,4 +768,44 @@ public class StringHelperTest extends TestCase {
 		assertEquals(false, StringHelper.parseBoolean(null, false));
 		assertEquals(false, StringHelper.parseBoolean("", false));
 	}
+
+	public void testPatternCache(){
+		StringHelper.clearPatternCache();
+		String[] terms = new String[]{"cat", "dog"};
+		long hits = StringHelper.getPatternCacheHitCount();
+		long misses = StringHelper.getPatternCacheMissCount();
+		assertTrue(StringHelper.containsAny("hotdog", terms));
+		assertTrue(StringHelper.endsWithAny("hotdog", terms));
+		assertEquals(misses + 1, StringHelper.getPatternCacheMissCount());
+		assertEquals(hits + 1, StringHelper.getPatternCacheHitCount());
+		// Case and kind of match are part of the key
+		assertTrue(StringHelper.containsAnyIgnoreCase("HOTDOG", terms));
+		assertSame(StringHelper.getContainsAnyPattern(terms), StringHelper.getContainsAnyPattern(new String[]{"cat", "dog"}));
+		assertNotSame(StringHelper.getContainsAnyPattern(terms), StringHelper.getEqualsAnyPattern(terms));
+		assertEquals(misses + 4, StringHelper.getPatternCacheMissCount());
+		assertEquals(hits + 3, StringHelper.getPatternCacheHitCount());
+		// Changing the array after it has been used doesn't change the cached terms
+		terms[1] = "bird";
+		assertFalse(StringHelper.containsAny("hotdog", terms));
+		assertTrue(StringHelper.containsAny("hotdog", new String[]{"cat", "dog"}));
+		int size = StringHelper.getPatternCacheSize();
+		try {
+			StringHelper.setPatternCacheSize(1);
+			StringHelper.getEqualsAnyPattern(terms);
+			misses = StringHelper.getPatternCacheMissCount();
+			StringHelper.getStartsWithAnyPattern(terms);
+			StringHelper.getEqualsAnyPattern(terms);
+			assertEquals(misses + 2, StringHelper.getPatternCacheMissCount());
+			StringHelper.setPatternCacheSize(0);
+			assertNotSame(StringHelper.getEqualsAnyPattern(terms), StringHelper.getEqualsAnyPattern(terms));
+		} finally {
+			StringHelper.setPatternCacheSize(size);
+		}
+		try {
+			StringHelper.setPatternCacheSize(-1);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException iax){
+			// expected
+		}
+	}
 }